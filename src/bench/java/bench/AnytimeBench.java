@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package bench;
+
+import core.BoardModel;
+import core.Solution;
+import core.Solver;
+
+import java.util.Random;
+
+/**
+ * Shows what the improvement of the found solution gives on random boards. Every board is solved by
+ * the solver thread with the improvement, as SolvePanel does, and the solver is stopped after the time
+ * limit. It shows the time and the length of the first solution, how many shorter solutions came, the
+ * length of the last one and when it came, and whether the last one is proven to be the shortest. All
+ * solutions are replayed at the board.<br>
+ * System properties:<ul>
+ * <li><b>bench.boards</b> - number of random boards, 10 by default.
+ * <li><b>bench.colors</b> - number of colors (filled tubes), 12 by default.
+ * <li><b>bench.seed</b> - random seed, 1 by default.
+ * <li><b>bench.limit</b> - the time limit of every board, in milliseconds, 5000 by default.
+ * <li><b>bench.engine</b> - the search engine of the Solver, 0 (ENGINE_TREE) by default.
+ * </ul>
+ */
+public class AnytimeBench {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     * @throws InterruptedException if the main thread is interrupted
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int boardsCount = Integer.getInteger("bench.boards", 10);
+        int colors = Integer.getInteger("bench.colors", 12);
+        Random random = new Random(Long.getLong("bench.seed", 1));
+        long limit = Long.getLong("bench.limit", 5000);
+        int engine = Integer.getInteger("bench.engine", Solver.ENGINE_TREE);
+
+        System.out.printf("%-8s %10s %8s %10s %8s %10s %8s %8s%n",
+                "board", "first ms", "length", "improved", "length", "last ms", "optimal", "valid");
+
+        for (int n = 0; n < boardsCount; n++) {
+            BoardModel board = HashBench.randomBoard(random, colors, 2);
+            long start = System.currentTimeMillis();
+            long[] times = new long[2];
+            int[] counts = new int[2];
+            boolean[] valid = {true};
+
+            Solver solver = new Solver(board, 100000) {
+                @Override
+                public void onSolved() {
+                    times[0] = System.currentTimeMillis() - start;
+                    counts[0] = getSolution().length();
+                    valid[0] &= CanonicalBench.replay(board, getSolution().getMoves());
+                }
+
+                @Override
+                public void onImproved() {
+                    times[1] = System.currentTimeMillis() - start;
+                    counts[1]++;
+                    valid[0] &= CanonicalBench.replay(board, getSolution().getMoves());
+                }
+            };
+            solver.setEngine(engine);
+            solver.setImprovement(true);
+
+            // the improvement goes on until the limit, unless the shortest solution is found before
+            Thread thread = new Thread(solver);
+            thread.start();
+            thread.join(limit);
+            solver.stopProcess();
+            thread.join();
+
+            Solution last = solver.getSolution();
+            if (last == null) {
+                System.out.printf("%-8d %10s%n", n, "not solved");
+                continue;
+            }
+            System.out.printf("%-8d %10d %8d %10d %8d %10d %8s %8s%n", n,
+                    times[0], counts[0], counts[1], last.length(), times[1],
+                    last.isOptimal() ? "yes" : "no", valid[0] ? "yes" : "NO");
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package bench;
+
+import core.BoardModel;
+import core.CanonicalBoard;
+import core.PackedBoard;
+import core.Solution;
+import core.SolutionCache;
+import core.Solver;
+
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * Checks the canonical form and the solution cache on random boards. Every board gets its copy with
+ * shuffled tubes and renamed colors, and the benchmark counts copies with the same canonical form as
+ * their boards. Every board is solved and put into the cache, then the copy is solved with the same
+ * cache, and its solution is replayed at the copy: the copy with the same form must be solved by the
+ * translated moves, otherwise it's an error. At last, it measures the time of the canonical form
+ * per board.<br>
+ * System properties:<ul>
+ * <li><b>bench.boards</b> - number of random boards, 300 by default.
+ * <li><b>bench.colors</b> - number of colors (filled tubes), 10 by default.
+ * <li><b>bench.seed</b> - random seed, 1 by default.
+ * </ul>
+ */
+public class CanonicalBench {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        int boardsCount = Integer.getInteger("bench.boards", 300);
+        int colors = Integer.getInteger("bench.colors", 10);
+        Random random = new Random(Long.getLong("bench.seed", 1));
+
+        int same = 0;
+        int errors = 0;
+        int solved = 0;
+        int replayed = 0;
+        SolutionCache cache = new SolutionCache(boardsCount);
+        HashSet<CanonicalBoard> forms = new HashSet<>();
+        int[][] boards = new int[boardsCount][];
+
+        for (int n = 0; n < boardsCount; n++) {
+            BoardModel board = HashBench.randomBoard(random, colors, 2);
+            BoardModel copy = shuffle(board, random);
+            PackedBoard pb = new PackedBoard(board);
+            boards[n] = new int[pb.size()];
+            pb.store(boards[n], 0);
+
+            CanonicalBoard form = new CanonicalBoard(board);
+            CanonicalBoard copyForm = new CanonicalBoard(copy);
+            forms.add(form);
+            if (form.equals(copyForm)) {
+                same++;
+            }
+
+            Solver solver = new Solver(board, 0);
+            solver.setSolutionCache(cache);
+            Solution solution = solver.solve();
+            if (solution == null) {
+                continue;
+            }
+            solved++;
+
+            Solver copySolver = new Solver(copy, 0);
+            copySolver.setSolutionCache(cache);
+            Solution copySolution = copySolver.solve();
+            if (copySolution != null && "solution cache".equals(copySolver.solvedBy)
+                    && replay(copy, copySolution.getMoves())) {
+                replayed++;
+            }
+            if (form.equals(copyForm) && (copySolution == null || !replay(copy, copySolution.getMoves()))) {
+                errors++;
+            }
+        }
+
+        System.out.printf("boards %d, colors %d, distinct forms %d%n", boardsCount, colors, forms.size());
+        System.out.printf("copies with the same form: %d (%.1f%%)%n", same, same * 100.0 / boardsCount);
+        System.out.printf("solved %d, solutions of copies replayed from the cache: %d, errors: %d%n",
+                solved, replayed, errors);
+
+        // warm up, then measure
+        long checksum = 0;
+        long time = 0;
+        for (int pass = 0; pass < 20; pass++) {
+            long start = System.nanoTime();
+            for (int[] tubes : boards) {
+                checksum += new CanonicalBoard(tubes, tubes.length).getHash();
+            }
+            time = System.nanoTime() - start;
+        }
+        System.out.printf("canonical form: %.1f ns per board%n", (double) time / boardsCount);
+        if (checksum == 0) {
+            System.out.println();
+        }
+    }
+
+    /**
+     * Creates the copy of the board with shuffled tubes and renamed colors.
+     *
+     * @param board  the board
+     * @param random the random generator
+     * @return the new board
+     */
+    static BoardModel shuffle(BoardModel board, Random random) {
+        PackedBoard pb = new PackedBoard(board);
+
+        // colors of the board are renamed to each other
+        int[] names = new int[256];
+        int[] used = new int[256];
+        int count = 0;
+        for (int i = 0; i < pb.size(); i++) {
+            for (int stored = pb.getTube(i); stored != 0; stored >>>= 8) {
+                if (names[stored & 0xff] == 0) {
+                    names[stored & 0xff] = stored & 0xff;
+                    used[count++] = stored & 0xff;
+                }
+            }
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = names[used[i]];
+            names[used[i]] = names[used[j]];
+            names[used[j]] = t;
+        }
+
+        PackedBoard result = new PackedBoard(pb.size());
+        int[] order = new int[pb.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        for (int i = 0; i < order.length; i++) {
+            int stored = pb.getTube(order[i]);
+            int renamed = 0;
+            for (int shift = 0; shift < 32 && (stored >>> shift) != 0; shift += 8) {
+                renamed |= names[(stored >>> shift) & 0xff] << shift;
+            }
+            result.setTube(i, renamed);
+        }
+        return result.toBoardModel();
+    }
+
+    /**
+     * Replays stored moves at the board.
+     *
+     * @param board the board
+     * @param moves stored moves
+     * @return true if all moves can be done, they move the right colors, and the board is solved then
+     */
+    static boolean replay(BoardModel board, int[] moves) {
+        PackedBoard pb = new PackedBoard(board);
+        for (int move : moves) {
+            int from = (move >> 24) & 0xff;
+            int to = (move >> 16) & 0xff;
+            if (from >= pb.size() || to >= pb.size() || !pb.canMakeMove(from, to)
+                    || PackedBoard.getTopColor(pb.getTube(from)) != (move & 0xff)
+                    || pb.moveColor(from, to) != ((move >> 8) & 0xff)) {
+                return false;
+            }
+        }
+        return pb.isSolved();
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package bench;
+
+import core.BoardModel;
+import core.Checkpoint;
+import core.Solution;
+import core.Solver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks checkpoints of the search on random boards. Every board is solved from the beginning first.
+ * Then it's solved with checkpoints at the temporary folder, and the search is cancelled in the middle
+ * of the time; the saved checkpoint is loaded and the search is continued by the new solver. The
+ * continued search must find the same solution. It shows the size of the checkpoint file, and the
+ * processed moves before the checkpoint and after the whole continued search.<br>
+ * System properties:<ul>
+ * <li><b>bench.boards</b> - number of random boards, 20 by default.
+ * <li><b>bench.colors</b> - number of colors (filled tubes), 20 by default.
+ * <li><b>bench.seed</b> - random seed, 1 by default.
+ * <li><b>bench.breakStop</b> - the start break value of the Solver, 100000 by default (as SolvePanel does).
+ * <li><b>bench.maxBreakStop</b> - the game is given up when the break value exceeds it, 4194304 by default.
+ * <li><b>bench.engine</b> - the search engine of the Solver, 0 (ENGINE_TREE) or 1 (ENGINE_STACK),
+ * 0 by default.
+ * <li><b>bench.minTime</b> - boards solved faster are skipped, in milliseconds, 50 by default.
+ * </ul>
+ */
+public class CheckpointBench {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     * @throws IOException if temporary files can't be used
+     */
+    public static void main(String[] args) throws IOException {
+        int boardsCount = Integer.getInteger("bench.boards", 20);
+        int colors = Integer.getInteger("bench.colors", 20);
+        Random random = new Random(Long.getLong("bench.seed", 1));
+        int breakStop = Integer.getInteger("bench.breakStop", 100000);
+        int maxBreakStop = Integer.getInteger("bench.maxBreakStop", 1 << 22);
+        int engine = Integer.getInteger("bench.engine", Solver.ENGINE_TREE);
+        int minTime = Integer.getInteger("bench.minTime", 50);
+        File file = new File(Files.createTempDirectory("tubesolver").toFile(), Checkpoint.FILE_NAME);
+
+        System.out.printf("%-8s %10s %12s %10s %10s %12s %8s%n",
+                "board", "time", "moves", "cancelled", "bytes", "resumed", "same");
+
+        for (int n = 0; n < boardsCount; n++) {
+            BoardModel board = HashBench.randomBoard(random, colors, 2);
+
+            Solver solver = new Solver(board, breakStop);
+            solver.setEngine(engine);
+            Solution plain = solve(solver, board, breakStop, maxBreakStop);
+            if (plain == null || plain.getWorkingTime() < minTime) {
+                System.out.printf("%-8d %10s%n", n, (plain == null) ? "not solved" : "skipped");
+                continue;
+            }
+
+            // the solver is cancelled in the middle
+            Solver first = new Solver(board, breakStop);
+            first.setEngine(engine);
+            first.setCheckpoint(file, 3600);
+            Thread canceller = new Thread(() -> {
+                try {
+                    Thread.sleep((long) plain.getWorkingTime() / 2);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                first.stopProcess();
+            });
+            canceller.start();
+            Solution cancelled = solve(first, board, breakStop, maxBreakStop);
+            canceller.interrupt();
+
+            Checkpoint checkpoint = Checkpoint.load(file);
+            if (cancelled != null || checkpoint == null) {
+                System.out.printf("%-8d %10.0f %12d %10s%n", n,
+                        plain.getWorkingTime(), plain.getProcessedMoves(), "no");
+                continue;
+            }
+            long bytes = file.length();
+
+            Solver second = new Solver(board, breakStop);
+            second.setEngine(engine);
+            second.setCheckpoint(file, 3600);
+            second.setResume(checkpoint);
+            Solution resumed = solve(second, board, checkpoint.getBreakStop(), maxBreakStop);
+
+            System.out.printf("%-8d %10.0f %12d %10d %10d %12d %8s%n", n,
+                    plain.getWorkingTime(), plain.getProcessedMoves(), checkpoint.getProcessedMoves(), bytes,
+                    (resumed != null) ? resumed.getProcessedMoves() : 0,
+                    (resumed != null && Arrays.equals(plain.getMoves(), resumed.getMoves())) ? "yes" : "NO");
+            if (file.exists()) {
+                System.out.println("  the checkpoint file was not deleted");
+            }
+        }
+    }
+
+    /**
+     * Solves the game, and starts the solver again with the doubled break value, as SolvePanel does.
+     *
+     * @param solver       the solver
+     * @param board        the start board
+     * @param breakStop    the break value of the first run
+     * @param maxBreakStop the maximum break value
+     * @return the solution, or null if it was not found or the solver was cancelled
+     */
+    private static Solution solve(Solver solver, BoardModel board, int breakStop, int maxBreakStop) {
+        int breakCount = breakStop;
+        Solution solution = solver.solve();
+        while (solution == null && !solver.externalBreak && breakCount > 0
+                && (breakCount <<= 1) <= maxBreakStop) {
+            solver.setStartTubes(board);
+            solver.setBreakStop(breakCount);
+            solution = solver.solve();
+        }
+        return solution;
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package bench;
+
+import core.BoardModel;
+import core.CanonicalBoard;
+import core.DiskSolutionCache;
+import core.PackedBoard;
+import core.Solution;
+import core.Solver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Checks the disk solution cache at the temporary folder. Random boards are solved and stored, then
+ * the cache is opened again, and every board must be found there with the solution that solves it.
+ * The same is checked after the index file is deleted, and after the end of the data file is cut, when
+ * only the last board may be lost. Then the small cache must keep the most recently used boards. At
+ * last, it measures the time of the lookup at the disk, with the empty memory part of the cache.<br>
+ * System properties:<ul>
+ * <li><b>bench.boards</b> - number of random boards, 500 by default.
+ * <li><b>bench.colors</b> - number of colors (filled tubes), 7 by default.
+ * <li><b>bench.seed</b> - random seed, 1 by default.
+ * </ul>
+ */
+public class DiskCacheBench {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     * @throws IOException if temporary files can't be used
+     */
+    public static void main(String[] args) throws IOException {
+        int boardsCount = Integer.getInteger("bench.boards", 500);
+        int colors = Integer.getInteger("bench.colors", 7);
+        Random random = new Random(Long.getLong("bench.seed", 1));
+        String dir = Files.createTempDirectory("tubesolver").toString();
+
+        BoardModel[] boards = new BoardModel[boardsCount];
+        int[][] solutions = new int[boardsCount][];
+        int solved = 0;
+        for (int n = 0; n < boardsCount; n++) {
+            boards[n] = HashBench.randomBoard(random, colors, 2);
+            Solution solution = new Solver(boards[n], 0).solve();
+            if (solution != null) {
+                solutions[n] = solution.getMoves();
+                solved++;
+            }
+        }
+
+        DiskSolutionCache cache = new DiskSolutionCache(0, dir, 16);
+        for (int n = 0; n < boardsCount; n++) {
+            if (solutions[n] != null) {
+                cache.put(new CanonicalBoard(boards[n]), solutions[n]);
+            }
+        }
+        System.out.printf("solved %d of %d, stored %d records, %d bytes%n",
+                solved, boardsCount, cache.getStoredCount(), cache.getStoredBytes());
+        cache.close();
+
+        System.out.printf("opened again: found %d%n", countFound(dir, 16, boards, solutions));
+
+        new File(dir, DiskSolutionCache.INDEX_FILE).delete();
+        System.out.printf("without index: found %d%n", countFound(dir, 16, boards, solutions));
+
+        File dataFile = new File(dir, DiskSolutionCache.DATA_FILE);
+        try (RandomAccessFile raf = new RandomAccessFile(dataFile, "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+        System.out.printf("cut data file: found %d (one less)%n", countFound(dir, 16, boards, solutions));
+
+        // the cache of 1 megabyte gets boards with long solutions (4 kilobytes each), the first
+        // boards are removed then, and the last ones are kept
+        File small = Files.createTempDirectory("tubesolver").toFile();
+        cache = new DiskSolutionCache(0, small.getPath(), 1);
+        int[] longSolution = new int[1000];
+        for (int n = 0; n < 1000; n++) {
+            cache.put(new CanonicalBoard(padded(boards[n % boardsCount], n / boardsCount)), longSolution);
+        }
+        int first = 0;
+        int last = 0;
+        for (int n = 0; n < 10; n++) {
+            if (cache.get(new CanonicalBoard(padded(boards[n % boardsCount], n / boardsCount))) != null) {
+                first++;
+            }
+            if (cache.get(new CanonicalBoard(padded(boards[(999 - n) % boardsCount], (999 - n) / boardsCount)))
+                    != null) {
+                last++;
+            }
+        }
+        System.out.printf("small cache: %d records, %d bytes, first boards found %d of 10, last %d of 10%n",
+                cache.getStoredCount(), cache.getStoredBytes(), first, last);
+        cache.close();
+
+        // lookups at the disk
+        cache = new DiskSolutionCache(0, dir, 16);
+        CanonicalBoard[] forms = new CanonicalBoard[boardsCount];
+        for (int n = 0; n < boardsCount; n++) {
+            forms[n] = new CanonicalBoard(boards[n]);
+        }
+        long checksum = 0;
+        long time = 0;
+        for (int pass = 0; pass < 20; pass++) {
+            long start = System.nanoTime();
+            for (CanonicalBoard form : forms) {
+                int[] moves = cache.get(form);
+                checksum += (moves != null) ? moves.length : 0;
+            }
+            time = System.nanoTime() - start;
+        }
+        cache.close();
+        System.out.printf("lookup: %.1f ns per board%n", (double) time / boardsCount);
+        if (checksum == 0) {
+            System.out.println();
+        }
+    }
+
+    /**
+     * Opens the cache and counts boards with right solutions.
+     *
+     * @param dir       the folder of the cache
+     * @param megabytes the maximum size of the cache
+     * @param boards    boards
+     * @param solutions solutions of boards, null if the board was not solved
+     * @return number of found boards
+     */
+    private static int countFound(String dir, int megabytes, BoardModel[] boards, int[][] solutions) {
+        DiskSolutionCache cache = new DiskSolutionCache(0, dir, megabytes);
+        int found = 0;
+        for (int n = 0; n < boards.length; n++) {
+            int[] moves = cache.get(new CanonicalBoard(boards[n]));
+            if (moves != null && solutions[n] != null && CanonicalBench.replay(boards[n], moves)) {
+                found++;
+            }
+        }
+        cache.close();
+        return found;
+    }
+
+    /**
+     * Adds empty tubes to the board, so the same board gives other keys of the cache.
+     *
+     * @param board the board
+     * @param count number of tubes to add
+     * @return the new board
+     */
+    private static BoardModel padded(BoardModel board, int count) {
+        PackedBoard pb = new PackedBoard(board);
+        PackedBoard result = new PackedBoard(pb.size() + count);
+        for (int i = 0; i < pb.size(); i++) {
+            result.setTube(i, pb.getTube(i));
+        }
+        return result.toBoardModel();
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package bench;
+
+import core.BoardGenerator;
+import core.PackedBoard;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Measures the random board generator: boards per second into the array and into the packed board,
+ * with and without the check of duplicates, and bytes allocated per board. Checks that the same
+ * seed gives the same boards and that every board has 4 cells of every color. <br>
+ * System properties:<ul>
+ * <li><b>bench.boards</b> - number of boards to generate, 5000000 by default.
+ * <li><b>bench.tubes</b> - number of tubes, 14 by default.
+ * <li><b>bench.empty</b> - number of empty tubes, 2 by default.
+ * <li><b>bench.colors</b> - number of palette colors, 16 by default.
+ * <li><b>bench.seed</b> - random seed, 1 by default.
+ * </ul>
+ */
+public class GeneratorBench {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        int boards = Integer.getInteger("bench.boards", 5000000);
+        int tubes = Integer.getInteger("bench.tubes", 14);
+        int empty = Integer.getInteger("bench.empty", 2);
+        int colors = Integer.getInteger("bench.colors", 16);
+        long seed = Long.getLong("bench.seed", 1);
+
+        // the same seed gives the same boards, and boards are right
+        BoardGenerator first = new BoardGenerator(seed, tubes, empty, colors);
+        BoardGenerator second = new BoardGenerator(seed, tubes, empty, colors);
+        int[] a = new int[tubes];
+        int[] b = new int[tubes];
+        int errors = 0;
+        for (int n = 0; n < 10000; n++) {
+            first.next(a, 0);
+            second.next(b, 0);
+            if (!Arrays.equals(a, b) || !isRight(a, tubes - empty)) {
+                errors++;
+            }
+        }
+        System.out.println("checked boards: 10000, errors: " + errors);
+
+        int[] dest = new int[tubes * 64];
+        BoardGenerator generator = new BoardGenerator(seed, tubes, empty, colors);
+        measure("array", boards, () -> {
+            long sum = 0;
+            for (int i = 0; i < boards; i++) {
+                int offset = (i & 63) * tubes;
+                generator.next(dest, offset);
+                sum += dest[offset];
+            }
+            return sum;
+        });
+
+        PackedBoard packed = new PackedBoard(tubes);
+        measure("packed", boards, () -> {
+            long sum = 0;
+            for (int i = 0; i < boards; i++) {
+                generator.next(packed);
+                sum += packed.getTube(0);
+            }
+            return sum;
+        });
+
+        BoardGenerator unique = new BoardGenerator(seed, tubes, empty, colors);
+        unique.setUnique(true);
+        int uniqueBoards = boards / 10;
+        measure("unique", uniqueBoards, () -> {
+            long sum = 0;
+            for (int i = 0; i < uniqueBoards; i++) {
+                unique.next(packed);
+                sum += packed.getTube(0);
+            }
+            return sum;
+        });
+        System.out.println("duplicates skipped: " + unique.getDuplicates());
+    }
+
+    /**
+     * Runs the loop and prints boards per second and bytes per board.
+     *
+     * @param name   name of the loop
+     * @param boards number of boards of the loop
+     * @param loop   the loop
+     */
+    private static void measure(String name, int boards, LongSupplier loop) {
+        com.sun.management.ThreadMXBean mx =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long bytes = mx.getThreadAllocatedBytes(threadId);
+        long t = System.nanoTime();
+        long sum = loop.getAsLong();
+        t = System.nanoTime() - t;
+        bytes = mx.getThreadAllocatedBytes(threadId) - bytes;
+        System.out.printf("%-7s %,12d boards/s, %8.2f bytes/board (%d)%n", name,
+                (long) (boards * 1e9 / t), (double) bytes / boards, sum & 0xff);
+    }
+
+    /**
+     * Checks that filled tubes have 4 cells of every color, and empty tubes are empty.
+     *
+     * @param tubes  stored tubes
+     * @param filled number of filled tubes
+     * @return true if the board is right
+     */
+    private static boolean isRight(int[] tubes, int filled) {
+        int[] count = new int[256];
+        for (int t = 0; t < tubes.length; t++) {
+            for (int c = 0; c < 4; c++) {
+                int color = (tubes[t] >>> (c * 8)) & 0xff;
+                if ((t < filled) != (color != 0)) {
+                    return false;
+                }
+                count[color]++;
+            }
+        }
+        int colors = 0;
+        for (int i = 1; i < 256; i++) {
+            if (count[i] != 0 && count[i] != 4) {
+                return false;
+            }
+            colors += (count[i] != 0) ? 1 : 0;
+        }
+        return colors == filled;
+    }
+
+}
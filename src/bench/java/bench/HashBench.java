@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package bench;
+
+import core.BoardModel;
+import core.TubeModel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * Compares the board hash with the previous CRC32 board hash on random boards: time per hash and
+ * number of collisions. Also checks that the hash updated by the move is equal to the hash
+ * calculated from scratch. <br>
+ * System properties:<ul>
+ * <li><b>bench.boards</b> - number of random boards, 1000000 by default.
+ * <li><b>bench.colors</b> - number of colors (filled tubes), 12 by default.
+ * <li><b>bench.seed</b> - random seed, 1 by default.
+ * </ul>
+ */
+public class HashBench {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        int boards = Integer.getInteger("bench.boards", 1000000);
+        int colors = Integer.getInteger("bench.colors", 12);
+        Random random = new Random(Long.getLong("bench.seed", 1));
+
+        HashSet<String> distinct = new HashSet<>();
+        HashSet<Long> crcHashes = new HashSet<>();
+        HashSet<Long> newHashes = new HashSet<>();
+        long crcTime = 0;
+        long newTime = 0;
+        int updateErrors = 0;
+
+        for (int n = 0; n < boards; n++) {
+            BoardModel bm = randomBoard(random, colors, 2);
+
+            int[] stored = new int[bm.size()];
+            for (int i = 0; i < stored.length; i++) {
+                stored[i] = bm.get(i).storeColors();
+            }
+            Arrays.sort(stored);
+            if (!distinct.add(Arrays.toString(stored))) {
+                continue;
+            }
+
+            long t = System.nanoTime();
+            long crc = crcHash(bm);
+            crcTime += System.nanoTime() - t;
+
+            t = System.nanoTime();
+            bm.calculateHash();
+            newTime += System.nanoTime() - t;
+
+            crcHashes.add(crc);
+            newHashes.add(bm.hash);
+
+            // random move: hash after the move must be equal to the hash calculated again
+            int from = random.nextInt(bm.size());
+            int to = random.nextInt(bm.size());
+            if (from != to && bm.canMakeMove(from, to)) {
+                BoardModel after = copyBoard(bm);
+                after.moveColor(from, to);
+                after.updateHash(bm, from, to);
+                long updated = after.hash;
+                after.calculateHash();
+                if (updated != after.hash) {
+                    updateErrors++;
+                }
+            }
+        }
+
+        int count = distinct.size();
+        System.out.println("distinct boards: " + count);
+        System.out.printf("CRC32 : %6.1f ns/board, collisions: %d%n",
+                (double) crcTime / count, count - crcHashes.size());
+        System.out.printf("64-bit: %6.1f ns/board, collisions: %d%n",
+                (double) newTime / count, count - newHashes.size());
+        System.out.println("update errors: " + updateErrors);
+    }
+
+    /**
+     * Creates the board with randomly shuffled colors.
+     *
+     * @param random     random generator
+     * @param colors     number of colors and filled tubes
+     * @param emptyTubes number of empty tubes
+     * @return new board
+     */
+    public static BoardModel randomBoard(Random random, int colors, int emptyTubes) {
+        byte[] cells = new byte[colors * 4];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = (byte) (i / 4 + 1);
+        }
+        for (int i = cells.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            byte b = cells[i];
+            cells[i] = cells[j];
+            cells[j] = b;
+        }
+
+        BoardModel bm = new BoardModel();
+        for (int t = 0; t < colors + emptyTubes; t++) {
+            TubeModel tube = new TubeModel();
+            if (t < colors) {
+                for (int i = 0; i < 4; i++) {
+                    tube.putColor(cells[t * 4 + i]);
+                }
+            }
+            bm.addNewTube(tube);
+        }
+        return bm;
+    }
+
+    /**
+     * Copies the board.
+     *
+     * @param bm the board
+     * @return the copy
+     */
+    static BoardModel copyBoard(BoardModel bm) {
+        BoardModel result = new BoardModel();
+        for (TubeModel tube : bm) {
+            TubeModel copy = new TubeModel();
+            copy.assignColors(tube);
+            result.addNewTube(copy);
+        }
+        return result;
+    }
+
+    /**
+     * The previous board hash: CRC32 of the sorted stored tubes.
+     *
+     * @param bm the board
+     * @return CRC32 value
+     */
+    static long crcHash(BoardModel bm) {
+        int s = bm.size();
+
+        int[] stored = new int[s];
+        for (int i = 0; i < s; i++) {
+            stored[i] = bm.get(i).storeColors();
+        }
+        Arrays.sort(stored);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        try {
+            for (int i = 0; i < s; i++) {
+                data.writeInt(stored[i]);
+            }
+            data.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        return crc.getValue();
+    }
+}
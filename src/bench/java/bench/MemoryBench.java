@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package bench;
+
+import core.BoardModel;
+import core.ResStrings;
+import core.Solver;
+import core.TubesIO;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+
+/**
+ * Measures the memory the Solver takes on saved games. Every game is solved in the current thread,
+ * and the benchmark prints the peak heap usage over the heap used before the solve, and the number
+ * of bytes allocated by the solve. The peak includes garbage that was not collected yet, so the
+ * engine which allocates less has the lower peak too.<br>
+ * Arguments are JCTL files or folders with them, the <i>examples</i> folder is used by default.
+ * System properties:<ul>
+ * <li><b>bench.breakStop</b> - the break value of the Solver, 100000 by default (as SolvePanel does).
+ * <li><b>bench.engine</b> - the search engine of the Solver, 0 (ENGINE_TREE) by default.
+ * </ul>
+ */
+public class MemoryBench {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args files and folders to process
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        ResStrings.setBundle("eng");
+
+        int breakStop = Integer.getInteger("bench.breakStop", 100000);
+        int engine = Integer.getInteger("bench.engine", Solver.ENGINE_TREE);
+
+        ArrayList<File> files = new ArrayList<>();
+        for (String name : (args.length > 0) ? args : new String[]{"examples"}) {
+            SolverBench.addFiles(files, new File(name));
+        }
+
+        System.out.printf("%-32s %-10s %12s %14s %14s%n",
+                "file", "result", "moves", "peak heap, KB", "allocated, KB");
+
+        for (File f : files) {
+            if (!TubesIO.loadFromFile(f.getPath())) {
+                System.out.printf("%-32s %-10s%n", f.getName(), "bad file");
+                continue;
+            }
+            BoardModel board = new BoardModel();
+            TubesIO.restoreTubes(board);
+
+            Solver solver = new Solver(board, breakStop);
+            solver.setEngine(engine);
+
+            System.gc();
+            long before = resetPeakUsage();
+            long allocated = getAllocatedBytes();
+
+            boolean solved = solver.solve() != null;
+
+            allocated = getAllocatedBytes() - allocated;
+            long peak = getPeakUsage() - before;
+
+            System.out.printf("%-32s %-10s %12d %14d %14s%n",
+                    f.getName(), solved ? "solved" : "no", solver.processedMoves, peak / 1024,
+                    allocated >= 0 ? Long.toString(allocated / 1024) : "n/a");
+        }
+    }
+
+    /**
+     * Resets the peak usage of all heap pools.
+     *
+     * @return the heap used now, in bytes
+     */
+    private static long resetPeakUsage() {
+        long result = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                result += pool.getUsage().getUsed();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the sum of peak usages of all heap pools.
+     *
+     * @return the peak heap usage in bytes
+     */
+    private static long getPeakUsage() {
+        long result = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                result += pool.getPeakUsage().getUsed();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of bytes allocated by the current thread, if the JVM counts them.
+     *
+     * @return allocated bytes, or -1 if it's not supported
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+}
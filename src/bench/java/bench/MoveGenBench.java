@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package bench;
+
+import core.BoardModel;
+import core.MoveGenerator;
+import core.PackedBoard;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the move generator with the previous scan of all pairs of tubes. On random boards both
+ * must give the same moves with the same ranks in the same order, at the stored tubes and at the
+ * board model, and the benchmark counts boards where they differ. Then it measures time per board
+ * of both generators at the stored tubes, as the stack engine calls them, for every number of colors. <br>
+ * System properties:<ul>
+ * <li><b>bench.boards</b> - number of random boards of every size, 20000 by default.
+ * <li><b>bench.colors</b> - comma separated numbers of colors (filled tubes), "6,12,24,40" by default.
+ * <li><b>bench.seed</b> - random seed, 1 by default.
+ * </ul>
+ */
+public class MoveGenBench {
+
+    /**
+     * Counts of available cells of every color, used by the scan of all pairs.
+     */
+    private static final int[] colorCounts = new int[256];
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        int boardsCount = Integer.getInteger("bench.boards", 20000);
+        String colorsList = System.getProperty("bench.colors", "6,12,24,40");
+        Random random = new Random(Long.getLong("bench.seed", 1));
+
+        System.out.printf("%6s %6s %8s %8s %14s %14s %8s%n",
+                "colors", "tubes", "moves", "errors", "all pairs, ns", "buckets, ns", "speedup");
+
+        for (String s : colorsList.split(",")) {
+            int colors = Integer.parseInt(s.trim());
+            int size = colors + 2;
+            int[][] boards = new int[boardsCount][];
+            for (int n = 0; n < boardsCount; n++) {
+                boards[n] = randomPosition(random, colors);
+            }
+            int[] moves = new int[size * size];
+            int[] ranks = new int[size * size];
+            int[] refMoves = new int[size * size];
+            int[] refRanks = new int[size * size];
+            MoveGenerator generator = new MoveGenerator();
+
+            // the same moves, ranks and order, at the stored tubes and at the board model
+            int errors = 0;
+            long total = 0;
+            for (int[] tubes : boards) {
+                int refEnd = scanAllPairs(tubes, refMoves, refRanks);
+                int end = generator.calculateMoves(tubes, size, moves, ranks, 0, null);
+                boolean same = end == refEnd;
+                for (int i = 0; same && i < end; i++) {
+                    same = moves[i] == refMoves[i] && ranks[i] == refRanks[i];
+                }
+                PackedBoard pb = new PackedBoard(size);
+                pb.load(tubes, 0);
+                end = pb.toBoardModel().calculateMoves(moves, ranks, 0);
+                same = same && end == refEnd;
+                for (int i = 0; same && i < end; i++) {
+                    same = moves[i] == refMoves[i] && ranks[i] == refRanks[i];
+                }
+                if (!same) {
+                    errors++;
+                }
+                total += refEnd;
+            }
+
+            // warm up both, then measure
+            long checksum = 0;
+            long refTime = 0;
+            long time = 0;
+            for (int pass = 0; pass < 10; pass++) {
+                long start = System.nanoTime();
+                for (int[] tubes : boards) {
+                    checksum += scanAllPairs(tubes, refMoves, refRanks);
+                }
+                refTime = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int[] tubes : boards) {
+                    checksum += generator.calculateMoves(tubes, size, moves, ranks, 0, null);
+                }
+                time = System.nanoTime() - start;
+            }
+
+            System.out.printf("%6d %6d %8.1f %8d %14.1f %14.1f %8.2f%n",
+                    colors, size, (double) total / boardsCount, errors,
+                    (double) refTime / boardsCount, (double) time / boardsCount,
+                    (double) refTime / time);
+            if (checksum == 0) {
+                System.out.println();
+            }
+        }
+    }
+
+    /**
+     * Creates the random board and makes random moves there, so tubes have different counts of colors.
+     *
+     * @param random the random generator
+     * @param colors number of colors
+     * @return stored tubes of the board
+     */
+    static int[] randomPosition(Random random, int colors) {
+        BoardModel bm = HashBench.randomBoard(random, colors, 2);
+        PackedBoard pb = new PackedBoard(bm);
+        int steps = random.nextInt(colors * 4);
+        for (int step = 0; step < steps; step++) {
+            int from = random.nextInt(pb.size());
+            int to = random.nextInt(pb.size());
+            if (from != to && pb.canMakeMove(from, to)) {
+                pb.moveColor(from, to);
+            }
+        }
+        int[] tubes = new int[pb.size()];
+        pb.store(tubes, 0);
+        return tubes;
+    }
+
+    /**
+     * Calculates and ranks moves by checking every pair of tubes, as the board did before the move
+     * generator. The best move will be the last one.
+     *
+     * @param stored stored tubes of the board
+     * @param moves  an array to put stored moves
+     * @param ranks  an array to put ranks of moves
+     * @return number of moves
+     */
+    static int scanAllPairs(int[] stored, int[] moves, int[] ranks) {
+        int size = stored.length;
+        Arrays.fill(colorCounts, 0);
+        for (int i = 0; i < size; i++) {
+            if (stored[i] != 0 && !PackedBoard.isClosed(stored[i])) {
+                colorCounts[PackedBoard.getTopColor(stored[i])] += PackedBoard.getColorsToGet(stored[i]);
+            }
+        }
+
+        int end = 0;
+        boolean emptyTubeProcessed = false; // true if one of empty tube has processed already
+
+        for (int r = 0; r < size; r++) {
+            int recipient = stored[r];
+            int rState = PackedBoard.getState(recipient);
+
+            if (rState == 1 // STATE_REGULAR
+                    || (rState == 0 // STATE_EMPTY
+                    && !emptyTubeProcessed)) { // one of empty tubes is passed already
+
+                int rCount = PackedBoard.getCount(recipient);
+                int rColorsToGet = PackedBoard.getColorsToGet(recipient);
+
+                for (int d = 0; d < size; d++) {
+                    int donor = stored[d];
+
+                    if (d != r && PackedBoard.canMove(donor, recipient)) {
+                        int color = PackedBoard.getTopColor(donor);
+                        int dColorsToGet = PackedBoard.getColorsToGet(donor);
+                        int count = Math.min(4 - rCount, dColorsToGet);
+                        int rank = BoardModel.rankMove(PackedBoard.getCount(donor), dColorsToGet,
+                                rCount, rColorsToGet, colorCounts[color]);
+
+                        int i = end;
+                        while (i > 0 && ranks[i - 1] > rank) {
+                            moves[i] = moves[i - 1];
+                            ranks[i] = ranks[i - 1];
+                            i--;
+                        }
+                        moves[i] = ((d & 0xff) << 24) + ((r & 0xff) << 16) + ((count & 0xff) << 8) + color;
+                        ranks[i] = rank;
+                        end++;
+                    }
+                }
+
+                if (rCount == 0) {
+                    emptyTubeProcessed = true;
+                }
+            }
+        }
+        return end;
+    }
+
+}
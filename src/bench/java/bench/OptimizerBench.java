@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package bench;
+
+import core.BoardModel;
+import core.Solution;
+import core.SolutionOptimizer;
+import core.Solver;
+
+import java.util.Random;
+
+/**
+ * Shows how much the optimizer shortens solutions of the engines on random boards. Every board is
+ * solved by every engine with the doubled break value, as SolvePanel does. It shows the total number
+ * of moves the engines have found and the total after the optimizer, how many solutions were shortened,
+ * and the time of the optimizer. All shortened solutions are replayed at the board.<br>
+ * System properties:<ul>
+ * <li><b>bench.boards</b> - number of random boards, 100 by default.
+ * <li><b>bench.colors</b> - number of colors (filled tubes), 12 by default.
+ * <li><b>bench.seed</b> - random seed, 1 by default.
+ * </ul>
+ */
+public class OptimizerBench {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        int boardsCount = Integer.getInteger("bench.boards", 100);
+        int colors = Integer.getInteger("bench.colors", 12);
+        long seed = Long.getLong("bench.seed", 1);
+        int[] engines = {Solver.ENGINE_TREE, Solver.ENGINE_STACK, Solver.ENGINE_BEAM};
+        String[] names = {"tree", "stack", "beam"};
+
+        System.out.printf("%-8s %8s %10s %10s %10s %12s %8s%n",
+                "engine", "solved", "found", "optimized", "shortened", "optimizer us", "valid");
+
+        for (int e = 0; e < engines.length; e++) {
+            Random random = new Random(seed);
+            int solved = 0;
+            long found = 0;
+            long optimized = 0;
+            int shortened = 0;
+            long time = 0;
+            boolean valid = true;
+            for (int n = 0; n < boardsCount; n++) {
+                BoardModel board = HashBench.randomBoard(random, colors, 2);
+                Solution solution = solve(board, engines[e]);
+                if (solution == null) {
+                    continue;
+                }
+                solved++;
+                found += solution.getFoundLength();
+                optimized += solution.length();
+                if (solution.length() < solution.getFoundLength()) {
+                    shortened++;
+                    valid &= CanonicalBench.replay(board, solution.getMoves());
+                }
+
+                // the optimizer alone, on the shortened solution it does nothing
+                long start = System.nanoTime();
+                new SolutionOptimizer(board).optimize(solution.getMoves());
+                time += System.nanoTime() - start;
+            }
+            System.out.printf("%-8s %8d %10d %10d %10d %12d %8s%n", names[e], solved, found, optimized,
+                    shortened, time / 1000, valid ? "yes" : "NO");
+        }
+    }
+
+    /**
+     * Solves the board, and starts the solver again with the doubled break value while it's not solved.
+     *
+     * @param board  the board
+     * @param engine the search engine
+     * @return the solution, or null if it's not found
+     */
+    private static Solution solve(BoardModel board, int engine) {
+        int breakStop = 100000;
+        Solver solver = new Solver(board, breakStop);
+        solver.setEngine(engine);
+        Solution solution = solver.solve();
+        while (solution == null && !solver.provenUnsolvable && (breakStop <<= 1) <= 1 << 22) {
+            solver.setStartTubes(board);
+            solver.setBreakStop(breakStop);
+            solution = solver.solve();
+        }
+        return solution;
+    }
+
+}
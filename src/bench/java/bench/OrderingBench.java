@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package bench;
+
+import core.BoardModel;
+import core.ResStrings;
+import core.Solution;
+import core.Solver;
+import core.TubesIO;
+
+import java.io.File;
+import java.util.ArrayList;
+
+/**
+ * Compares the static and the adaptive order of moves on saved games: the number of processed moves
+ * (nodes) before the first solution, and the solution length. The unsolved game is started again with
+ * the doubled break value, as SolvePanel does, so the history of the adaptive order is kept between
+ * runs. The total counts games solved with both orders.<br>
+ * Arguments are JCTL files or folders with them, the <i>examples</i> folder is used by default.
+ * System properties:<ul>
+ * <li><b>bench.breakStop</b> - the start break value of the Solver, 100000 by default (as SolvePanel does).
+ * <li><b>bench.maxBreakStop</b> - the game is given up when the break value exceeds it, 4194304 by default.
+ * <li><b>bench.engine</b> - the search engine of the Solver, 0 (ENGINE_TREE) or 1 (ENGINE_STACK),
+ * 0 by default.
+ * </ul>
+ */
+public class OrderingBench {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args files and folders to process
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        ResStrings.setBundle("eng");
+
+        int breakStop = Integer.getInteger("bench.breakStop", 100000);
+        int maxBreakStop = Integer.getInteger("bench.maxBreakStop", 1 << 22);
+        int engine = Integer.getInteger("bench.engine", Solver.ENGINE_TREE);
+
+        ArrayList<File> files = new ArrayList<>();
+        for (String name : (args.length > 0) ? args : new String[]{"examples"}) {
+            SolverBench.addFiles(files, new File(name));
+        }
+
+        System.out.printf("%-32s %12s %8s %12s %8s %8s%n",
+                "file", "static", "length", "adaptive", "length", "change");
+
+        long totalStatic = 0;
+        long totalAdaptive = 0;
+        for (File f : files) {
+            if (!TubesIO.loadFromFile(f.getPath())) {
+                System.out.printf("%-32s %s%n", f.getName(), "bad file");
+                continue;
+            }
+            BoardModel board = new BoardModel();
+            TubesIO.restoreTubes(board);
+
+            long[] nodes = new long[2];
+            int[] lengths = new int[2];
+            for (int ordering = Solver.ORDER_STATIC; ordering <= Solver.ORDER_ADAPTIVE; ordering++) {
+                Solver solver = new Solver(board, breakStop);
+                solver.setEngine(engine);
+                solver.setOrdering(ordering);
+                int breakCount = breakStop;
+                Solution solution = solver.solve();
+                while (solution == null && breakCount > 0 && (breakCount <<= 1) <= maxBreakStop) {
+                    solver.setStartTubes(board);
+                    solver.setBreakStop(breakCount);
+                    solution = solver.solve();
+                }
+                nodes[ordering] = solver.processedMoves;
+                lengths[ordering] = (solution != null) ? solution.length() : 0;
+            }
+            if (lengths[0] > 0 && lengths[1] > 0) {
+                totalStatic += nodes[0];
+                totalAdaptive += nodes[1];
+            }
+
+            System.out.printf("%-32s %12d %8s %12d %8s %7.1f%%%n",
+                    f.getName(), nodes[0], lengthString(lengths[0]), nodes[1], lengthString(lengths[1]),
+                    percent(nodes[0], nodes[1]));
+        }
+        System.out.printf("%-32s %12d %8s %12d %8s %7.1f%%%n",
+                "total of solved games", totalStatic, "", totalAdaptive, "", percent(totalStatic, totalAdaptive));
+    }
+
+    /**
+     * Gets the solution length to print.
+     *
+     * @param length number of moves, 0 if the game was not solved
+     * @return the string
+     */
+    private static String lengthString(int length) {
+        return (length > 0) ? Integer.toString(length) : "no";
+    }
+
+    /**
+     * Calculates the change of the node count.
+     *
+     * @param before nodes of the static order
+     * @param after  nodes of the adaptive order
+     * @return the change in percents, negative if the adaptive order visits fewer nodes
+     */
+    private static double percent(long before, long after) {
+        return (before > 0) ? (after - before) * 100.0 / before : 0;
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package bench;
+
+import core.BoardModel;
+import core.PackedBoard;
+import core.TubeModel;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Compares the packed board with the board model: checks that both boards give the same tubes
+ * after random moves, and measures bytes per stored board and copying time. <br>
+ * System properties:<ul>
+ * <li><b>bench.boards</b> - number of boards to store, 100000 by default.
+ * <li><b>bench.colors</b> - number of colors (filled tubes), 12 by default.
+ * <li><b>bench.seed</b> - random seed, 1 by default.
+ * </ul>
+ */
+public class PackedBench {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        int boards = Integer.getInteger("bench.boards", 100000);
+        int colors = Integer.getInteger("bench.colors", 12);
+        Random random = new Random(Long.getLong("bench.seed", 1));
+
+        // random walks on both boards
+        int errors = 0;
+        int moves = 0;
+        for (int n = 0; n < 10000; n++) {
+            BoardModel bm = HashBench.randomBoard(random, colors, 2);
+            PackedBoard pb = new PackedBoard(bm);
+            for (int step = 0; step < 50; step++) {
+                int from = random.nextInt(bm.size());
+                int to = random.nextInt(bm.size());
+                if (from == to) {
+                    continue;
+                }
+                if (bm.canMakeMove(from, to) != pb.canMakeMove(from, to)
+                        || bm.moveColor(from, to) != pb.moveColor(from, to)) {
+                    errors++;
+                }
+                moves++;
+            }
+            if (!sameTubes(bm, pb) || !sameTubes(pb.toBoardModel(), pb)) {
+                errors++;
+            }
+        }
+        System.out.println("random moves: " + moves + ", errors: " + errors);
+
+        BoardModel start = HashBench.randomBoard(random, colors, 2);
+        PackedBoard packed = new PackedBoard(start);
+
+        Object[] store = new Object[boards];
+        long before = usedMemory();
+        long t = System.nanoTime();
+        for (int i = 0; i < boards; i++) {
+            store[i] = HashBench.copyBoard(start);
+        }
+        long modelTime = System.nanoTime() - t;
+        long modelBytes = usedMemory() - before;
+
+        Object[] packedStore = new Object[boards];
+        before = usedMemory();
+        t = System.nanoTime();
+        for (int i = 0; i < boards; i++) {
+            packedStore[i] = new PackedBoard(packed);
+        }
+        long packedTime = System.nanoTime() - t;
+        long packedBytes = usedMemory() - before;
+
+        System.out.printf("BoardModel : %5d bytes/board, %6.1f ns/copy%n",
+                modelBytes / boards, (double) modelTime / boards);
+        System.out.printf("PackedBoard: %5d bytes/board, %6.1f ns/copy%n",
+                packedBytes / boards, (double) packedTime / boards);
+        System.out.println("stored: " + (store.length + packedStore.length));
+    }
+
+    /**
+     * Compares tubes of both boards.
+     *
+     * @param bm board model
+     * @param pb packed board
+     * @return true if all the tubes are the same
+     */
+    static boolean sameTubes(BoardModel bm, PackedBoard pb) {
+        for (int i = 0; i < bm.size(); i++) {
+            TubeModel tube = bm.get(i);
+            int stored = pb.getTube(i);
+            if (tube.storeColors() != stored
+                    || tube.getCount() != PackedBoard.getCount(stored)
+                    || tube.getState() != PackedBoard.getState(stored)
+                    || tube.getCurrentColor() != PackedBoard.getTopColor(stored)
+                    || tube.colorsToGet() != PackedBoard.getColorsToGet(stored)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the used heap memory after the garbage collection.
+     *
+     * @return used memory in bytes
+     */
+    static long usedMemory() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
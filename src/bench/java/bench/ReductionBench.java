@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package bench;
+
+import core.BoardModel;
+import core.ResStrings;
+import core.Solution;
+import core.Solver;
+import core.TubesIO;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Compares the depth-first search with and without the partial-order reduction on saved games: the
+ * number of processed moves (nodes) before the first solution, and whether the solution is the same.
+ * The unsolved game is started again with the doubled break value, as SolvePanel does. The total
+ * counts games solved both ways.<br>
+ * Arguments are JCTL files or folders with them, the <i>examples</i> folder is used by default.
+ * System properties:<ul>
+ * <li><b>bench.breakStop</b> - the start break value of the Solver, 100000 by default (as SolvePanel does).
+ * <li><b>bench.maxBreakStop</b> - the game is given up when the break value exceeds it, 4194304 by default.
+ * <li><b>bench.engine</b> - the search engine of the Solver, 0 (ENGINE_TREE) or 1 (ENGINE_STACK),
+ * 0 by default.
+ * <li><b>bench.ordering</b> - the order of moves, 0 (ORDER_STATIC) or 1 (ORDER_ADAPTIVE), 0 by default.
+ * </ul>
+ */
+public class ReductionBench {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args files and folders to process
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        ResStrings.setBundle("eng");
+
+        int breakStop = Integer.getInteger("bench.breakStop", 100000);
+        int maxBreakStop = Integer.getInteger("bench.maxBreakStop", 1 << 22);
+        int engine = Integer.getInteger("bench.engine", Solver.ENGINE_TREE);
+        int ordering = Integer.getInteger("bench.ordering", Solver.ORDER_STATIC);
+
+        ArrayList<File> files = new ArrayList<>();
+        for (String name : (args.length > 0) ? args : new String[]{"examples"}) {
+            SolverBench.addFiles(files, new File(name));
+        }
+
+        System.out.printf("%-32s %12s %8s %12s %8s %8s%n",
+                "file", "plain", "length", "reduced", "same", "change");
+
+        long totalPlain = 0;
+        long totalReduced = 0;
+        for (File f : files) {
+            if (!TubesIO.loadFromFile(f.getPath())) {
+                System.out.printf("%-32s %s%n", f.getName(), "bad file");
+                continue;
+            }
+            BoardModel board = new BoardModel();
+            TubesIO.restoreTubes(board);
+
+            long[] nodes = new long[2];
+            int[][] solutions = new int[2][];
+            for (int reduction = 0; reduction <= 1; reduction++) {
+                Solver solver = new Solver(board, breakStop);
+                solver.setEngine(engine);
+                solver.setOrdering(ordering);
+                solver.setReduction(reduction != 0);
+                int breakCount = breakStop;
+                Solution solution = solver.solve();
+                while (solution == null && breakCount > 0 && (breakCount <<= 1) <= maxBreakStop) {
+                    solver.setStartTubes(board);
+                    solver.setBreakStop(breakCount);
+                    solution = solver.solve();
+                }
+                nodes[reduction] = solver.processedMoves;
+                solutions[reduction] = (solution != null) ? solution.getMoves() : null;
+            }
+            if (solutions[0] != null && solutions[1] != null) {
+                totalPlain += nodes[0];
+                totalReduced += nodes[1];
+            }
+
+            System.out.printf("%-32s %12d %8s %12d %8s %7.1f%%%n",
+                    f.getName(), nodes[0], (solutions[0] != null) ? Integer.toString(solutions[0].length) : "no",
+                    nodes[1], Arrays.equals(solutions[0], solutions[1]) ? "yes" : "NO",
+                    percent(nodes[0], nodes[1]));
+        }
+        System.out.printf("%-32s %12d %8s %12d %8s %7.1f%%%n",
+                "total of solved games", totalPlain, "", totalReduced, "", percent(totalPlain, totalReduced));
+    }
+
+    /**
+     * Calculates the change of the node count.
+     *
+     * @param before nodes without the reduction
+     * @param after  nodes with the reduction
+     * @return the change in percents, negative if the reduction visits fewer nodes
+     */
+    private static double percent(long before, long after) {
+        return (before > 0) ? (after - before) * 100.0 / before : 0;
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package bench;
+
+import core.BoardModel;
+import core.ResStrings;
+import core.Solver;
+import core.TubesIO;
+
+import java.io.File;
+import java.util.ArrayList;
+
+/**
+ * Measures how the parallel engine scales with the number of threads. Every game is solved with
+ * 1, 2, 4 ... threads up to the number of processor cores, and the speedup is relative to one thread.<br>
+ * Arguments are JCTL files or folders with them, the <i>examples</i> folder is used by default.
+ * System properties:<ul>
+ * <li><b>bench.maxThreads</b> - the maximum number of threads, all processor cores by default.
+ * <li><b>bench.splitDepth</b> - the split depth of the parallel engine, 2 by default.
+ * <li><b>bench.repeat</b> - how much times every game is solved, the best time is printed. 3 by default.
+ * </ul>
+ */
+public class ScalingBench {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args files and folders to process
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        ResStrings.setBundle("eng");
+
+        int maxThreads = Integer.getInteger("bench.maxThreads", Runtime.getRuntime().availableProcessors());
+        int splitDepth = Integer.getInteger("bench.splitDepth", 2);
+        int repeat = Math.max(1, Integer.getInteger("bench.repeat", 3));
+
+        ArrayList<File> files = new ArrayList<>();
+        for (String name : (args.length > 0) ? args : new String[]{"examples"}) {
+            SolverBench.addFiles(files, new File(name));
+        }
+
+        System.out.printf("%-32s %8s %-10s %12s %10s %8s%n",
+                "file", "threads", "result", "moves", "time, ms", "speedup");
+
+        for (File f : files) {
+            if (!TubesIO.loadFromFile(f.getPath())) {
+                System.out.printf("%-32s %8s %-10s%n", f.getName(), "", "bad file");
+                continue;
+            }
+            BoardModel board = new BoardModel();
+            TubesIO.restoreTubes(board);
+
+            double singleTime = 0;
+            for (int threads = 1; threads <= maxThreads; threads <<= 1) {
+                double best = Double.MAX_VALUE;
+                long moves = 0;
+                boolean solved = false;
+
+                for (int i = 0; i < repeat; i++) {
+                    Solver solver = new Solver(board, 0);
+                    solver.setEngine(Solver.ENGINE_PARALLEL);
+                    solver.setThreads(threads);
+                    solver.setSplitDepth(splitDepth);
+                    solved = solver.solve() != null;
+                    moves = solver.processedMoves;
+                    best = Math.min(best, Math.max(solver.workingTime, 1));
+                }
+
+                if (threads == 1) {
+                    singleTime = best;
+                }
+                System.out.printf("%-32s %8d %-10s %12d %10.0f %8.2f%n",
+                        f.getName(), threads, solved ? "solved" : "no", moves, best, singleTime / best);
+
+                if (threads < maxThreads && threads << 1 > maxThreads) {
+                    threads = maxThreads >> 1;
+                }
+            }
+        }
+    }
+
+}
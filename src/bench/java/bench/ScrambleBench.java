@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package bench;
+
+import core.PackedBoard;
+import core.ScrambleGenerator;
+
+/**
+ * Checks and measures the scramble generator. The solution of every puzzle is done at the packed
+ * board, and the board must be solved after it. Then puzzles per second, average pours and color
+ * runs are printed for several mixing values. <br>
+ * System properties:<ul>
+ * <li><b>bench.boards</b> - number of puzzles of every run, 100000 by default.
+ * <li><b>bench.tubes</b> - number of tubes, 14 by default.
+ * <li><b>bench.empty</b> - number of empty tubes, 2 by default.
+ * <li><b>bench.depth</b> - number of reverse pours, 40 by default.
+ * <li><b>bench.seed</b> - random seed, 1 by default.
+ * </ul>
+ */
+public class ScrambleBench {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        int boards = Integer.getInteger("bench.boards", 100000);
+        int tubes = Integer.getInteger("bench.tubes", 14);
+        int empty = Integer.getInteger("bench.empty", 2);
+        int depth = Integer.getInteger("bench.depth", 40);
+        long seed = Long.getLong("bench.seed", 1);
+
+        int[] board = new int[tubes];
+        int[] moves = new int[depth];
+        PackedBoard packed = new PackedBoard(tubes);
+
+        for (double mixing : new double[]{0, 0.5, 1}) {
+            ScrambleGenerator generator = new ScrambleGenerator(seed, tubes, empty, tubes - empty);
+            generator.setDepth(depth);
+            generator.setMixing(mixing);
+
+            int errors = 0;
+            long pours = 0;
+            long runs = 0;
+            long t = System.nanoTime();
+            for (int n = 0; n < boards; n++) {
+                pours += generator.next(board, 0);
+                runs += generator.getRuns();
+            }
+            t = System.nanoTime() - t;
+
+            // the same seed again, and every solution is checked
+            generator = new ScrambleGenerator(seed, tubes, empty, tubes - empty);
+            generator.setDepth(depth);
+            generator.setMixing(mixing);
+            for (int n = 0; n < boards; n++) {
+                generator.next(packed);
+                int count = generator.getSolution(moves);
+                for (int i = 0; i < count; i++) {
+                    int move = moves[i];
+                    if (packed.moveColor(move >>> 24, (move >> 16) & 0xff) != ((move >> 8) & 0xff)) {
+                        errors++;
+                        break;
+                    }
+                }
+                if (!packed.isSolved()) {
+                    errors++;
+                }
+            }
+
+            System.out.printf("mixing %.1f: %,10d puzzles/s, average pours %5.2f, average runs %5.2f,"
+                            + " errors: %d%n", mixing, (long) (boards * 1e9 / t),
+                    (double) pours / boards, (double) runs / boards, errors);
+        }
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package bench;
+
+import core.BoardModel;
+import core.ResStrings;
+import core.Solver;
+import core.TranspositionTable;
+import core.TubesIO;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Measures the Solver speed (processed moves per second) on saved games. <br>
+ * Arguments are JCTL files or folders with them, the <i>examples</i> folder is used by default.
+ * System properties:<ul>
+ * <li><b>bench.breakStop</b> - the break value of the Solver, 100000 by default (as SolvePanel does).
+ * <li><b>bench.timeLimit</b> - time limit for one game in seconds, 60 by default.
+ * <li><b>bench.engine</b> - the search engine of the Solver, 0 (ENGINE_TREE) by default.
+ * The portfolio engine (2) prints also the configuration which has found the solution,
+ * and the optimal engine (4) prints the proven minimum number of moves.
+ * <li><b>bench.restart</b> - if it's true, the unsolved game is started again with the doubled break value,
+ * as SolvePanel does. False by default.
+ * <li><b>bench.beamWidth</b> - the start beam width of the beam engine (5), 1000 by default.
+ * <li><b>bench.tableSize</b> - the maximum size of the transposition table of the tree and the stack
+ * engines in megabytes, 64 by default. Table hits and evictions are printed for these engines.
+ * </ul>
+ */
+public class SolverBench {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args files and folders to process
+     */
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        ResStrings.setBundle("eng");
+
+        int breakStop = Integer.getInteger("bench.breakStop", 100000);
+        long timeLimit = Long.getLong("bench.timeLimit", 60) * 1000;
+        int engine = Integer.getInteger("bench.engine", Solver.ENGINE_TREE);
+        int beamWidth = Integer.getInteger("bench.beamWidth", 1000);
+        boolean restart = Boolean.getBoolean("bench.restart");
+        int tableSize = Integer.getInteger("bench.tableSize", Solver.DEFAULT_TABLE_SIZE);
+
+        ArrayList<File> files = new ArrayList<>();
+        for (String name : (args.length > 0) ? args : new String[]{"examples"}) {
+            addFiles(files, new File(name));
+        }
+
+        System.out.printf("%-32s %-10s %8s %12s %10s %12s%n",
+                "file", "result", "length", "moves", "time, ms", "moves/sec");
+
+        for (File f : files) {
+            if (!TubesIO.loadFromFile(f.getPath())) {
+                System.out.printf("%-32s %-10s%n", f.getName(), "bad file");
+                continue;
+            }
+            BoardModel board = new BoardModel();
+            TubesIO.restoreTubes(board);
+
+            final String[] result = {"break"};
+            Solver solver = new Solver(board, breakStop) {
+                private int breakCount = breakStop;
+
+                @Override
+                public void onSolved() {
+                    result[0] = "solved";
+                }
+
+                @Override
+                public void onNotSolved() {
+                    result[0] = "no";
+                    breakCount <<= 1;
+                    if (restart && breakCount > 0 && !externalBreak) {
+                        setBreakStop(breakCount);
+                        run();
+                    }
+                }
+            };
+            solver.setEngine(engine);
+            solver.setBeamWidth(beamWidth);
+            solver.setTableSize(tableSize);
+
+            Thread t = new Thread(solver);
+            t.start();
+            t.join(timeLimit);
+            if (t.isAlive()) {
+                solver.stopProcess();
+                t.join();
+            }
+            int length = (solver.getSolution() != null) ? solver.getSolution().length() : 0;
+
+            double ms = Math.max(solver.workingTime, 1);
+            System.out.printf("%-32s %-10s %8d %12d %10.0f %12.0f%n",
+                    f.getName(), result[0], length, solver.processedMoves, ms,
+                    solver.processedMoves * 1000 / ms);
+            if (solver.solvedBy != null) {
+                System.out.printf("%-32s won by %s%n", "", solver.solvedBy);
+            }
+            if (solver.provenMinimum >= 0) {
+                System.out.printf("%-32s proven minimum %d moves%n", "", solver.provenMinimum);
+            }
+            if (restart) {
+                System.out.printf("%-32s dead ends %d%n", "", solver.getDeadStatesCount());
+            }
+            if (engine == Solver.ENGINE_TREE || engine == Solver.ENGINE_STACK) {
+                TranspositionTable table = solver.getTable();
+                System.out.printf("%-32s table hits %d, evictions %d, size %d of %d%n", "",
+                        table.getHits(), table.getEvictions(), table.size(), table.getMaxCapacity());
+            }
+        }
+    }
+
+    /**
+     * Adds the file or all JCTL files of the folder to the list.
+     *
+     * @param files the list of files
+     * @param f     file or folder
+     */
+    static void addFiles(ArrayList<File> files, File f) {
+        if (f.isDirectory()) {
+            File[] list = f.listFiles((dir, name) -> name.endsWith(".jctl"));
+            if (list != null) {
+                Arrays.sort(list);
+                files.addAll(Arrays.asList(list));
+            }
+        } else if (f.isFile()) {
+            files.add(f);
+        }
+    }
+}
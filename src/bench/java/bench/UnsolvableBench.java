@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package bench;
+
+import core.BoardModel;
+import core.Solution;
+import core.Solver;
+
+import java.util.Random;
+
+/**
+ * Compares two ways to give up the board without a solution on random boards with few empty tubes,
+ * where many boards can't be solved. The old way doubles the break value until the limit, even if
+ * the run has passed all moves already. The new way (as SolvePanel does) doubles the break
+ * value up to 1600000, and then searches without breaks: the search finds the solution or proves that
+ * there's none. It shows how many boards were solved, proven to have no solution, or given up, and the
+ * time and processed moves of both ways.<br>
+ * System properties:<ul>
+ * <li><b>bench.boards</b> - number of random boards, 50 by default.
+ * <li><b>bench.colors</b> - number of colors (filled tubes), 8 by default.
+ * <li><b>bench.empty</b> - number of empty tubes, 1 by default.
+ * <li><b>bench.seed</b> - random seed, 1 by default.
+ * <li><b>bench.maxBreakStop</b> - the old way gives up when the break value exceeds it, 16777216 by default.
+ * <li><b>bench.engine</b> - the search engine of the Solver, 0 (ENGINE_TREE) or 1 (ENGINE_STACK),
+ * 0 by default.
+ * </ul>
+ */
+public class UnsolvableBench {
+
+    /**
+     * The first break value, as SolvePanel has.
+     */
+    private static final int BREAK_STOP = 100000;
+
+    /**
+     * The largest break value of the new way, as SolvePanel has.
+     */
+    private static final int MAX_BREAK_COUNT = 1600000;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        int boardsCount = Integer.getInteger("bench.boards", 50);
+        int colors = Integer.getInteger("bench.colors", 8);
+        int empty = Integer.getInteger("bench.empty", 1);
+        Random random = new Random(Long.getLong("bench.seed", 1));
+        int maxBreakStop = Integer.getInteger("bench.maxBreakStop", 1 << 24);
+        int engine = Integer.getInteger("bench.engine", Solver.ENGINE_TREE);
+
+        BoardModel[] boards = new BoardModel[boardsCount];
+        int rejected = 0;
+        for (int n = 0; n < boardsCount; n++) {
+            boards[n] = HashBench.randomBoard(random, colors, empty);
+            if (!Solver.passesChecks(boards[n])) {
+                rejected++;
+            }
+        }
+        System.out.printf("boards %d, colors %d, empty tubes %d, rejected by static checks %d%n",
+                boardsCount, colors, empty, rejected);
+        System.out.printf("%-10s %8s %8s %8s %10s %14s%n", "way", "solved", "proven", "gave up", "time", "moves");
+
+        for (int way = 0; way < 2; way++) {
+            int solved = 0;
+            int proven = 0;
+            long moves = 0;
+            long start = System.currentTimeMillis();
+            for (BoardModel board : boards) {
+                Solver solver = new Solver(board, BREAK_STOP);
+                solver.setEngine(engine);
+                int breakCount = BREAK_STOP;
+                Solution solution = solver.solve();
+                // the old way doesn't know about the proof
+                while (solution == null && (way == 0 || !solver.provenUnsolvable) && breakCount > 0) {
+                    if (way == 0) {
+                        breakCount = (breakCount <= maxBreakStop >> 1) ? breakCount << 1 : 0;
+                        if (breakCount == 0) {
+                            break;
+                        }
+                    } else {
+                        breakCount = (breakCount < MAX_BREAK_COUNT) ? breakCount << 1 : 0;
+                    }
+                    solver.setStartTubes(board);
+                    solver.setBreakStop(breakCount);
+                    solution = solver.solve();
+                }
+                if (solution != null) {
+                    solved++;
+                } else if (solver.provenUnsolvable) {
+                    proven++;
+                }
+                moves += solver.processedMoves;
+            }
+            System.out.printf("%-10s %8d %8d %8d %10d %14d%n", (way == 0) ? "doubling" : "complete",
+                    solved, proven, boardsCount - solved - proven, System.currentTimeMillis() - start, moves);
+        }
+    }
+
+}
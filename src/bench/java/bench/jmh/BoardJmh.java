@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package bench.jmh;
+
+import bench.HashBench;
+import core.BoardModel;
+import core.ColorMoveItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures routines of the board model: the hash value, moves of the board, and the move that makes
+ * the new board. Boards are random with the fixed seed, so every run measures the same boards. Every
+ * invocation takes the next board of the set.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class BoardJmh {
+
+    /**
+     * Number of boards of the set.
+     */
+    private static final int BOARDS = 1024;
+
+    /**
+     * Number of colors (filled tubes) of boards.
+     */
+    @Param({"8", "16"})
+    public int colors;
+
+    /**
+     * The random seed of boards.
+     */
+    @Param("1")
+    public long seed;
+
+    /**
+     * Random boards, every one is the root board.
+     */
+    private BoardModel[] boards;
+
+    /**
+     * The first move of every board.
+     */
+    private ColorMoveItem[] firstMoves;
+
+    /**
+     * Stored moves of the allocation-free generator.
+     */
+    private int[] moves;
+
+    /**
+     * Ranks of the allocation-free generator.
+     */
+    private int[] ranks;
+
+    /**
+     * Index of the current board.
+     */
+    private int index;
+
+    /**
+     * Creates boards.
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(seed);
+        boards = new BoardModel[BOARDS];
+        firstMoves = new ColorMoveItem[BOARDS];
+        for (int i = 0; i < BOARDS; i++) {
+            BoardModel board = HashBench.randomBoard(random, colors, 2);
+            board.root = board;
+            board.calculateHash();
+            if (board.calculateMoves() > 0) {
+                firstMoves[i] = board.moves.get(board.moves.size() - 1);
+            }
+            boards[i] = board;
+        }
+        moves = new int[(colors + 2) * (colors + 2)];
+        ranks = new int[moves.length];
+    }
+
+    /**
+     * Gets the next board of the set.
+     *
+     * @return the board
+     */
+    private BoardModel nextBoard() {
+        index = (index + 1) & (BOARDS - 1);
+        return boards[index];
+    }
+
+    /**
+     * Calculates the hash value of the board.
+     *
+     * @return the hash value
+     */
+    @Benchmark
+    public long calculateHash() {
+        BoardModel board = nextBoard();
+        board.calculateHash();
+        return board.hash;
+    }
+
+    /**
+     * Calculates moves of the board as the tree engine does: every move is the new object.
+     *
+     * @return number of moves
+     */
+    @Benchmark
+    public int calculateMoves() {
+        BoardModel board = nextBoard();
+        if (board.moves != null) {
+            board.moves.clear();
+        }
+        return board.calculateMoves();
+    }
+
+    /**
+     * Calculates moves of the board into arrays, without objects.
+     *
+     * @return index after the last move
+     */
+    @Benchmark
+    public int calculateStoredMoves() {
+        return nextBoard().calculateMoves(moves, ranks, 0);
+    }
+
+    /**
+     * Does the first move of the board: the new board is made, and its moves are calculated.
+     *
+     * @return the board after the move, or null if it has no moves
+     */
+    @Benchmark
+    public BoardModel doMove() {
+        nextBoard();
+        ColorMoveItem move = firstMoves[index];
+        if (move == null) {
+            return null;
+        }
+        move.doMove();
+        return move.bmAfter;
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package bench.jmh;
+
+import core.BoardModel;
+import core.Solution;
+import core.Solver;
+import core.TubesIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the whole solve of the saved games and the load of the game file. Games are the played
+ * files of the <i>examples</i> folder (manual fill games can't be solved), other games may be set
+ * by <i>-p file=...</i>. The solver is started again with the doubled break value while the game is
+ * not solved, as SolvePanel does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class GameJmh {
+
+    /**
+     * The game file.
+     */
+    @Param({"examples/9 tubes.jctl", "examples/Assistant mode1.jctl", "examples/Assistant mode2.jctl",
+            "examples/Difficult1.jctl", "examples/Difficult2 - Over 7 min.jctl"})
+    public String file;
+
+    /**
+     * The search engine of the Solver.
+     */
+    @Param("0")
+    public int engine;
+
+    /**
+     * Bytes of the game file.
+     */
+    private byte[] bytes;
+
+    /**
+     * The board of the game.
+     */
+    private BoardModel board;
+
+    /**
+     * Reads the game file.
+     *
+     * @throws IOException if the file can't be read
+     */
+    @Setup
+    public void setup() throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        bytes = Files.readAllBytes(Paths.get(file));
+        if (!TubesIO.loadFromStream(new ByteArrayInputStream(bytes))) {
+            throw new IOException("Bad game file: " + file);
+        }
+        board = new BoardModel();
+        TubesIO.restoreTubes(board);
+    }
+
+    /**
+     * Loads the game from the file bytes.
+     *
+     * @return true if the game is loaded
+     */
+    @Benchmark
+    public boolean loadFromStream() {
+        return TubesIO.loadFromStream(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Solves the game by Solver.run().
+     *
+     * @return the solution
+     */
+    @Benchmark
+    public Solution solve() {
+        Solver solver = new Solver(board, 100000) {
+            private int breakCount = 100000;
+
+            @Override
+            public void onNotSolved() {
+                if (!provenUnsolvable && breakCount > 0) {
+                    breakCount = (breakCount < 1600000) ? breakCount << 1 : 0;
+                    setStartTubes(board);
+                    setBreakStop(breakCount);
+                    run();
+                }
+            }
+        };
+        solver.setEngine(engine);
+        solver.run();
+        return solver.getSolution();
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package bench.jmh;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs JMH benchmarks of this package with the GC profiler, so allocation rates are printed with
+ * times. Arguments are the JMH command line options, they override the defaults: i.e. <i>BoardJmh</i>
+ * runs only benchmarks of the board, <i>-rf json -rff baseline.json</i> saves results to compare
+ * them with the next run.
+ */
+public class JmhMain {
+
+    /**
+     * Runs benchmarks.
+     *
+     * @param args JMH command line options
+     * @throws RunnerException             if a benchmark fails
+     * @throws CommandLineOptionException if options are wrong
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(cmd);
+        if (cmd.getIncludes().isEmpty()) {
+            builder.include(JmhMain.class.getPackage().getName() + "\\.");
+        }
+        Options options = builder
+                .addProfiler(GCProfiler.class)
+                .forks(cmd.getForkCount().orElse(1))
+                .warmupIterations(cmd.getWarmupIterations().orElse(3))
+                .warmupTime(cmd.getWarmupTime().orElse(TimeValue.seconds(1)))
+                .measurementIterations(cmd.getMeasurementIterations().orElse(5))
+                .measurementTime(cmd.getMeasurementTime().orElse(TimeValue.seconds(1)))
+                .jvmArgsAppend("-Djava.awt.headless=true")
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The beam search engine. It goes level by level, like the breadth-first search, but keeps only
+ * the best boards of every level. The number of kept boards is the beam width, so the time and the
+ * memory of every level grow linearly with it. <br>
+ * Boards are scored by the estimation of moves left, and boards with the equal estimation are scored
+ * by the rank of the move as BoardModel.calculateMoves() ranks it. Every board gets to the beam only
+ * once, the board's hash is used to check it. <br>
+ * If the beam becomes empty and some boards were cut off, the search starts again with the wider beam.
+ * If no board was cut off, all the boards were passed, and the tubes have no solution.
+ *
+ * @see Solver#ENGINE_BEAM
+ * @see PackedBoard#estimateMoves()
+ * @see BoardModel#rankMove(int, int, int, int, int)
+ */
+class BeamSolver {
+
+    /**
+     * The beam will not be wider than this.
+     */
+    static final int MAX_BEAM_WIDTH = 1 << 18;
+
+    /**
+     * The solver which runs this engine. Its break flag is used.
+     */
+    private final Solver solver;
+
+    /**
+     * The start configuration of the tubes board.
+     */
+    private final PackedBoard startBoard;
+
+    /**
+     * The number of tubes.
+     */
+    private final int size;
+
+    /**
+     * The board to calculate moves at.
+     */
+    private final PackedBoard board;
+
+    /**
+     * Counts of available cells of every color at the board.
+     */
+    private final int[] colorCounts = new int[256];
+
+    /**
+     * Moves of the current board.
+     */
+    private final int[] boardMoves;
+
+    /**
+     * Boards of the current level, stored one after another.
+     */
+    private int[] levelTubes;
+
+    /**
+     * Hash values of boards of the current level.
+     */
+    private long[] levelHashes;
+
+    /**
+     * Estimations of boards of the current level.
+     */
+    private int[] levelEstimates;
+
+    /**
+     * The number of boards at the current level.
+     */
+    private int levelCount;
+
+    /**
+     * Boards of the next level: scores and indexes to sort them.
+     *
+     * @see #addCandidate(int, int, long, int, int)
+     */
+    private long[] candidates = new long[1024];
+
+    /**
+     * Boards of the next level: indexes of their parent boards at the current level.
+     */
+    private int[] candidateParents = new int[1024];
+
+    /**
+     * Boards of the next level: moves from their parent boards.
+     */
+    private int[] candidateMoves = new int[1024];
+
+    /**
+     * Boards of the next level: hash values.
+     */
+    private long[] candidateHashes = new long[1024];
+
+    /**
+     * Boards of the next level: estimations.
+     */
+    private int[] candidateEstimates = new int[1024];
+
+    /**
+     * The number of boards of the next level.
+     */
+    private int candidateCount;
+
+    /**
+     * Indexes of parent boards of every level.
+     */
+    private final ArrayList<int[]> parents = new ArrayList<>();
+
+    /**
+     * Moves from parent boards of every level.
+     */
+    private final ArrayList<int[]> moves = new ArrayList<>();
+
+    /**
+     * It becomes <i>true</i> when some boards were cut off from the beam.
+     */
+    private boolean cutOff;
+
+    /**
+     * The beam width of the last search.
+     */
+    int lastBeamWidth;
+
+    /**
+     * It is <i>true</i> if the last search has passed all the boards without cutting them off, and
+     * the solution was not found: the board has no solution.
+     */
+    boolean complete;
+
+    /**
+     * Counts all processed moves of this engine.
+     */
+    long processedMoves;
+
+    /**
+     * Creates the engine.
+     *
+     * @param solver     the solver which runs this engine
+     * @param startBoard the start configuration of the tubes board
+     */
+    BeamSolver(Solver solver, BoardModel startBoard) {
+        this.solver = solver;
+        this.startBoard = new PackedBoard(startBoard);
+        size = this.startBoard.size();
+        board = new PackedBoard(size);
+        boardMoves = new int[size * size];
+    }
+
+    /**
+     * Searches for the solution. The beam grows 4 times after every unsuccessful search.
+     *
+     * @param beamWidth the start beam width
+     * @return stored moves of the solution, or null if the solution was not found
+     */
+    int[] search(int beamWidth) {
+        if (!startBoard.hasFullColors()) {
+            return null;
+        }
+        complete = false;
+        int width = Math.min(Math.max(1, beamWidth), MAX_BEAM_WIDTH);
+        while (!solver.externalBreak) {
+            lastBeamWidth = width;
+            int[] result = searchBeam(width);
+            if (result != null || !cutOff || width == MAX_BEAM_WIDTH) {
+                complete = result == null && !cutOff && !solver.externalBreak;
+                return result;
+            }
+            width = (int) Math.min((long) width << 2, MAX_BEAM_WIDTH);
+        }
+        return null;
+    }
+
+    /**
+     * Searches for the solution with the fixed beam width.
+     *
+     * @param width the beam width
+     * @return stored moves of the solution, or null if the solution was not found
+     */
+    private int[] searchBeam(int width) {
+        LongHashSet visited = new LongHashSet();
+        parents.clear();
+        moves.clear();
+        cutOff = false;
+
+        if (startBoard.isSolved()) {
+            return new int[0];
+        }
+
+        levelTubes = new int[size];
+        levelHashes = new long[]{startBoard.calculateHash()};
+        levelEstimates = new int[]{startBoard.estimateMoves()};
+        levelCount = 1;
+        startBoard.store(levelTubes, 0);
+        visited.add(levelHashes[0]);
+
+        while (levelCount > 0 && !solver.externalBreak) {
+            candidateCount = 0;
+
+            for (int i = 0; i < levelCount; i++) {
+                board.load(levelTubes, i * size);
+                int solvingMove = calculateCandidates(i, visited);
+                if (solvingMove != 0) {
+                    return getSolution(i, solvingMove);
+                }
+            }
+
+            nextLevel(width, visited);
+        }
+        return null;
+    }
+
+    /**
+     * Calculates all new boards after moves of the current board and adds them to the candidates.
+     *
+     * @param parent  index of the current board at the level
+     * @param visited hash values of boards that were at the beam already
+     * @return the stored move that solves the board, or 0 if there's no such move
+     */
+    private int calculateCandidates(int parent, LongHashSet visited) {
+        Arrays.fill(colorCounts, 0);
+        for (int i = 0; i < size; i++) {
+            int stored = board.getTube(i);
+            if (stored != 0 && !PackedBoard.isClosed(stored)) { // STATE_REGULAR or STATE_FILLED
+                colorCounts[PackedBoard.getTopColor(stored)] += PackedBoard.getColorsToGet(stored);
+            }
+        }
+
+        int count = board.calculateMoves(boardMoves);
+        for (int i = 0; i < count; i++) {
+            int move = boardMoves[i];
+            int idxFrom = (move >> 24) & 0xff;
+            int idxTo = (move >> 16) & 0xff;
+            int donor = board.getTube(idxFrom);
+            int recipient = board.getTube(idxTo);
+            processedMoves++;
+
+            board.moveColor(idxFrom, idxTo);
+            int newDonor = board.getTube(idxFrom);
+            int newRecipient = board.getTube(idxTo);
+            boolean solved = board.isSolved();
+            board.setTube(idxFrom, donor);
+            board.setTube(idxTo, recipient);
+
+            if (solved) {
+                return move;
+            }
+
+            long hash = levelHashes[parent]
+                    - BoardModel.tubeHash(donor) - BoardModel.tubeHash(recipient)
+                    + BoardModel.tubeHash(newDonor) + BoardModel.tubeHash(newRecipient);
+            if (visited.contains(hash)) {
+                continue;
+            }
+
+            int estimate = levelEstimates[parent]
+                    + PackedBoard.getRuns(newDonor) + PackedBoard.getRuns(newRecipient)
+                    - PackedBoard.getRuns(donor) - PackedBoard.getRuns(recipient);
+            int rank = BoardModel.rankMove(PackedBoard.getCount(donor), PackedBoard.getColorsToGet(donor),
+                    PackedBoard.getCount(recipient), PackedBoard.getColorsToGet(recipient),
+                    colorCounts[move & 0xff]);
+
+            addCandidate(parent, move, hash, estimate, rank);
+        }
+        return 0;
+    }
+
+    /**
+     * Adds the board to the candidates of the next level.
+     *
+     * @param parent   index of the parent board
+     * @param move     the stored move from the parent board
+     * @param hash     hash value of the board
+     * @param estimate estimation of the board
+     * @param rank     rank of the move
+     */
+    private void addCandidate(int parent, int move, long hash, int estimate, int rank) {
+        if (candidateCount == candidates.length) {
+            int newLength = candidateCount << 1;
+            candidates = Arrays.copyOf(candidates, newLength);
+            candidateParents = Arrays.copyOf(candidateParents, newLength);
+            candidateMoves = Arrays.copyOf(candidateMoves, newLength);
+            candidateHashes = Arrays.copyOf(candidateHashes, newLength);
+            candidateEstimates = Arrays.copyOf(candidateEstimates, newLength);
+        }
+        // the less score is the better one, the index keeps the order of equal scores
+        long score = estimate * 64L - rank;
+        candidates[candidateCount] = (score << 32) | candidateCount;
+        candidateParents[candidateCount] = parent;
+        candidateMoves[candidateCount] = move;
+        candidateHashes[candidateCount] = hash;
+        candidateEstimates[candidateCount] = estimate;
+        candidateCount++;
+    }
+
+    /**
+     * Makes the next level from the best candidates.
+     *
+     * @param width   the beam width
+     * @param visited hash values of boards that were at the beam already
+     */
+    private void nextLevel(int width, LongHashSet visited) {
+        Arrays.sort(candidates, 0, candidateCount);
+
+        int[] newTubes = new int[Math.min(candidateCount, width) * size];
+        long[] newHashes = new long[Math.min(candidateCount, width)];
+        int[] newEstimates = new int[newHashes.length];
+        int[] levelParents = new int[newHashes.length];
+        int[] levelMoves = new int[newHashes.length];
+        int count = 0;
+
+        for (int i = 0; i < candidateCount; i++) {
+            int idx = (int) candidates[i];
+            if (count == width) {
+                if (!visited.contains(candidateHashes[idx])) {
+                    cutOff = true;
+                    break;
+                }
+                continue;
+            }
+            if (!visited.add(candidateHashes[idx])) {
+                continue; // the same board was added already
+            }
+            int parent = candidateParents[idx];
+            int move = candidateMoves[idx];
+            board.load(levelTubes, parent * size);
+            board.moveColor((move >> 24) & 0xff, (move >> 16) & 0xff);
+            board.store(newTubes, count * size);
+            newHashes[count] = candidateHashes[idx];
+            newEstimates[count] = candidateEstimates[idx];
+            levelParents[count] = parent;
+            levelMoves[count] = move;
+            count++;
+        }
+
+        parents.add(levelParents);
+        moves.add(levelMoves);
+        levelTubes = newTubes;
+        levelHashes = newHashes;
+        levelEstimates = newEstimates;
+        levelCount = count;
+    }
+
+    /**
+     * Gets moves from the start board to the solved one.
+     *
+     * @param parent index of the board at the current level
+     * @param move   the stored move which solves the board
+     * @return stored moves of the solution
+     */
+    private int[] getSolution(int parent, int move) {
+        int[] result = new int[moves.size() + 1];
+        result[moves.size()] = move;
+        for (int level = moves.size() - 1; level >= 0; level--) {
+            result[level] = moves.get(level)[parent];
+            parent = parents.get(level)[parent];
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+import java.util.SplittableRandom;
+
+/**
+ * Generates random boards for benchmarks and tests. The same seed gives the same boards. Filled tubes
+ * go first, and empty tubes follow them. Every filled tube has its own color number, and the numbers
+ * are taken randomly from the palette colors. Cells of all colors are shuffled between filled tubes.
+ * <br>
+ * Boards are written as stored tubes straight into the array or into the packed board, so the
+ * generator doesn't create any objects. Optionally, boards are unique: the board with the same
+ * canonical form as one of generated before (i.e. other order of tubes or other color numbers) is
+ * skipped. The canonical form is an object, so unique boards are slower.
+ *
+ * @see PackedBoard
+ * @see CanonicalBoard
+ */
+public class BoardGenerator {
+
+    /**
+     * The unique board is looked for this number of tries at most.
+     */
+    private static final int MAX_TRIES = 1000;
+
+    /**
+     * The random generator.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * Number of all tubes.
+     */
+    private final int tubesCount;
+
+    /**
+     * Number of filled tubes, and of colors at the board.
+     */
+    private final int filledCount;
+
+    /**
+     * Palette colors, from 1 to the number of palette colors. The first filledCount ones are the
+     * colors of the board after the shuffle.
+     */
+    private final int[] palette;
+
+    /**
+     * Cells of the board, as indexes of its colors.
+     */
+    private final int[] cells;
+
+    /**
+     * Stored tubes of the last board.
+     */
+    private final int[] tubes;
+
+    /**
+     * Canonical hash values of generated boards, or null if boards are not checked.
+     */
+    private LongHashSet generated;
+
+    /**
+     * Number of boards which were skipped as duplicates.
+     */
+    private long duplicates;
+
+    /**
+     * Creates the generator.
+     *
+     * @param seed       the random seed
+     * @param tubes      number of all tubes
+     * @param emptyTubes number of empty tubes, the rest tubes are filled
+     * @param colors     number of palette colors, the colors of the board are taken from them
+     * @throws IllegalArgumentException if the board can't be made
+     */
+    public BoardGenerator(long seed, int tubes, int emptyTubes, int colors) {
+        if (emptyTubes < 0 || tubes <= emptyTubes || tubes > 255
+                || colors < tubes - emptyTubes || colors > 255) {
+            throw new IllegalArgumentException("Wrong board: " + tubes + " tubes, "
+                    + emptyTubes + " empty tubes, " + colors + " colors");
+        }
+        random = new SplittableRandom(seed);
+        tubesCount = tubes;
+        filledCount = tubes - emptyTubes;
+        palette = new int[colors];
+        cells = new int[filledCount * 4];
+        this.tubes = new int[tubes];
+    }
+
+    /**
+     * Turns on skipping of duplicate boards.
+     *
+     * @param unique true to skip boards with the same canonical form as boards generated before
+     */
+    public void setUnique(boolean unique) {
+        generated = unique ? new LongHashSet() : null;
+    }
+
+    /**
+     * Gets the number of boards which were skipped as duplicates.
+     *
+     * @return number of boards
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Gets the number of tubes of boards.
+     *
+     * @return number of tubes
+     */
+    public int size() {
+        return tubesCount;
+    }
+
+    /**
+     * Generates the next board.
+     *
+     * @param dest   the array to put stored tubes
+     * @param offset index to put the first tube
+     * @return true if the board is generated, false if no unique board was found
+     * @see TubeModel#storeColors()
+     */
+    public boolean next(int[] dest, int offset) {
+        if (!generate()) {
+            return false;
+        }
+        System.arraycopy(tubes, 0, dest, offset, tubesCount);
+        return true;
+    }
+
+    /**
+     * Generates the next board into the packed board.
+     *
+     * @param board the board with size() tubes
+     * @return true if the board is generated, false if no unique board was found
+     */
+    public boolean next(PackedBoard board) {
+        if (!generate()) {
+            return false;
+        }
+        board.load(tubes, 0);
+        return true;
+    }
+
+    /**
+     * Generates the next board as the board model.
+     *
+     * @return the board, or null if no unique board was found
+     */
+    public BoardModel nextBoard() {
+        PackedBoard board = new PackedBoard(tubesCount);
+        return next(board) ? board.toBoardModel() : null;
+    }
+
+    /**
+     * Generates the board into the tubes array. The unique board is tried several times.
+     *
+     * @return true if the board is generated
+     */
+    private boolean generate() {
+        for (int tries = 0; tries < MAX_TRIES; tries++) {
+            shuffle();
+            if (generated == null || generated.add(new CanonicalBoard(tubes, tubesCount).getHash())) {
+                return true;
+            }
+            duplicates++;
+        }
+        return false;
+    }
+
+    /**
+     * Shuffles colors and cells, and puts them into tubes.
+     */
+    private void shuffle() {
+        // colors of the board: the partial shuffle of the palette
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = i + 1;
+        }
+        for (int i = 0; i < filledCount; i++) {
+            int j = i + random.nextInt(palette.length - i);
+            int color = palette[j];
+            palette[j] = palette[i];
+            palette[i] = color;
+        }
+
+        // cells: the Fisher-Yates shuffle
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = i >> 2;
+        }
+        for (int i = cells.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int cell = cells[j];
+            cells[j] = cells[i];
+            cells[i] = cell;
+        }
+
+        for (int t = 0; t < filledCount; t++) {
+            int stored = 0;
+            for (int c = 3; c >= 0; c--) {
+                stored = (stored << 8) | palette[cells[t * 4 + c]];
+            }
+            tubes[t] = stored;
+        }
+        for (int t = filledCount; t < tubesCount; t++) {
+            tubes[t] = 0;
+        }
+    }
+
+}
@@ -9,14 +9,8 @@
  */
 package core;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.zip.CRC32;
-
-import static gui.Palette.usedColors;
 
 /**
  * The logical model of the board with some color tubes.
@@ -49,13 +43,29 @@ public class BoardModel extends ArrayList<TubeModel> {
     public ColorMoveItem parentMove;
 
     /**
-     * Hash is a CRC32 value to compare this board to others. Call calculateHash()
-     * before using this value.
+     * Hash is a 64-bit value to compare this board to others. Call calculateHash()
+     * before using this value. Boards made by moves get it from their parents.
      *
      * @see #calculateHash()
+     * @see ColorMoveItem#doMove()
      */
     public long hash;
 
+    /**
+     * Counts of available cells of every color. The array of the root board is shared by all
+     * boards made from it, so every solver has its own array and doesn't create it for every board.
+     *
+     * @see #fillAvailableColors()
+     */
+    private int[] colorCounts;
+
+    /**
+     * Calculates moves of this board. Like the array of color counts, it belongs to the root board.
+     *
+     * @see #calculateMoves()
+     */
+    private MoveGenerator generator;
+
     /**
      * Create the new tube object and add it to the list
      */
@@ -105,36 +115,54 @@ public class BoardModel extends ArrayList<TubeModel> {
 
     /**
      * Calculates the hash value of this board to compare it to others.
-     * Using CRC32 algorithm.
+     * Using Zobrist-like hashing: every tube gets its own 64-bit random-like value
+     * depends on its colors, and the board hash is the sum of them. So the hash
+     * doesn't depend on the tubes' order, and it can be updated after the move
+     * by replacing values of two tubes only.
+     *
+     * @see #tubeHash(int)
+     * @see #updateHash(BoardModel, int, int)
      */
     public void calculateHash() {
-        int s = this.size();
-
-        // store and sort tubes
-        int[] stored = new int[s];
-        for (int i = 0; i < s; i++) {
-            stored[i] = this.get(i).storeColors();
+        long result = 0;
+        for (TubeModel tube : this) {
+            result += tubeHash(tube.storeColors());
         }
-        Arrays.sort(stored);
+        hash = result;
+    }
 
-        // calculate crc32 checksum
-        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-        DataOutputStream data = new DataOutputStream(bytes);
-        try {
-            for (int i = 0; i < s; i++) {
-                data.write((stored[i] >> 24) & 0xff);
-                data.write((stored[i] >> 16) & 0xff);
-                data.write((stored[i] >> 8) & 0xff);
-                data.write(stored[i] & 0xff);
-            }
-            data.close();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    /**
+     * Updates the hash value of this board made by the move from the board before. Only two tubes
+     * have been changed by the move, so their hashes are replaced and other tubes are not counted again.
+     *
+     * @param bmBefore the board before the move, its hash must be calculated already
+     * @param idxFrom  index of the donor tube
+     * @param idxTo    index of the recipient tube
+     * @see #calculateHash()
+     */
+    public void updateHash(BoardModel bmBefore, int idxFrom, int idxTo) {
+        hash = bmBefore.hash
+                - tubeHash(bmBefore.get(idxFrom).storeColors())
+                - tubeHash(bmBefore.get(idxTo).storeColors())
+                + tubeHash(get(idxFrom).storeColors())
+                + tubeHash(get(idxTo).storeColors());
+    }
 
-        CRC32 crc = new CRC32();
-        crc.update(bytes.toByteArray());
-        hash = crc.getValue();
+    /**
+     * Calculates the 64-bit hash value of one tube. This is the SplitMix64 finalizer, it
+     * gives different random-like values even for tubes that differ by one color.
+     * Sums of these values are used as board hashes instead of XOR: XOR gives 0 for two
+     * equal tubes (e.g. two empty tubes), and such boards would collide.
+     *
+     * @param storedColors tube colors stored into integer
+     * @return hash value of the tube
+     * @see TubeModel#storeColors()
+     */
+    public static long tubeHash(int storedColors) {
+        long z = (storedColors & 0xffffffffL) * 0x9e3779b97f4a7c15L + 0x632be59bd9b4e019L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
     }
 
     /*
@@ -276,18 +304,27 @@ public class BoardModel extends ArrayList<TubeModel> {
     /**
      * This routine counts all colors that are available in this configuration.
      * The colors that are at the top of each tube. <br>
-     * The resulting array is used to rank the available moves.
+     * The resulting array is used to rank the available moves. It belongs to the root board,
+     * so boards of different solvers can be calculated at the same time.
      *
+     * @return counts of available cells, the index of the array is the color number
      * @see TubeModel#getState()
      */
-    public void fillAvailableColors() {
-        usedColors.clearColorCounts();
+    public int[] fillAvailableColors() {
+        BoardModel owner = (root != null) ? root : this;
+        if (owner.colorCounts == null) {
+            owner.colorCounts = new int[256];
+        } else {
+            Arrays.fill(owner.colorCounts, 0);
+        }
+        int[] colorCounts = owner.colorCounts;
         for (TubeModel ct : this) {
             if (ct.getState() == 1 // STATE_REGULAR
                     || ct.getState() == 2) {      // STATE_FILLED
-                usedColors.incColorCount(ct.getCurrentColor(), ct.colorsToGet());
+                colorCounts[ct.getCurrentColor() & 0xff] += ct.colorsToGet();
             }
         }
+        return colorCounts;
     }
 
     /**
@@ -296,115 +333,136 @@ public class BoardModel extends ArrayList<TubeModel> {
      *
      * @return Number of moves that were found.
      * @see ColorMoveItem
+     * @see MoveGenerator
      */
     public int calculateMoves() {
 
-        calculateHash();
-
-        int dColorsToGet; // donor's ColorsToGet
-        int rColorsToGet; // recipient's ColorsToGet
-
         if (hasMoves()) {
             return moves.size();
         }
 
-        ColorMoveItem cm;
-        int result = 0;
-
-        /*
-         * We can have more than one empty tube at the current board.
-         * Each empty tube repeats the already calculated moves again,
-         * moves are unnecessarily duplicated.
-         * We don't need to increase unnecessarily the number of available
-         * moves and then calculate their consequences. Therefore, we will
-         * not calculate the second and subsequent empty tubes.
-         */
-        boolean emptyTubeProcessed = false; // true if one of empty tube has processed already
-
-        fillAvailableColors();
-
-        for (TubeModel ctRecipient : this) {
-
-            if (ctRecipient.getState() == 1 // STATE_REGULAR
-                    || (ctRecipient.getState() == 0 // STATE_EMPTY
-                    && !emptyTubeProcessed)) { // one of empty tubes is passed already
-
-                for (TubeModel ctDonor : this) {
-
-                    if (ctDonor != ctRecipient) {
-
-                        if (canMakeMove(ctDonor, ctRecipient)) {
-
-                            cm = addNewMove(ctDonor, ctRecipient);
-                            if (this != root) {
-                                cm.parent = this.parentMove;
-                            } else {
-                                cm.parent = null;
-                            }
-
-                            dColorsToGet = ctDonor.colorsToGet();
-                            rColorsToGet = ctRecipient.colorsToGet();
-
-                            cm.count = Math.min(
-                                    // empty cells at Recipient
-                                    (4 - ctRecipient.getCount()),
-                                    // number of donor's cells of this color
-                                    dColorsToGet);
-
-                            // -----------------------------------
-                            // Rank the move! 
-                            // -----------------------------------
-                            cm.rank = Math.min(
-                                    // number of empty cells at Recipient
-                                    (4 - ctRecipient.getCount()),
-                                    // number of available cells of this color at whole the board
-                                    usedColors.getColorCount(cm.color));
-
-                            if (ctRecipient.getCount() > 0 && ctRecipient.getCount() == rColorsToGet) {
-                                // if the whole tube of the Recipient is filled by this color
-                                cm.rank += 3;
-                            }
-
-                            if (dColorsToGet == ctDonor.getCount()) {
-                                // if the whole tube of the Donor is filled by this color
-                                cm.rank += 2;
-                            }
-
-                            if (dColorsToGet > 4 - ctRecipient.getCount()) {
-                                // if the Donor tube is not completely emptied after the move
-                                cm.rank -= 4;
-                            }
-
-                            if (dColorsToGet + rColorsToGet == 4) {
-                                // if the donor and recipient will give a filled closed tube,
-                                // the fewer colors movement will be the higher rank.
-                                cm.rank += 4 - cm.count;
-                            }
-
-                            // -----------------------------------
-                            // end of ranking
-                            // -----------------------------------
-                            result++;
-                        } // canMakeMove
-                    }
-                } // process the next donor
-
-                if (ctRecipient.isEmpty() && !emptyTubeProcessed) {
-                    emptyTubeProcessed = true;
-                }
+        MoveGenerator generator = getGenerator();
+        int result = generator.calculateMoves(this);
+
+        // moves are sorted by rank already, the best move is the last one
+        for (int i = 0; i < result; i++) {
+            int stored = generator.getMove(i);
+            ColorMoveItem cm = addNewMove((stored >> 24) & 0xff, (stored >> 16) & 0xff);
+            if (this != root) {
+                cm.parent = this.parentMove;
+            } else {
+                cm.parent = null;
             }
-        } // process the next recipient
+            cm.count = (stored >> 8) & 0xff;
+            cm.rank = generator.getRank(i);
+        }
 
-        if (result > 0) {
-            moves.sort(ColorMoveItem.RankComparator); // sort moves by rank!
-            currentMove = moves.get(moves.size() - 1);
-        } else {
+        if (result == 0) {
             currentMove = null;
         }
 
         return result;
     }
 
+    /**
+     * Calculates and ranks all available moves like calculateMoves() does, but puts them into
+     * the array as stored moves and doesn't create any objects. Moves are sorted by rank, the
+     * best move will be the last one.
+     *
+     * @param moves an array to put stored moves, it must have room for size()*size() moves after start
+     * @param ranks an array to put ranks of moves, the same length
+     * @param start index of the array to put the first move
+     * @return index after the last move
+     * @see ColorMoveItem#storeMove()
+     */
+    public int calculateMoves(int[] moves, int[] ranks, int start) {
+        return getGenerator().calculateMoves(this, moves, ranks, start);
+    }
+
+    /**
+     * Gets the move generator. It belongs to the root board like the array of color counts.
+     *
+     * @return the generator
+     */
+    MoveGenerator getGenerator() {
+        BoardModel owner = (root != null) ? root : this;
+        if (owner.generator == null) {
+            owner.generator = new MoveGenerator();
+        }
+        return owner.generator;
+    }
+
+    /**
+     * Ranks the move from the donor tube to the recipient tube. The move with the higher rank
+     * will be processed first.
+     *
+     * @param ctDonor     donor tube
+     * @param ctRecipient recipient tube
+     * @param colorCount  number of available cells of the moved color at whole the board
+     * @return the rank of the move
+     * @see #fillAvailableColors()
+     */
+    public static int rankMove(TubeModel ctDonor, TubeModel ctRecipient, int colorCount) {
+        return rankMove(ctDonor.getCount(), ctDonor.colorsToGet(),
+                ctRecipient.getCount(), ctRecipient.colorsToGet(), colorCount);
+    }
+
+    /**
+     * Ranks the move by the donor's and the recipient's counts. The move with the higher rank
+     * will be processed first.
+     *
+     * @param dCount       count of the donor's colors
+     * @param dColorsToGet how much colors we can get from the donor
+     * @param rCount       count of the recipient's colors
+     * @param rColorsToGet how much colors of the top color the recipient has
+     * @param colorCount   number of available cells of the moved color at whole the board
+     * @return the rank of the move
+     * @see TubeModel#colorsToGet()
+     */
+    public static int rankMove(int dCount, int dColorsToGet, int rCount, int rColorsToGet, int colorCount) {
+
+        int count = Math.min(
+                // empty cells at Recipient
+                (4 - rCount),
+                // number of donor's cells of this color
+                dColorsToGet);
+
+        // -----------------------------------
+        // Rank the move!
+        // -----------------------------------
+        int rank = Math.min(
+                // number of empty cells at Recipient
+                (4 - rCount),
+                // number of available cells of this color at whole the board
+                colorCount);
+
+        if (rCount > 0 && rCount == rColorsToGet) {
+            // if the whole tube of the Recipient is filled by this color
+            rank += 3;
+        }
+
+        if (dColorsToGet == dCount) {
+            // if the whole tube of the Donor is filled by this color
+            rank += 2;
+        }
+
+        if (dColorsToGet > 4 - rCount) {
+            // if the Donor tube is not completely emptied after the move
+            rank -= 4;
+        }
+
+        if (dColorsToGet + rColorsToGet == 4) {
+            // if the donor and recipient will give a filled closed tube,
+            // the fewer colors movement will be the higher rank.
+            rank += 4 - count;
+        }
+
+        // -----------------------------------
+        // end of ranking
+        // -----------------------------------
+        return rank;
+    }
+
     /**
      * Doing move
      *
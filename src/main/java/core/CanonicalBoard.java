@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+import java.util.Arrays;
+
+/**
+ * The canonical form of the board: the same board for all boards which differ by the order of tubes
+ * and by numbers of colors only. Such boards are solved by the same moves, if tubes and colors of the
+ * moves are renamed.<br>
+ * The hash value of the board doesn't depend on the order of tubes already, and the canonical form
+ * removes colors too. Tubes are sorted by signatures first. The signature doesn't depend on color
+ * numbers: it starts from the pattern of the tube (which cells have the same color), then every color
+ * gets signatures of the tubes and cells where it lies, and every tube gets signatures of its colors
+ * from the bottom to the top, and so on for several rounds. Then colors are renamed by their first
+ * appearance, from the first tube to the last and from the bottom cell to the top one, and the renamed
+ * tubes are sorted again.<br>
+ * It is a quick normal form, not the full search of all renamings: two boards with the same form are
+ * always the same board, but some of the same boards may get different forms, when different tubes
+ * have equal signatures. Then the solution cache just misses.<br>
+ * The form keeps where every tube and color came from, so stored moves can be translated to the form
+ * and back.
+ *
+ * @see SolutionCache
+ * @see ColorMoveItem#storeMove()
+ */
+public final class CanonicalBoard {
+
+    /**
+     * How many times signatures of tubes and colors are refined.
+     */
+    private static final int ROUNDS = 3;
+
+    /**
+     * Stored tubes of the canonical form, sorted.
+     */
+    private final int[] tubes;
+
+    /**
+     * Index of the source board's tube for every tube of the form.
+     */
+    private final int[] tubeOrder;
+
+    /**
+     * Index of the form's tube for every tube of the source board.
+     */
+    private final int[] tubePlace;
+
+    /**
+     * Color of the source board for every color of the form, 0 is the empty cell.
+     */
+    private final int[] colors;
+
+    /**
+     * Color of the form for every color of the source board.
+     */
+    private final int[] labels = new int[256];
+
+    /**
+     * The hash value of the canonical form.
+     */
+    private final long hash;
+
+    /**
+     * Creates the canonical form of the board model.
+     *
+     * @param bm the board model
+     */
+    public CanonicalBoard(BoardModel bm) {
+        this(new PackedBoard(bm).getTubes(), bm.size());
+    }
+
+    /**
+     * Creates the canonical form of the packed board.
+     *
+     * @param pb the packed board
+     */
+    public CanonicalBoard(PackedBoard pb) {
+        this(pb.getTubes(), pb.size());
+    }
+
+    /**
+     * Creates the canonical form of stored tubes.
+     *
+     * @param source stored tubes of the board
+     * @param size   number of tubes
+     */
+    public CanonicalBoard(int[] source, int size) {
+        tubes = new int[size];
+        tubeOrder = new int[size];
+        tubePlace = new int[size];
+
+        // signatures of tubes and colors, they don't depend on color numbers. A tube starts from its
+        // pattern, a color gets the signatures of tubes where it lies, and a tube gets the signatures
+        // of its colors, so boards that differ by color numbers get the same signatures
+        long[] tubeSigs = new long[size];
+        long[] colorSigs = new long[256];
+        for (int i = 0; i < size; i++) {
+            tubeSigs[i] = pattern(source[i]);
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < size; i++) {
+                for (int shift = 0; shift < 32 && (source[i] >>> shift) != 0; shift += 8) {
+                    colorSigs[(source[i] >>> shift) & 0xff] = 0;
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                for (int shift = 0; shift < 32 && (source[i] >>> shift) != 0; shift += 8) {
+                    colorSigs[(source[i] >>> shift) & 0xff] += mix(tubeSigs[i] + shift);
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                long sig = pattern(source[i]);
+                for (int shift = 0; shift < 32 && (source[i] >>> shift) != 0; shift += 8) {
+                    sig = mix(sig + colorSigs[(source[i] >>> shift) & 0xff]);
+                }
+                tubeSigs[i] = sig;
+            }
+        }
+        sortTubes(tubeSigs, source, size);
+
+        // rename colors by the first appearance
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int stored = source[tubeOrder[i]];
+            for (int j = 0; j < 4 && stored != 0; j++) {
+                int color = stored & 0xff;
+                if (labels[color] == 0) {
+                    labels[color] = ++count;
+                }
+                stored >>>= 8;
+            }
+        }
+        colors = new int[count + 1];
+        for (int color = 1; color < 256; color++) {
+            if (labels[color] != 0) {
+                colors[labels[color]] = color;
+            }
+        }
+
+        // and sort renamed tubes
+        int[] renamed = new int[size];
+        for (int i = 0; i < size; i++) {
+            renamed[i] = rename(source[i]);
+        }
+        sortTubes(null, renamed, size);
+
+        long h = 0;
+        for (int i = 0; i < size; i++) {
+            tubes[i] = renamed[tubeOrder[i]];
+            tubePlace[tubeOrder[i]] = i;
+            h += BoardModel.tubeHash(tubes[i]);
+        }
+        hash = h;
+    }
+
+    /**
+     * Gets the number of tubes.
+     *
+     * @return number of tubes
+     */
+    public int size() {
+        return tubes.length;
+    }
+
+    /**
+     * Gets the number of colors.
+     *
+     * @return number of different colors of the board
+     */
+    public int colorsCount() {
+        return colors.length - 1;
+    }
+
+    /**
+     * Gets the stored tube of the canonical form.
+     *
+     * @param idx index of the tube
+     * @return stored colors of the tube
+     */
+    public int getTube(int idx) {
+        return tubes[idx];
+    }
+
+    /**
+     * Gets the hash value of the canonical form. It is the same as the hash value of the board made
+     * of the form's tubes.
+     *
+     * @return hash value
+     * @see BoardModel#calculateHash()
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Translates the stored move of the source board to the canonical form.
+     *
+     * @param move the stored move
+     * @return the stored move at the canonical form
+     * @see ColorMoveItem#storeMove()
+     */
+    public int toCanonical(int move) {
+        return (tubePlace[(move >> 24) & 0xff] << 24) | (tubePlace[(move >> 16) & 0xff] << 16)
+                | (move & 0xff00) | labels[move & 0xff];
+    }
+
+    /**
+     * Translates the stored move of the canonical form to the source board.
+     *
+     * @param move the stored move at the canonical form
+     * @return the stored move
+     * @see ColorMoveItem#storeMove()
+     */
+    public int fromCanonical(int move) {
+        return (tubeOrder[(move >> 24) & 0xff] << 24) | (tubeOrder[(move >> 16) & 0xff] << 16)
+                | (move & 0xff00) | colors[move & 0xff];
+    }
+
+    /**
+     * Compares canonical forms.
+     *
+     * @param o another canonical form
+     * @return true if both forms have the same tubes, i.e. their boards differ by the order of tubes
+     * and numbers of colors only
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CanonicalBoard
+                && hash == ((CanonicalBoard) o).hash
+                && Arrays.equals(tubes, ((CanonicalBoard) o).tubes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hash);
+    }
+
+    /**
+     * Renames colors of the stored tube.
+     *
+     * @param stored stored colors of the source tube
+     * @return stored colors of the canonical tube
+     */
+    private int rename(int stored) {
+        int result = 0;
+        for (int shift = 0; shift < 32 && (stored >>> shift) != 0; shift += 8) {
+            result |= labels[(stored >>> shift) & 0xff] << shift;
+        }
+        return result;
+    }
+
+    /**
+     * Sorts indexes of tubes by keys, and tubes with equal keys by stored colors. Boards have few
+     * tubes, so it's the insertion sort.
+     *
+     * @param keys   keys of tubes, or null to sort by stored colors only
+     * @param stored stored colors of tubes
+     * @param size   number of tubes
+     */
+    private void sortTubes(long[] keys, int[] stored, int size) {
+        for (int i = 0; i < size; i++) {
+            int j = i;
+            while (j > 0 && greater(keys, stored, tubeOrder[j - 1], i)) {
+                tubeOrder[j] = tubeOrder[j - 1];
+                j--;
+            }
+            tubeOrder[j] = i;
+        }
+    }
+
+    /**
+     * Compares tubes by keys and then by stored colors.
+     *
+     * @param keys   keys of tubes, or null
+     * @param stored stored colors of tubes
+     * @param i      index of the first tube
+     * @param j      index of the second tube
+     * @return true if the first tube goes after the second one
+     */
+    private static boolean greater(long[] keys, int[] stored, int i, int j) {
+        if (keys != null && keys[i] != keys[j]) {
+            return keys[i] > keys[j];
+        }
+        return Integer.compareUnsigned(stored[i], stored[j]) > 0;
+    }
+
+    /**
+     * Mixes bits of the signature, as BoardModel.tubeHash() does.
+     *
+     * @param z the value
+     * @return mixed value
+     * @see BoardModel#tubeHash(int)
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Gets the pattern of the stored tube: colors are renamed by the first appearance inside the tube
+     * only, so the pattern shows which cells have the same color.
+     *
+     * @param stored stored colors of the tube
+     * @return the pattern, stored as the tube
+     */
+    static int pattern(int stored) {
+        int result = 0;
+        int count = 0;
+        for (int shift = 0; shift < 32 && (stored >>> shift) != 0; shift += 8) {
+            int color = (stored >>> shift) & 0xff;
+            int label = 0;
+            for (int prev = 0; prev < shift; prev += 8) {
+                if (((stored >>> prev) & 0xff) == color) {
+                    label = (result >>> prev) & 0xff;
+                    break;
+                }
+            }
+            result |= ((label != 0) ? label : ++count) << shift;
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The saved state of the depth-first search of the tree and the stack engines, so the long search
+ * may be continued after it was cancelled or the application was closed. It keeps the start board,
+ * the break value of the run, the path of the search with all moves that were not tried yet, and the
+ * transposition table with visited boards and dead ends.<br>
+ * The checkpoint is taken at the search thread, and it only copies arrays there. The copy is written
+ * by another thread into the binary file: the header, the path, and occupied entries of the table,
+ * with the checksum at the end. The file is written under the temporary name and renamed then, so it's
+ * never half-written.<br>
+ * The search continues from the same path, but the moves which were tried before the checkpoint are
+ * not reported to the finder of dead ends and to the sleep sets, so boards of the path are not marked
+ * as dead ends, and the sleep sets of the path are empty. The found solution is the same.
+ *
+ * @see Solver#setCheckpoint(File, int)
+ * @see Solver#setResume(Checkpoint)
+ */
+public final class Checkpoint {
+
+    /**
+     * The name of the checkpoint file at the application folder.
+     */
+    public static final String FILE_NAME = ".$checkpoint.dat";
+
+    /**
+     * The first bytes of the file: "JCCP".
+     */
+    private static final int MAGIC = 0x4A434350;
+
+    /**
+     * The version of the file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Stored tubes of the start board.
+     */
+    private final int[] tubes;
+
+    /**
+     * The break value of the run.
+     *
+     * @see Solver#setBreakStop(int)
+     */
+    final int breakStop;
+
+    /**
+     * Moves counted for the break after the last break.
+     */
+    final int breakCount;
+
+    /**
+     * All processed moves of the solver.
+     */
+    final long processedMoves;
+
+    /**
+     * The working time of the solver, in milliseconds.
+     */
+    final double workingTime;
+
+    /**
+     * The current level of the path.
+     */
+    final int level;
+
+    /**
+     * Index of the first move of every level of the path.
+     */
+    final int[] levelStart;
+
+    /**
+     * Index after the last move of every level of the path.
+     */
+    final int[] levelEnd;
+
+    /**
+     * Stored moves of all levels.
+     *
+     * @see ColorMoveItem#storeMove()
+     */
+    final int[] moves;
+
+    /**
+     * Keys of the transposition table, 0 is the empty slot. The copy of the table keeps empty slots,
+     * they are skipped when the file is written.
+     */
+    long[] tableKeys;
+
+    /**
+     * Data of the transposition table entries.
+     */
+    int[] tableData;
+
+    /**
+     * Is the board with the zero hash value at the table?
+     */
+    boolean hasZero;
+
+    /**
+     * Data of the board with the zero hash value.
+     */
+    int zeroData;
+
+    /**
+     * Number of boards the table has forgotten.
+     */
+    long evictions;
+
+    /**
+     * Creates the checkpoint. Arrays of the path are copied, the table copies itself.
+     *
+     * @param tubes          stored tubes of the start board
+     * @param breakStop      the break value of the run
+     * @param breakCount     moves counted after the last break
+     * @param processedMoves all processed moves of the solver
+     * @param workingTime    the working time of the solver
+     * @param level          the current level
+     * @param levelStart     index of the first move of every level
+     * @param levelEnd       index after the last move of every level
+     * @param moves          stored moves of all levels
+     * @param table          the transposition table
+     */
+    Checkpoint(int[] tubes, int breakStop, int breakCount, long processedMoves, double workingTime,
+               int level, int[] levelStart, int[] levelEnd, int[] moves, TranspositionTable table) {
+        this.tubes = tubes.clone();
+        this.breakStop = breakStop;
+        this.breakCount = breakCount;
+        this.processedMoves = processedMoves;
+        this.workingTime = workingTime;
+        this.level = level;
+        this.levelStart = Arrays.copyOf(levelStart, level + 1);
+        this.levelEnd = Arrays.copyOf(levelEnd, level + 1);
+        this.moves = Arrays.copyOf(moves, levelEnd[level]);
+        table.copyTo(this);
+    }
+
+    /**
+     * Creates the checkpoint read from the file.
+     *
+     * @param in the stream of the file after the header
+     * @throws IOException if the file can't be read or it's broken
+     */
+    private Checkpoint(DataInputStream in) throws IOException {
+        tubes = readInts(in, 256);
+        breakStop = in.readInt();
+        breakCount = in.readInt();
+        processedMoves = in.readLong();
+        workingTime = in.readDouble();
+        level = in.readInt();
+        if (level < 0 || level > 1 << 16) {
+            throw new IOException("Wrong checkpoint level");
+        }
+        levelStart = new int[level + 1];
+        levelEnd = new int[level + 1];
+        for (int i = 0; i <= level; i++) {
+            levelStart[i] = in.readInt();
+            levelEnd[i] = in.readInt();
+        }
+        moves = readInts(in, 1 << 24);
+        for (int i = 0; i <= level; i++) {
+            if (levelStart[i] < 0 || levelStart[i] >= levelEnd[i] || levelEnd[i] > moves.length
+                    || (i > 0 && levelStart[i] != levelEnd[i - 1])) {
+                throw new IOException("Wrong checkpoint path");
+            }
+        }
+
+        evictions = in.readLong();
+        hasZero = in.readBoolean();
+        zeroData = in.readInt();
+        int count = in.readInt();
+        if (count < 0 || count > 1 << 30) {
+            throw new IOException("Wrong checkpoint table");
+        }
+        tableKeys = new long[count];
+        tableData = new int[count];
+        for (int i = 0; i < count; i++) {
+            tableKeys[i] = in.readLong();
+            tableData[i] = in.readInt();
+        }
+    }
+
+    /**
+     * Loads the checkpoint from the file.
+     *
+     * @param file the checkpoint file
+     * @return the checkpoint, or null if the file doesn't exist or it's broken
+     */
+    public static Checkpoint load(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(new FileInputStream(file), 1 << 16), crc))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            Checkpoint checkpoint = new Checkpoint(in);
+            long sum = crc.getValue();
+            return (in.readLong() == sum) ? checkpoint : null;
+        } catch (IOException | OutOfMemoryError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Saves the checkpoint into the file. It is written under the temporary name first.
+     *
+     * @param file the checkpoint file
+     * @throws IOException if the file can't be written
+     */
+    void save(File file) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16), crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeInts(out, tubes, tubes.length);
+            out.writeInt(breakStop);
+            out.writeInt(breakCount);
+            out.writeLong(processedMoves);
+            out.writeDouble(workingTime);
+            out.writeInt(level);
+            for (int i = 0; i <= level; i++) {
+                out.writeInt(levelStart[i]);
+                out.writeInt(levelEnd[i]);
+            }
+            writeInts(out, moves, moves.length);
+
+            // empty slots of the table are not written
+            out.writeLong(evictions);
+            out.writeBoolean(hasZero);
+            out.writeInt(zeroData);
+            int count = 0;
+            for (long key : tableKeys) {
+                if (key != 0) {
+                    count++;
+                }
+            }
+            out.writeInt(count);
+            for (int i = 0; i < tableKeys.length; i++) {
+                if (tableKeys[i] != 0) {
+                    out.writeLong(tableKeys[i]);
+                    out.writeInt(tableData[i]);
+                }
+            }
+            out.flush();
+            out.writeLong(crc.getValue());
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Is this the checkpoint of the board?
+     *
+     * @param board the start board
+     * @return true if the board has the same tubes as the start board of the checkpoint
+     */
+    public boolean matches(BoardModel board) {
+        if (board.size() != tubes.length) {
+            return false;
+        }
+        for (int i = 0; i < tubes.length; i++) {
+            if (board.get(i).storeColors() != tubes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the break value of the saved run.
+     *
+     * @return the break value
+     * @see Solver#setBreakStop(int)
+     */
+    public int getBreakStop() {
+        return breakStop;
+    }
+
+    /**
+     * Gets the number of moves processed before the checkpoint.
+     *
+     * @return number of moves
+     */
+    public long getProcessedMoves() {
+        return processedMoves;
+    }
+
+    /**
+     * Gets the working time of the solver before the checkpoint.
+     *
+     * @return time in milliseconds
+     */
+    public double getWorkingTime() {
+        return workingTime;
+    }
+
+    /**
+     * Writes the length and the values of the array.
+     *
+     * @param out   the stream
+     * @param array the array
+     * @param count number of values
+     * @throws IOException if the stream can't be written
+     */
+    private static void writeInts(DataOutputStream out, int[] array, int count) throws IOException {
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeInt(array[i]);
+        }
+    }
+
+    /**
+     * Reads the array written by writeInts().
+     *
+     * @param in       the stream
+     * @param maxCount the maximum length of the array
+     * @return the array
+     * @throws IOException if the stream can't be read or the length is wrong
+     */
+    private static int[] readInts(DataInputStream in, int maxCount) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > maxCount) {
+            throw new IOException("Wrong checkpoint array");
+        }
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = in.readInt();
+        }
+        return result;
+    }
+
+}
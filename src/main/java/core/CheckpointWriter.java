@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes checkpoints of the search in its own thread, so the search doesn't wait for the disk. The
+ * search hands over the checkpoint and goes on. If the previous checkpoint is still being written,
+ * the new one waits, and only the latest one is written then.
+ *
+ * @see Checkpoint
+ */
+class CheckpointWriter implements Runnable {
+
+    /**
+     * The checkpoint file.
+     */
+    private final File file;
+
+    /**
+     * The checkpoint to write next, or null.
+     */
+    private final AtomicReference<Checkpoint> next = new AtomicReference<>();
+
+    /**
+     * The writer thread.
+     */
+    private final Thread thread;
+
+    /**
+     * It becomes <i>true</i> when no more checkpoints will come.
+     */
+    private volatile boolean finished;
+
+    /**
+     * It becomes <i>true</i> when the file can't be written. Checkpoints are dropped then.
+     */
+    private volatile boolean failed;
+
+    /**
+     * Creates the writer and starts its thread.
+     *
+     * @param file the checkpoint file
+     */
+    CheckpointWriter(File file) {
+        this.file = file;
+        thread = new Thread(this, "checkpoint writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Hands over the checkpoint to write.
+     *
+     * @param checkpoint the checkpoint
+     */
+    void offer(Checkpoint checkpoint) {
+        if (!failed) {
+            next.set(checkpoint);
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Writes the last checkpoint, if it wasn't written yet, and stops the thread.
+     */
+    void finish() {
+        finished = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the thread without writing and deletes the checkpoint file, i.e. when the search is over.
+     */
+    void delete() {
+        next.set(null);
+        finish();
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            Checkpoint checkpoint = next.getAndSet(null);
+            if (checkpoint != null) {
+                try {
+                    checkpoint.save(file);
+                } catch (IOException e) {
+                    failed = true;
+                }
+            } else if (finished) {
+                return;
+            } else {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+}
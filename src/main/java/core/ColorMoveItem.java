@@ -100,6 +100,9 @@ public class ColorMoveItem {
         count = bmAfter.moveColor(idxFrom, idxTo);
         result = (count > 0);
 
+        // the new board hash is made from the parent's one
+        bmAfter.updateHash(bmBefore, idxFrom, idxTo);
+
         if (!bmAfter.isSolved()) { // if not solved
 
             // now check what we've got after the move
@@ -110,7 +113,7 @@ public class ColorMoveItem {
             }
 /*
  *  remove "one of parents"
- *  use every board's crc32 hash value instead
+ *  use every board's hash value instead
  *
             if (result) {
                 // is it new configuration? wasn't there before? 
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+/**
+ * The thread-safe set of primitive long values. It is shared by several search engines working
+ * at the same time, so they don't calculate the same boards twice.<br>
+ * Values are spread over several plain sets (stripes), and every stripe is locked separately.
+ * So threads rarely wait each other, and no objects are created at adding or searching a value.
+ * <br>
+ * The set may have the maximum size. When the stripe is full, it doesn't keep new values anymore, and
+ * the set becomes full.
+ *
+ * @see LongHashSet
+ * @see LongSet#isFull()
+ */
+public class ConcurrentLongHashSet implements LongSet {
+
+    /**
+     * The number of bits of the stripe index.
+     */
+    private static final int STRIPE_BITS = 6;
+
+    /**
+     * The number of stripes.
+     */
+    private static final int STRIPES = 1 << STRIPE_BITS;
+
+    /**
+     * The stripes.
+     */
+    private final LongHashSet[] stripes = new LongHashSet[STRIPES];
+
+    /**
+     * The maximum number of values of one stripe.
+     */
+    private final int stripeLimit;
+
+    /**
+     * It becomes <i>true</i> when some value was not kept.
+     */
+    private volatile boolean full;
+
+    /**
+     * Creates the set without the size limit.
+     */
+    public ConcurrentLongHashSet() {
+        this(0);
+    }
+
+    /**
+     * Creates the set with the maximum size.
+     *
+     * @param megabytes the maximum size of the set in megabytes, 0 means no limit
+     */
+    public ConcurrentLongHashSet(int megabytes) {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new LongHashSet(1 << 12);
+        }
+        if (megabytes > 0) {
+            // the stripe's array grows when it's half full, so it never exceeds this capacity
+            long capacity = Long.highestOneBit(megabytes * (1L << 20) / 8 / STRIPES);
+            stripeLimit = (int) Math.max(1 << 11, Math.min(capacity, 1 << 30) / 2);
+        } else {
+            stripeLimit = Integer.MAX_VALUE;
+        }
+    }
+
+    @Override
+    public boolean add(long value) {
+        LongHashSet stripe = stripeOf(value);
+        synchronized (stripe) {
+            if (stripe.size() >= stripeLimit) {
+                if (stripe.contains(value)) {
+                    return false;
+                }
+                full = true;
+                return true;
+            }
+            return stripe.add(value);
+        }
+    }
+
+    @Override
+    public boolean contains(long value) {
+        LongHashSet stripe = stripeOf(value);
+        synchronized (stripe) {
+            return stripe.contains(value);
+        }
+    }
+
+    @Override
+    public int size() {
+        int result = 0;
+        for (LongHashSet stripe : stripes) {
+            synchronized (stripe) {
+                result += stripe.size();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the current capacity of the set, i.e. the sum of capacities of all stripes.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        int result = 0;
+        for (LongHashSet stripe : stripes) {
+            synchronized (stripe) {
+                result += stripe.capacity();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the current load factor of the set.
+     *
+     * @return ratio of the stored values to the capacity
+     */
+    public double getLoadFactor() {
+        return (double) size() / capacity();
+    }
+
+    @Override
+    public void clear() {
+        for (LongHashSet stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+        full = false;
+    }
+
+    @Override
+    public boolean isFull() {
+        return full;
+    }
+
+    /**
+     * Gets the stripe for the value. High bits of the value are used here, while the stripe
+     * itself uses low bits of the mixed value.
+     *
+     * @param value the value
+     * @return the stripe
+     */
+    private LongHashSet stripeOf(long value) {
+        return stripes[(int) ((value ^ (value >>> 32)) * 0x9e3779b97f4a7c15L >>> (64 - STRIPE_BITS))];
+    }
+
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Finds boards that have no solution at all, the dead ends. The search engine tells it about every
+ * level it enters and leaves, and about every move that has failed. Dead ends are marked at the
+ * table that is kept between runs of the Solver, so the next runs skip these boards at once.<br>
+ * The board is a dead end when all its moves lead to dead ends. But the move may also lead back
+ * to the board of the current path, and we don't know yet whether that board has a solution. Then
+ * the board waits (is pending) until the board of the path is finished. If that board is a dead end
+ * and all its subtree refers to itself only, all the pending boards of the subtree are dead ends too.
+ * The move to the board that was passed earlier but isn't proven to be a dead end makes the board
+ * unknown: it's not a dead end.
+ *
+ * @see Solver#getDeadStatesCount()
+ */
+class DeadEnds {
+
+    /**
+     * The table to mark dead ends.
+     */
+    private final TranspositionTable table;
+
+    /**
+     * Hash values of boards of the current path, one by level.
+     */
+    private long[] pathHash = new long[64];
+
+    /**
+     * Order numbers of boards of the current path: boards are numbered as they are entered.
+     */
+    private long[] pathOrder = new long[64];
+
+    /**
+     * It stays <i>true</i> while all tried moves of the level lead to dead ends, back to the path
+     * or to pending boards.
+     */
+    private boolean[] allDead = new boolean[64];
+
+    /**
+     * The least order number of the board on the path or pending which the level's subtree refers to.
+     */
+    private long[] lowOrder = new long[64];
+
+    /**
+     * The number of pending boards when the level was entered.
+     */
+    private int[] pendingStart = new int[64];
+
+    /**
+     * The current level.
+     */
+    private int level;
+
+    /**
+     * The order number of the next entered board.
+     */
+    private long nextOrder;
+
+    /**
+     * Hash values of pending boards.
+     */
+    private long[] pending = new long[64];
+
+    /**
+     * Order numbers of pending boards.
+     */
+    private long[] pendingOrder = new long[64];
+
+    /**
+     * The number of pending boards.
+     */
+    private int pendingCount;
+
+    /**
+     * Indexes of pending boards by hash values.
+     */
+    private final LongIntHashMap pendingIndex;
+
+    /**
+     * Creates the finder.
+     *
+     * @param table the table to mark dead ends
+     */
+    DeadEnds(TranspositionTable table) {
+        this.table = table;
+        // if the map is full, some boards are not pending, the proof is just weaker
+        pendingIndex = new LongIntHashMap(1 << 12, table.getMaxCapacity() >> 1);
+    }
+
+    /**
+     * Is this board a dead end?
+     *
+     * @param hash hash value of the board
+     * @return true if the board was proven to have no solution
+     */
+    boolean contains(long hash) {
+        return table.isDead(hash);
+    }
+
+    /**
+     * Starts the search from the start board.
+     *
+     * @param hash hash value of the start board
+     */
+    void start(long hash) {
+        level = -1;
+        truncatePending(0);
+        enter(hash);
+    }
+
+    /**
+     * Continues the search from the saved path. Moves of the path that were tried before are unknown,
+     * so boards of the path will not be proven to be dead ends.
+     *
+     * @param hashes hash values of boards of the path, from the start board
+     * @param count  number of boards
+     * @see Checkpoint
+     */
+    void resume(long[] hashes, int count) {
+        start(hashes[0]);
+        for (int i = 1; i < count; i++) {
+            enter(hashes[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            allDead[i] = false;
+        }
+    }
+
+    /**
+     * Goes to the next level after the successful move.
+     *
+     * @param hash hash value of the new board
+     */
+    void enter(long hash) {
+        level++;
+        if (level == pathHash.length) {
+            int size = level << 1;
+            pathHash = Arrays.copyOf(pathHash, size);
+            pathOrder = Arrays.copyOf(pathOrder, size);
+            allDead = Arrays.copyOf(allDead, size);
+            lowOrder = Arrays.copyOf(lowOrder, size);
+            pendingStart = Arrays.copyOf(pendingStart, size);
+        }
+        pathHash[level] = hash;
+        pathOrder[level] = nextOrder;
+        allDead[level] = true;
+        lowOrder[level] = nextOrder;
+        pendingStart[level] = pendingCount;
+        nextOrder++;
+    }
+
+    /**
+     * The move of the current level has led to the board that was passed before. Moves that led
+     * to dead ends don't need to be reported.
+     *
+     * @param hash hash value of the board after the move
+     */
+    void visited(long hash) {
+        // the move may lead to the same board, when it only swaps tubes
+        for (int i = level; i >= 0; i--) {
+            if (pathHash[i] == hash) {
+                lowOrder[level] = Math.min(lowOrder[level], pathOrder[i]);
+                return;
+            }
+        }
+        int idx = pendingIndex.get(hash, -1);
+        if (idx >= 0) {
+            // the pending board waits for some board of the path
+            lowOrder[level] = Math.min(lowOrder[level], pendingOrder[idx]);
+            return;
+        }
+        allDead[level] = false;
+    }
+
+    /**
+     * Is this board on the current path? The table checks it itself, but it may forget boards of the
+     * path when it's full.
+     *
+     * @param hash hash value of the board
+     * @return true if the board is on the path
+     */
+    boolean isOnPath(long hash) {
+        for (int i = level; i >= 0; i--) {
+            if (pathHash[i] == hash) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Leaves the current level when all its moves were tried.
+     */
+    void leave() {
+        int first = pendingStart[level];
+        if (!allDead[level]) {
+            // nothing is proven here
+            truncatePending(first);
+        } else if (lowOrder[level] >= pathOrder[level]) {
+            // the subtree refers to itself only
+            table.setDead(pathHash[level]);
+            for (int i = first; i < pendingCount; i++) {
+                table.setDead(pending[i]);
+            }
+            truncatePending(first);
+        } else if (pendingIndex.put(pathHash[level], pendingCount)) {
+            if (pendingCount == pending.length) {
+                pending = Arrays.copyOf(pending, pendingCount << 1);
+                pendingOrder = Arrays.copyOf(pendingOrder, pendingCount << 1);
+            }
+            pending[pendingCount] = pathHash[level];
+            pendingOrder[pendingCount] = pathOrder[level];
+            pendingCount++;
+        } else {
+            // there's no room to wait
+            allDead[level] = false;
+            truncatePending(first);
+        }
+
+        if (level > 0) {
+            if (allDead[level]) {
+                lowOrder[level - 1] = Math.min(lowOrder[level - 1], lowOrder[level]);
+            } else {
+                allDead[level - 1] = false;
+            }
+        }
+        level--;
+    }
+
+    /**
+     * Returns to the start board after the break. All the levels are left unfinished.
+     */
+    void restart() {
+        level = 0;
+        truncatePending(0);
+        allDead[0] = false;
+    }
+
+    /**
+     * Removes pending boards from the end of the list.
+     *
+     * @param count the number of pending boards to keep
+     */
+    private void truncatePending(int count) {
+        while (pendingCount > count) {
+            pendingCount--;
+            pendingIndex.remove(pending[pendingCount]);
+        }
+    }
+
+}
@@ -0,0 +1,749 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * The solution cache that keeps solutions on the disk between runs of the application, so the game
+ * which was solved once is solved at once the next time. Two files are used: <ul>
+ * <li><b>the data file</b> - solutions are appended there, and they are never changed. Every record
+ * has the hash value and tubes of the canonical form, stored moves of the solution, and the CRC.
+ * <li><b>the index file</b> - the hash table of records mapped into the memory. Every slot has the
+ * hash value, the offset of the record at the data file and the time of the last use. So the board
+ * is found by one or two reads of the mapped memory and one read of the data file.</ul>
+ * When the data file exceeds the maximum size, the records that were used the longest time ago are
+ * removed, and the rest is written to the new data file. If the application was stopped while
+ * writing, or the index file doesn't match the data file, the index is made again from records of
+ * the data file, and broken records at its end are cut off.<br>
+ * If the files can't be used, the cache keeps solutions in the memory only.
+ *
+ * @see TubesIO#getAppDir()
+ * @see CanonicalBoard
+ */
+public class DiskSolutionCache extends SolutionCache {
+
+    /**
+     * The name of the data file.
+     */
+    public static final String DATA_FILE = "solutions.dat";
+
+    /**
+     * The name of the index file.
+     */
+    public static final String INDEX_FILE = "solutions.idx";
+
+    /**
+     * The signature of the data file, "JCSD".
+     */
+    private static final int DATA_MAGIC = 0x4A435344;
+
+    /**
+     * The signature of the index file, "JCSI".
+     */
+    private static final int INDEX_MAGIC = 0x4A435349;
+
+    /**
+     * The signature of the record, "JCSR".
+     */
+    private static final int RECORD_MAGIC = 0x4A435352;
+
+    /**
+     * The version of both files.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Bytes of the data file's header: the signature and the version. So the offset of every record
+     * is not 0, and 0 marks the empty slot of the index.
+     */
+    private static final int DATA_HEADER_BYTES = 8;
+
+    /**
+     * Bytes of the index file's header: the signature, the version, the number of slots, the number
+     * of records, the clock of uses and the length of the data file.
+     */
+    private static final int INDEX_HEADER_BYTES = 32;
+
+    /**
+     * Bytes of one slot of the index: the hash value, the offset of the record and the last use.
+     */
+    private static final int SLOT_BYTES = 16;
+
+    /**
+     * Bytes of the record without tubes and moves: the signature, the hash value, the number of tubes,
+     * the number of moves and the CRC.
+     */
+    private static final int RECORD_BYTES = 24;
+
+    /**
+     * The least number of slots of the index.
+     */
+    private static final int MIN_SLOTS = 1 << 12;
+
+    /**
+     * The largest size of the data file in megabytes. Offsets of records are stored at the index as
+     * integers, so the data file must be shorter than 2 GB.
+     */
+    public static final int MAX_MEGABYTES = 2047;
+
+    /**
+     * The data file.
+     */
+    private final File dataFile;
+
+    /**
+     * The index file.
+     */
+    private final File indexFile;
+
+    /**
+     * The maximum size of the data file, in bytes.
+     */
+    private final long maxBytes;
+
+    /**
+     * The data file's channel, or null if the disk is not used.
+     */
+    private FileChannel data;
+
+    /**
+     * The index file's channel.
+     */
+    private FileChannel indexChannel;
+
+    /**
+     * The mapped index file.
+     */
+    private MappedByteBuffer index;
+
+    /**
+     * Number of slots of the index, it's the power of two.
+     */
+    private int slotCount;
+
+    /**
+     * Number of records at the index.
+     */
+    private int count;
+
+    /**
+     * Counts uses of records, the last use of every record is the value of the clock.
+     */
+    private int clock;
+
+    /**
+     * Length of the data file.
+     */
+    private long dataLength;
+
+    /**
+     * The record of the last found slot.
+     *
+     * @see #find(CanonicalBoard)
+     */
+    private ByteBuffer foundRecord;
+
+    /**
+     * Creates the cache and opens its files.
+     *
+     * @param capacity  maximum number of boards in the memory
+     * @param directory the folder of files, i.e. TubesIO.getAppDir()
+     * @param megabytes the maximum size of the data file, in megabytes. It's not larger than
+     *                  MAX_MEGABYTES
+     * @see #MAX_MEGABYTES
+     */
+    public DiskSolutionCache(int capacity, String directory, int megabytes) {
+        super(capacity);
+        dataFile = new File(directory, DATA_FILE);
+        indexFile = new File(directory, INDEX_FILE);
+        maxBytes = Math.min(Math.max(1, megabytes), MAX_MEGABYTES) * (1L << 20);
+        try {
+            open();
+        } catch (IOException e) {
+            closeFiles();
+        }
+    }
+
+    /**
+     * Is the disk used?
+     *
+     * @return false if files can't be used, and the cache keeps solutions in the memory only
+     */
+    public synchronized boolean isOpen() {
+        return data != null;
+    }
+
+    /**
+     * Gets the number of records at the data file.
+     *
+     * @return number of records
+     */
+    public synchronized int getStoredCount() {
+        return count;
+    }
+
+    /**
+     * Gets the length of the data file.
+     *
+     * @return length in bytes
+     */
+    public synchronized long getStoredBytes() {
+        return dataLength;
+    }
+
+    /**
+     * Writes everything to the disk and closes files. The cache keeps solutions in the memory only
+     * after that.
+     */
+    public synchronized void close() {
+        if (index != null) {
+            index.force();
+        }
+        closeFiles();
+    }
+
+    @Override
+    protected int[] load(CanonicalBoard board) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            int slot = find(board);
+            if (slot < 0) {
+                return null;
+            }
+            ByteBuffer record = foundRecord;
+            touch(slot);
+            int size = record.getInt(12);
+            int[] moves = new int[record.getInt(16)];
+            for (int i = 0; i < moves.length; i++) {
+                moves[i] = record.getInt(20 + (size + i) * 4);
+            }
+            return moves;
+        } catch (IOException e) {
+            closeFiles();
+            return null;
+        }
+    }
+
+    @Override
+    protected void store(CanonicalBoard board, int[] moves) {
+        if (data == null) {
+            return;
+        }
+        try {
+            int slot = find(board);
+            if (slot >= 0) {
+                if (foundRecord.getInt(16) <= moves.length) {
+                    // the disk has the same or shorter solution
+                    touch(slot);
+                    return;
+                }
+            }
+
+            ByteBuffer record = makeRecord(board, moves);
+            if (dataLength + record.capacity() > maxBytes) {
+                // the oldest records are removed
+                compact(maxBytes / 2 - record.capacity());
+                slot = find(board);
+            }
+            if (record.capacity() > maxBytes - DATA_HEADER_BYTES) {
+                return;
+            }
+
+            int offset = (int) dataLength;
+            write(data, record, dataLength);
+            dataLength += record.capacity();
+            if (slot < 0) {
+                slot = -slot - 1;
+                count++;
+            }
+            int pos = slotPos(slot);
+            index.putLong(pos, board.getHash());
+            index.putInt(pos + 8, offset);
+            index.putInt(pos + 12, ++clock);
+            writeHeader();
+
+            if (count > slotCount >> 1) {
+                resizeIndex(slotCount << 1);
+            }
+        } catch (IOException e) {
+            closeFiles();
+        }
+    }
+
+    /**
+     * Opens files, checks them, and makes the index again if it doesn't match the data file.
+     *
+     * @throws IOException if files can't be used
+     */
+    private void open() throws IOException {
+        data = FileChannel.open(dataFile.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        ByteBuffer header = ByteBuffer.allocate(DATA_HEADER_BYTES);
+        if (data.read(header, 0) != DATA_HEADER_BYTES
+                || header.getInt(0) != DATA_MAGIC || header.getInt(4) != VERSION) {
+            data.truncate(0);
+            header.putInt(0, DATA_MAGIC).putInt(4, VERSION);
+            write(data, header, 0);
+        }
+        dataLength = data.size();
+
+        indexChannel = FileChannel.open(indexFile.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        if (!loadIndex()) {
+            rebuildIndex();
+        }
+    }
+
+    /**
+     * Maps the index file and checks its header.
+     *
+     * @return true if the index matches the data file
+     * @throws IOException if the file can't be read
+     */
+    private boolean loadIndex() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_BYTES);
+        if (indexChannel.read(header, 0) != INDEX_HEADER_BYTES
+                || header.getInt(0) != INDEX_MAGIC || header.getInt(4) != VERSION) {
+            return false;
+        }
+        int slots = header.getInt(8);
+        if (slots < MIN_SLOTS || Integer.bitCount(slots) != 1
+                || indexChannel.size() != INDEX_HEADER_BYTES + (long) slots * SLOT_BYTES
+                || header.getLong(24) != dataLength) {
+            return false;
+        }
+        mapIndex(slots);
+        count = index.getInt(12);
+        clock = index.getInt(16);
+        return true;
+    }
+
+    /**
+     * Makes the index from records of the data file. Broken records at the end of the data file
+     * are cut off.
+     *
+     * @throws IOException if files can't be used
+     */
+    private void rebuildIndex() throws IOException {
+        mapIndex(MIN_SLOTS);
+        clearIndex();
+        long offset = DATA_HEADER_BYTES;
+        ByteBuffer record;
+        while (offset < dataLength && (record = readRecord(offset)) != null) {
+            int slot = find(record.getLong(4), record);
+            if (slot < 0) {
+                slot = -slot - 1;
+                count++;
+            }
+            int pos = slotPos(slot);
+            index.putLong(pos, record.getLong(4));
+            index.putInt(pos + 8, (int) offset);
+            index.putInt(pos + 12, ++clock);
+            offset += record.capacity();
+            if (count > slotCount >> 1) {
+                resizeIndex(slotCount << 1);
+            }
+        }
+        if (offset < dataLength) {
+            data.truncate(offset);
+            dataLength = offset;
+        }
+        writeHeader();
+    }
+
+    /**
+     * Makes the index larger. Records are put to new slots by their hash values, their offsets and
+     * last uses remain the same.
+     *
+     * @param slots new number of slots
+     * @throws IOException if the file can't be used
+     */
+    private void resizeIndex(int slots) throws IOException {
+        long[] hashes = new long[count];
+        int[] offsets = new int[count];
+        int[] uses = new int[count];
+        int n = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            int pos = slotPos(slot);
+            if (index.getInt(pos + 8) != 0) {
+                hashes[n] = index.getLong(pos);
+                offsets[n] = index.getInt(pos + 8);
+                uses[n] = index.getInt(pos + 12);
+                n++;
+            }
+        }
+        mapIndex(slots);
+        clearIndex();
+        for (int i = 0; i < n; i++) {
+            putSlot(hashes[i], offsets[i], uses[i]);
+        }
+        count = n;
+        writeHeader();
+    }
+
+    /**
+     * Removes the records that were used the longest time ago, so the rest takes the given size at
+     * most. The rest is written to the new data file in the order of their last uses, and the index
+     * is made again.
+     *
+     * @param size the size of the data file to keep, in bytes
+     * @throws IOException if files can't be used
+     */
+    private void compact(long size) throws IOException {
+        long[] entries = new long[count];
+        int n = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            int pos = slotPos(slot);
+            if (index.getInt(pos + 8) != 0) {
+                // the last use in the high half, the slot in the low half, so entries are sorted by use
+                entries[n++] = ((long) index.getInt(pos + 12) << 32) | slot;
+            }
+        }
+        Arrays.sort(entries, 0, n);
+
+        // the most recently used records first, while they fit
+        ByteBuffer[] records = new ByteBuffer[n];
+        long total = DATA_HEADER_BYTES;
+        int first = n;
+        while (first > 0) {
+            ByteBuffer record = readRecord(index.getInt(slotPos((int) entries[first - 1]) + 8));
+            if (record != null && total + record.capacity() > size) {
+                break;
+            }
+            first--;
+            records[first] = record;
+            total += (record != null) ? record.capacity() : 0;
+        }
+
+        File tempFile = new File(dataFile.getPath() + ".tmp");
+        try (FileChannel temp = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(DATA_HEADER_BYTES);
+            header.putInt(0, DATA_MAGIC).putInt(4, VERSION);
+            write(temp, header, 0);
+            long offset = DATA_HEADER_BYTES;
+            for (int i = first; i < n; i++) {
+                if (records[i] != null) {
+                    write(temp, records[i], offset);
+                    offset += records[i].capacity();
+                }
+            }
+            temp.force(true);
+        }
+        data.close();
+        Files.move(tempFile.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        data = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        dataLength = data.size();
+
+        // the index is made again, last uses are counted from 1
+        clearIndex();
+        clock = 0;
+        long offset = DATA_HEADER_BYTES;
+        for (int i = first; i < n; i++) {
+            if (records[i] != null) {
+                putSlot(records[i].getLong(4), (int) offset, ++clock);
+                count++;
+                offset += records[i].capacity();
+            }
+        }
+        writeHeader();
+    }
+
+    /**
+     * Finds the slot of the board. The record of the found slot is kept in foundRecord.
+     *
+     * @param board the canonical form of the board
+     * @return the slot of the board, or -(the empty slot where the board can be put)-1
+     * @throws IOException if the data file can't be read
+     */
+    private int find(CanonicalBoard board) throws IOException {
+        long hash = board.getHash();
+        int mask = slotCount - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (true) {
+            int pos = slotPos(slot);
+            int offset = index.getInt(pos + 8);
+            if (offset == 0) {
+                return -slot - 1;
+            }
+            if (index.getLong(pos) == hash) {
+                foundRecord = readRecord(offset);
+                if (sameTubes(foundRecord, board)) {
+                    return slot;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Finds the slot of the record's board.
+     *
+     * @param hash   the hash value of the record
+     * @param record the record
+     * @return the slot of the board, or -(the empty slot where the board can be put)-1
+     * @throws IOException if the data file can't be read
+     */
+    private int find(long hash, ByteBuffer record) throws IOException {
+        int mask = slotCount - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (true) {
+            int pos = slotPos(slot);
+            int offset = index.getInt(pos + 8);
+            if (offset == 0) {
+                return -slot - 1;
+            }
+            if (index.getLong(pos) == hash && sameTubes(readRecord(offset), record)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Puts the record into the first free slot for its hash value.
+     *
+     * @param hash   the hash value of the record
+     * @param offset offset of the record at the data file
+     * @param use    the last use of the record
+     */
+    private void putSlot(long hash, int offset, int use) {
+        int mask = slotCount - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (index.getInt(slotPos(slot) + 8) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        int pos = slotPos(slot);
+        index.putLong(pos, hash);
+        index.putInt(pos + 8, offset);
+        index.putInt(pos + 12, use);
+    }
+
+    /**
+     * Marks the record of the slot as the most recently used one.
+     *
+     * @param slot the slot
+     */
+    private void touch(int slot) {
+        index.putInt(slotPos(slot) + 12, ++clock);
+        index.putInt(16, clock);
+    }
+
+    /**
+     * Does the record keep the board?
+     *
+     * @param record the record, or null
+     * @param board  the canonical form of the board
+     * @return true if the record has the same tubes
+     */
+    private static boolean sameTubes(ByteBuffer record, CanonicalBoard board) {
+        if (record == null || record.getInt(12) != board.size()) {
+            return false;
+        }
+        for (int i = 0; i < board.size(); i++) {
+            if (record.getInt(20 + i * 4) != board.getTube(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Do records keep the same board?
+     *
+     * @param record1 the first record, or null
+     * @param record2 the second record
+     * @return true if records have the same tubes
+     */
+    private static boolean sameTubes(ByteBuffer record1, ByteBuffer record2) {
+        if (record1 == null || record1.getInt(12) != record2.getInt(12)) {
+            return false;
+        }
+        for (int i = 0; i < record2.getInt(12); i++) {
+            if (record1.getInt(20 + i * 4) != record2.getInt(20 + i * 4)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes the record of the solution.
+     *
+     * @param board the canonical form of the board
+     * @param moves stored moves of the solution at the canonical form
+     * @return the record
+     */
+    private static ByteBuffer makeRecord(CanonicalBoard board, int[] moves) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES + (board.size() + moves.length) * 4);
+        record.putInt(RECORD_MAGIC).putLong(board.getHash()).putInt(board.size()).putInt(moves.length);
+        for (int i = 0; i < board.size(); i++) {
+            record.putInt(board.getTube(i));
+        }
+        for (int move : moves) {
+            record.putInt(move);
+        }
+        record.putInt(crc(record, record.position()));
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Reads and checks the record of the data file.
+     *
+     * @param offset offset of the record
+     * @return the record, or null if the record is broken
+     * @throws IOException if the file can't be read
+     */
+    private ByteBuffer readRecord(long offset) throws IOException {
+        // most records are short, so one read gets the whole record
+        ByteBuffer head = ByteBuffer.allocate((int) Math.min(1024, dataLength - offset));
+        if (head.capacity() < RECORD_BYTES || !read(head, offset) || head.getInt(0) != RECORD_MAGIC) {
+            return null;
+        }
+        int size = head.getInt(12);
+        int moves = head.getInt(16);
+        if (size < 0 || moves < 0 || size + moves > (dataLength - offset) / 4) {
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES + (size + moves) * 4);
+        if (record.capacity() <= head.capacity()) {
+            System.arraycopy(head.array(), 0, record.array(), 0, record.capacity());
+        } else if (!read(record, offset)) {
+            return null;
+        }
+        int length = record.capacity() - 4;
+        return (record.getInt(length) == crc(record, length)) ? record : null;
+    }
+
+    /**
+     * Calculates the CRC of the record.
+     *
+     * @param record the record
+     * @param length number of bytes to count
+     * @return the CRC value
+     */
+    private static int crc(ByteBuffer record, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Reads the whole buffer from the data file.
+     *
+     * @param buffer   the buffer
+     * @param position position at the file
+     * @return false if the file ends before
+     * @throws IOException if the file can't be read
+     */
+    private boolean read(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (data.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the whole buffer to the channel.
+     *
+     * @param channel  the file channel
+     * @param buffer   the buffer, from 0 to its capacity
+     * @param position position at the file
+     * @throws IOException if the file can't be written
+     */
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * Maps the index file with the given number of slots.
+     *
+     * @param slots number of slots
+     * @throws IOException if the file can't be mapped
+     */
+    private void mapIndex(int slots) throws IOException {
+        slotCount = slots;
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                INDEX_HEADER_BYTES + (long) slots * SLOT_BYTES);
+        if (indexChannel.size() > index.capacity()) {
+            indexChannel.truncate(index.capacity());
+        }
+    }
+
+    /**
+     * Makes all slots of the index empty.
+     */
+    private void clearIndex() {
+        for (int pos = INDEX_HEADER_BYTES; pos < index.capacity(); pos += 8) {
+            index.putLong(pos, 0);
+        }
+        count = 0;
+    }
+
+    /**
+     * Writes the header of the index.
+     */
+    private void writeHeader() {
+        index.putInt(0, INDEX_MAGIC);
+        index.putInt(4, VERSION);
+        index.putInt(8, slotCount);
+        index.putInt(12, count);
+        index.putInt(16, clock);
+        index.putLong(24, dataLength);
+    }
+
+    /**
+     * Gets the position of the slot at the index.
+     *
+     * @param slot the slot
+     * @return the position
+     */
+    private static int slotPos(int slot) {
+        return INDEX_HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    /**
+     * Closes files, the cache keeps solutions in the memory only after that.
+     */
+    private void closeFiles() {
+        try {
+            if (data != null) {
+                data.close();
+            }
+            if (indexChannel != null) {
+                indexChannel.close();
+            }
+        } catch (IOException e) {
+            // files are not used anymore
+        }
+        data = null;
+        indexChannel = null;
+        index = null;
+    }
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+import java.util.Arrays;
+
+/**
+ * The set of primitive long values. It is used by the Solver to store hashes of all visited boards.<br>
+ * Values are kept in one plain array with open addressing and linear probing, so adding and
+ * searching a value takes O(1) time and doesn't create any objects (no boxing to Long).
+ * The array grows twice when the load factor exceeds the maximum.
+ * <br>
+ * Zero is used to mark an empty slot of the array, so the zero value itself is stored
+ * in the separate flag.
+ */
+public class LongHashSet implements LongSet {
+
+    /**
+     * The default capacity of the set.
+     */
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * When the load factor exceeds this value, the set will be resized.
+     */
+    private static final double MAX_LOAD_FACTOR = 0.5;
+
+    /**
+     * The values array. Its length is always a power of 2.
+     */
+    private long[] values;
+
+    /**
+     * The mask to get array index from the value's hash.
+     */
+    private int mask;
+
+    /**
+     * The number of values stored at the array. Zero value is not counted here.
+     */
+    private int count;
+
+    /**
+     * The number of values at the array when we have to resize it.
+     */
+    private int resizeAt;
+
+    /**
+     * It is <i>true</i> if the set contains zero value.
+     */
+    private boolean hasZero;
+
+    /**
+     * Creates the set with the default capacity.
+     */
+    public LongHashSet() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates the set with the specified capacity.
+     *
+     * @param capacity the initial capacity. It will be rounded up to a power of 2.
+     */
+    public LongHashSet(int capacity) {
+        allocate(Math.max(16, Integer.highestOneBit(Math.max(capacity, 1) - 1) << 1));
+    }
+
+    /**
+     * Adds the value to the set.
+     *
+     * @param value a value to add
+     * @return true if the value was added, false if the set contains this value already
+     */
+    @Override
+    public boolean add(long value) {
+        if (value == 0) {
+            if (hasZero) {
+                return false;
+            }
+            hasZero = true;
+            return true;
+        }
+
+        int idx = indexOf(value);
+        while (values[idx] != 0) {
+            if (values[idx] == value) {
+                return false;
+            }
+            idx = (idx + 1) & mask;
+        }
+        values[idx] = value;
+        count++;
+
+        if (count > resizeAt) {
+            resize(values.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the set contains the value.
+     *
+     * @param value a value to check
+     * @return true or false
+     */
+    @Override
+    public boolean contains(long value) {
+        if (value == 0) {
+            return hasZero;
+        }
+
+        int idx = indexOf(value);
+        while (values[idx] != 0) {
+            if (values[idx] == value) {
+                return true;
+            }
+            idx = (idx + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of values in the set.
+     *
+     * @return the set size
+     */
+    @Override
+    public int size() {
+        return hasZero ? count + 1 : count;
+    }
+
+    /**
+     * Is this set empty?
+     *
+     * @return true if the set has no values
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Gets the current capacity of the set, i.e. the length of the values' array.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return values.length;
+    }
+
+    /**
+     * Gets the current load factor of the set.
+     *
+     * @return ratio of the stored values to the capacity.
+     */
+    public double getLoadFactor() {
+        return (double) count / values.length;
+    }
+
+    /**
+     * Removes all values from the set. The capacity remains the same.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(values, 0);
+        count = 0;
+        hasZero = false;
+    }
+
+    /**
+     * Allocates a new empty values' array.
+     *
+     * @param capacity the length of the array, a power of 2.
+     */
+    private void allocate(int capacity) {
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * MAX_LOAD_FACTOR);
+    }
+
+    /**
+     * Creates a new array with the specified capacity and moves all the values there.
+     *
+     * @param capacity new capacity, a power of 2
+     */
+    private void resize(int capacity) {
+        long[] oldValues = values;
+        allocate(capacity);
+
+        for (long value : oldValues) {
+            if (value != 0) {
+                int idx = indexOf(value);
+                while (values[idx] != 0) {
+                    idx = (idx + 1) & mask;
+                }
+                values[idx] = value;
+            }
+        }
+    }
+
+    /**
+     * Calculates the start index of the value at the array. The bits of the value are
+     * mixed first, because board hashes may differ in a few low bits only.
+     *
+     * @param value the value
+     * @return the index of the array
+     */
+    private int indexOf(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        return (int) value & mask;
+    }
+
+}
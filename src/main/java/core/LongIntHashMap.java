@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+import java.util.Arrays;
+
+/**
+ * The map of primitive long keys to primitive int values. It is used by solvers to store some
+ * value (a depth, a bound) for the board hash.<br>
+ * Keys and values are kept in two plain arrays with open addressing and linear probing, like the
+ * LongHashSet does. The arrays grow twice when the load factor exceeds the maximum, but not over
+ * the maximum capacity: when the map is full, new keys are not added any more, while values of
+ * stored keys still can be changed. So the map never takes more memory than it was allowed.
+ * <br>
+ * Zero is used to mark an empty slot of the array, so the value of the zero key is stored
+ * in separate fields.
+ *
+ * @see LongHashSet
+ */
+public class LongIntHashMap {
+
+    /**
+     * The default capacity of the map.
+     */
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * When the load factor exceeds this value, the map will be resized.
+     */
+    private static final double MAX_LOAD_FACTOR = 0.5;
+
+    /**
+     * The keys array. Its length is always a power of 2.
+     */
+    private long[] keys;
+
+    /**
+     * The values array, it has the same length as the keys array.
+     */
+    private int[] values;
+
+    /**
+     * The mask to get array index from the key's hash.
+     */
+    private int mask;
+
+    /**
+     * The number of keys stored at the array. Zero key is not counted here.
+     */
+    private int count;
+
+    /**
+     * The number of keys at the array when we have to resize it.
+     */
+    private int resizeAt;
+
+    /**
+     * The arrays will not grow over this length.
+     */
+    private final int maxCapacity;
+
+    /**
+     * It is <i>true</i> if the map contains zero key.
+     */
+    private boolean hasZero;
+
+    /**
+     * The value of the zero key.
+     */
+    private int zeroValue;
+
+    /**
+     * Creates the map with the default capacity and without the size limit.
+     */
+    public LongIntHashMap() {
+        this(DEFAULT_CAPACITY, 1 << 30);
+    }
+
+    /**
+     * Creates the map with the specified capacity.
+     *
+     * @param capacity    the initial capacity. It will be rounded up to a power of 2.
+     * @param maxCapacity the maximum capacity. It will be rounded up to a power of 2.
+     */
+    public LongIntHashMap(int capacity, int maxCapacity) {
+        this.maxCapacity = roundCapacity(maxCapacity);
+        allocate(Math.min(roundCapacity(capacity), this.maxCapacity));
+    }
+
+    /**
+     * Gets the value of the key.
+     *
+     * @param key          a key
+     * @param defaultValue the value to return if the map doesn't contain the key
+     * @return the value
+     */
+    public int get(long key, int defaultValue) {
+        if (key == 0) {
+            return hasZero ? zeroValue : defaultValue;
+        }
+
+        int idx = indexOf(key);
+        while (keys[idx] != 0) {
+            if (keys[idx] == key) {
+                return values[idx];
+            }
+            idx = (idx + 1) & mask;
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Puts the value of the key to the map.
+     *
+     * @param key   a key
+     * @param value a value
+     * @return true if the value was stored, false if the map is full and doesn't contain the key
+     */
+    public boolean put(long key, int value) {
+        if (key == 0) {
+            hasZero = true;
+            zeroValue = value;
+            return true;
+        }
+
+        int idx = indexOf(key);
+        while (keys[idx] != 0) {
+            if (keys[idx] == key) {
+                values[idx] = value;
+                return true;
+            }
+            idx = (idx + 1) & mask;
+        }
+
+        if (count >= resizeAt) {
+            if (keys.length >= maxCapacity) {
+                return false;
+            }
+            resize(keys.length << 1);
+            idx = indexOf(key);
+            while (keys[idx] != 0) {
+                idx = (idx + 1) & mask;
+            }
+        }
+        keys[idx] = key;
+        values[idx] = value;
+        count++;
+        return true;
+    }
+
+    /**
+     * Removes the key from the map. Keys after it are shifted back, so the map doesn't need
+     * marks of removed keys.
+     *
+     * @param key a key
+     * @return true if the key was removed, false if the map doesn't contain it
+     */
+    public boolean remove(long key) {
+        if (key == 0) {
+            boolean result = hasZero;
+            hasZero = false;
+            return result;
+        }
+
+        int idx = indexOf(key);
+        while (keys[idx] != 0) {
+            if (keys[idx] == key) {
+                shiftKeys(idx);
+                count--;
+                return true;
+            }
+            idx = (idx + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the map contains the key.
+     *
+     * @param key a key to check
+     * @return true or false
+     */
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return hasZero;
+        }
+
+        int idx = indexOf(key);
+        while (keys[idx] != 0) {
+            if (keys[idx] == key) {
+                return true;
+            }
+            idx = (idx + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of keys in the map.
+     *
+     * @return the map size
+     */
+    public int size() {
+        return hasZero ? count + 1 : count;
+    }
+
+    /**
+     * Is this map empty?
+     *
+     * @return true if the map has no keys
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Gets the current capacity of the map, i.e. the length of the keys' array.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Removes all keys from the map. The capacity remains the same.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        count = 0;
+        hasZero = false;
+    }
+
+    /**
+     * Rounds the capacity up to a power of 2.
+     *
+     * @param capacity the capacity
+     * @return the power of 2, from 16 to 2^30
+     */
+    private static int roundCapacity(int capacity) {
+        return Math.max(16, Integer.highestOneBit(Math.min(Math.max(capacity, 1), 1 << 30) - 1) << 1);
+    }
+
+    /**
+     * Allocates new empty arrays.
+     *
+     * @param capacity the length of arrays, a power of 2.
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * MAX_LOAD_FACTOR);
+    }
+
+    /**
+     * Creates new arrays with the specified capacity and moves all the keys and values there.
+     *
+     * @param capacity new capacity, a power of 2
+     */
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int idx = indexOf(oldKeys[i]);
+                while (keys[idx] != 0) {
+                    idx = (idx + 1) & mask;
+                }
+                keys[idx] = oldKeys[i];
+                values[idx] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Fills the gap of the removed key: moves back the next keys which can't be found otherwise.
+     *
+     * @param gap index of the removed key
+     */
+    private void shiftKeys(int gap) {
+        int idx = gap;
+        while (true) {
+            idx = (idx + 1) & mask;
+            long key = keys[idx];
+            if (key == 0) {
+                break;
+            }
+            // move the key back if the gap is between its start index and its place
+            if (((idx - indexOf(key)) & mask) >= ((idx - gap) & mask)) {
+                keys[gap] = key;
+                values[gap] = values[idx];
+                gap = idx;
+            }
+        }
+        keys[gap] = 0;
+    }
+
+    /**
+     * Calculates the start index of the key at the array.
+     *
+     * @param key the key
+     * @return the index of the array
+     * @see LongHashSet
+     */
+    private int indexOf(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+/**
+ * The set of hash values of visited boards, as search engines see it. The plain set, the thread-safe
+ * set and the transposition table keep values in their own ways, and engines work with any of them.
+ *
+ * @see LongHashSet
+ * @see ConcurrentLongHashSet
+ * @see TranspositionTable
+ */
+interface LongSet {
+
+    /**
+     * Adds the value to the set.
+     *
+     * @param value a value to add
+     * @return true if the value was added, false if the set contains this value already
+     */
+    boolean add(long value);
+
+    /**
+     * Checks whether the set contains the value.
+     *
+     * @param value a value to check
+     * @return true or false
+     */
+    boolean contains(long value);
+
+    /**
+     * Gets the number of values in the set.
+     *
+     * @return the set size
+     */
+    int size();
+
+    /**
+     * Removes all values from the set.
+     */
+    void clear();
+
+    /**
+     * Can the set keep all values yet? The full set doesn't keep new values, and add() returns true
+     * for them every time. So the search has to check boards of its path itself, otherwise it may go
+     * round in circles.
+     *
+     * @return true if some values were not kept
+     */
+    default boolean isFull() {
+        return false;
+    }
+
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Calculates and ranks available moves of the board without checking every pair of tubes. One pass
+ * over tubes puts donors (tubes that are not empty and not closed) into buckets by their top color,
+ * and counts available cells of every color. Then every recipient gets donors from the bucket of its
+ * top color only, and the first empty tube gets all donors. The moves are the same and go in the same
+ * order as the scan of all pairs gives them, and they are sorted by rank with the stable counting sort
+ * instead of insertions, so the result is the same too.<br>
+ * The generator keeps its buffers between calls, so it doesn't create objects. Every engine (or every
+ * root board) has its own generator, and the generator must not be shared between threads.
+ *
+ * @see BoardModel#calculateMoves()
+ * @see BoardModel#rankMove(int, int, int, int, int)
+ */
+public class MoveGenerator {
+
+    /**
+     * Counts of available cells of every color.
+     */
+    private final int[] colorCounts = new int[256];
+
+    /**
+     * The first donor of every color plus 1, 0 if the color has no donors.
+     */
+    private final int[] bucketFirst = new int[256];
+
+    /**
+     * The next donor of the same color plus 1, 0 if it's the last one.
+     */
+    private int[] nextDonor = new int[16];
+
+    /**
+     * Counts of colors of every tube.
+     */
+    private int[] counts = new int[16];
+
+    /**
+     * Top colors of every tube.
+     */
+    private int[] topColors = new int[16];
+
+    /**
+     * How much colors we can get from every tube, 0 if the tube is not a donor.
+     */
+    private int[] colorsToGet = new int[16];
+
+    /**
+     * Counts of moves of every rank, to sort moves.
+     */
+    private int[] rankCounts = new int[32];
+
+    /**
+     * Learns the order of moves, or null for the static order.
+     */
+    private MoveHistory history;
+
+    /**
+     * Moves before sorting.
+     */
+    private int[] unsortedMoves = new int[256];
+
+    /**
+     * Ranks before sorting.
+     */
+    private int[] unsortedRanks = new int[256];
+
+    /**
+     * Stored tubes of the board model.
+     *
+     * @see #calculateMoves(BoardModel)
+     */
+    private int[] stored = new int[16];
+
+    /**
+     * Moves calculated for the board model.
+     */
+    private int[] moves = new int[256];
+
+    /**
+     * Ranks of moves calculated for the board model.
+     */
+    private int[] ranks = new int[256];
+
+    /**
+     * Sets the learned order of moves.
+     *
+     * @param history the history of the search, or null for the static order
+     */
+    void setHistory(MoveHistory history) {
+        this.history = history;
+    }
+
+    /**
+     * Calculates moves of the board model into the own buffer.
+     *
+     * @param board the board
+     * @return number of moves
+     * @see #getMove(int)
+     * @see #getRank(int)
+     */
+    int calculateMoves(BoardModel board) {
+        int size = board.size();
+        if (moves.length < size * size) {
+            moves = new int[size * size];
+            ranks = new int[size * size];
+        }
+        return calculateMoves(board, moves, ranks, 0);
+    }
+
+    /**
+     * Calculates moves of the board model into the array.
+     *
+     * @param board the board
+     * @param moves an array to put stored moves, it must have room for size()*size() moves after start
+     * @param ranks an array to put ranks of moves, the same length
+     * @param start index of the array to put the first move
+     * @return index after the last move
+     */
+    int calculateMoves(BoardModel board, int[] moves, int[] ranks, int start) {
+        int size = board.size();
+        if (stored.length < size) {
+            stored = new int[size];
+        }
+        for (int i = 0; i < size; i++) {
+            stored[i] = board.get(i).storeColors();
+        }
+        return calculateMoves(stored, size, moves, ranks, start, null);
+    }
+
+    /**
+     * Gets the move calculated for the board model.
+     *
+     * @param idx index of the move, the best move is the last one
+     * @return the stored move
+     */
+    int getMove(int idx) {
+        return moves[idx];
+    }
+
+    /**
+     * Gets the rank of the move calculated for the board model.
+     *
+     * @param idx index of the move
+     * @return the rank
+     */
+    int getRank(int idx) {
+        return ranks[idx];
+    }
+
+    /**
+     * Calculates and ranks all available moves of the stored tubes and puts them into the array.
+     * Moves are sorted by rank, and the best move will be the last one.
+     *
+     * @param tubes  stored tubes of the board
+     * @param size   number of tubes
+     * @param moves  an array to put stored moves, it must have room for size*size moves after start
+     * @param ranks  an array to put ranks of moves, the same length
+     * @param start  index of the array to put the first move
+     * @param random the generator to break ties between moves with equal ranks, or null
+     * @return index after the last move
+     * @see ColorMoveItem#storeMove()
+     */
+    public int calculateMoves(int[] tubes, int size, int[] moves, int[] ranks, int start, SplittableRandom random) {
+        if (counts.length < size) {
+            int length = Math.max(size, counts.length << 1);
+            nextDonor = new int[length];
+            counts = new int[length];
+            topColors = new int[length];
+            colorsToGet = new int[length];
+        }
+
+        // one pass from the last tube: counts, buckets of donors and available colors.
+        // Every donor is put at the head of its bucket, so buckets go in the order of tubes.
+        for (int i = size - 1; i >= 0; i--) {
+            int tube = tubes[i];
+            int count = PackedBoard.getCount(tube);
+            int color = PackedBoard.getTopColor(tube);
+            counts[i] = count;
+            topColors[i] = color;
+            if (count == 0 || PackedBoard.isClosed(tube)) {
+                colorsToGet[i] = 0;
+                continue;
+            }
+            int toGet = PackedBoard.getColorsToGet(tube);
+            colorsToGet[i] = toGet;
+            colorCounts[color] += toGet;
+            nextDonor[i] = bucketFirst[color];
+            bucketFirst[color] = i + 1;
+        }
+
+        int end = start;
+        boolean emptyTubeProcessed = false; // true if one of empty tube has processed already
+
+        for (int r = 0; r < size; r++) {
+            int rCount = counts[r];
+            if (rCount == 0) {
+                if (!emptyTubeProcessed) {
+                    // STATE_EMPTY: all donors
+                    emptyTubeProcessed = true;
+                    for (int d = 0; d < size; d++) {
+                        if (colorsToGet[d] != 0) {
+                            end = addMove(d, r, moves, ranks, end, random);
+                        }
+                    }
+                }
+            } else if (rCount < 4) {
+                // STATE_REGULAR: donors of the same top color only
+                int d = bucketFirst[topColors[r]] - 1;
+                while (d >= 0) {
+                    if (d != r) {
+                        end = addMove(d, r, moves, ranks, end, random);
+                    }
+                    d = nextDonor[d] - 1;
+                }
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            if (colorsToGet[i] != 0) {
+                bucketFirst[topColors[i]] = 0;
+                colorCounts[topColors[i]] = 0;
+            }
+        }
+
+        sortMoves(moves, ranks, start, end, random != null);
+        return end;
+    }
+
+    /**
+     * Ranks the move and puts it after the last move.
+     *
+     * @param d      index of the donor tube
+     * @param r      index of the recipient tube
+     * @param moves  the moves' array
+     * @param ranks  the ranks' array
+     * @param end    index after the last move
+     * @param random the generator to break ties, or null
+     * @return new index after the last move
+     */
+    private int addMove(int d, int r, int[] moves, int[] ranks, int end, SplittableRandom random) {
+        int color = topColors[d];
+        int rCount = counts[r];
+        int dColorsToGet = colorsToGet[d];
+        int count = Math.min(4 - rCount, dColorsToGet);
+        int rank = BoardModel.rankMove(counts[d], dColorsToGet, rCount, colorsToGet[r], colorCounts[color]);
+        if (history != null) {
+            rank = history.rank(rank, color, counts[d], dColorsToGet, rCount, colorsToGet[r], d, r);
+        }
+        if (random != null) {
+            // the low byte shuffles moves with equal ranks only
+            rank = (rank << 8) | random.nextInt(256);
+        }
+        moves[end] = ((d & 0xff) << 24) + ((r & 0xff) << 16) + ((count & 0xff) << 8) + color;
+        ranks[end] = rank;
+        return end + 1;
+    }
+
+    /**
+     * Sorts moves by rank. The sort is stable: moves with equal ranks keep the order they were found
+     * in. Ranks are small numbers, so moves are counted by rank and then put to their places. Random
+     * low bytes of ranks are sorted after that by insertions, as moves are almost sorted then.
+     *
+     * @param moves     the moves' array
+     * @param ranks     the ranks' array
+     * @param start     index of the first move
+     * @param end       index after the last move
+     * @param hasRandom true if ranks have random low bytes
+     */
+    private void sortMoves(int[] moves, int[] ranks, int start, int end, boolean hasRandom) {
+        int n = end - start;
+        if (n < 2) {
+            return;
+        }
+        if (unsortedMoves.length < n) {
+            unsortedMoves = new int[n];
+            unsortedRanks = new int[n];
+        }
+        System.arraycopy(moves, start, unsortedMoves, 0, n);
+        System.arraycopy(ranks, start, unsortedRanks, 0, n);
+
+        int shift = hasRandom ? 8 : 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            int rank = unsortedRanks[i] >> shift;
+            min = Math.min(min, rank);
+            max = Math.max(max, rank);
+        }
+        int range = max - min + 1;
+        if (rankCounts.length <= range) {
+            rankCounts = new int[range + 1];
+        }
+        Arrays.fill(rankCounts, 0, range + 1, 0);
+
+        // rankCounts[k] becomes the index of the first move with the rank min + k
+        for (int i = 0; i < n; i++) {
+            rankCounts[(unsortedRanks[i] >> shift) - min + 1]++;
+        }
+        for (int k = 1; k < range; k++) {
+            rankCounts[k] += rankCounts[k - 1];
+        }
+        for (int i = 0; i < n; i++) {
+            int j = start + rankCounts[(unsortedRanks[i] >> shift) - min]++;
+            moves[j] = unsortedMoves[i];
+            ranks[j] = unsortedRanks[i];
+        }
+
+        if (hasRandom) {
+            for (int i = start + 1; i < end; i++) {
+                int move = moves[i];
+                int rank = ranks[i];
+                int j = i;
+                while (j > start && ranks[j - 1] > rank) {
+                    moves[j] = moves[j - 1];
+                    ranks[j] = ranks[j - 1];
+                    j--;
+                }
+                moves[j] = move;
+                ranks[j] = rank;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Learns the order of moves while the solver is searching. The static rank of the move says what the
+ * move does with two tubes, and this class adds what the search has found out about such moves.<br>
+ * The progress of the search is measured by the number of color runs of the board (groups of the same
+ * color cells lying one on another): the solved board has the least number of runs. When the search
+ * reaches a board with fewer runs than all boards before, all moves of the path are rewarded:
+ * <ul>
+ * <li>the <i>history table</i> counts rewards by the kind of the move: its color, and the counts of
+ * cells and the top run lengths of the donor and the recipient before the move;
+ * <li>the <i>killer move</i> of every depth is the last rewarded move of this depth.
+ * </ul>
+ * When all moves of the board are tried without the solution, the kind of the move which led there
+ * loses half of its rewards.<br>
+ * The adaptive rank is the doubled static rank plus the history level (the number of bits of rewards,
+ * up to 7) plus 2 for the killer move. So the learned order reorders moves with close static ranks,
+ * while moves with much higher static ranks still go first.<br>
+ * The history is kept between runs of the solver, so restarts with the new break value use it too.
+ * The tree and the stack engines call it at the same points, so they still find the same solution.
+ *
+ * @see Solver#ORDER_ADAPTIVE
+ * @see MoveGenerator
+ */
+class MoveHistory {
+
+    /**
+     * Number of tube states: the count of cells (0..4) by the top run length (0..4).
+     */
+    private static final int STATES = 25;
+
+    /**
+     * Rewards of every kind of move, by color and states of the donor and the recipient.
+     */
+    private int[] history = new int[STATES * STATES * 16];
+
+    /**
+     * The killer move of every depth: donor and recipient of the stored move, 0 if there's no killer.
+     */
+    private int[] killers = new int[64];
+
+    /**
+     * Kinds of moves of the current path, by level.
+     */
+    private int[] pathKeys = new int[64];
+
+    /**
+     * Stored moves of the current path, by level.
+     */
+    private int[] pathMoves = new int[64];
+
+    /**
+     * Number of color runs of the boards of the current path, by level.
+     */
+    private int[] pathRuns = new int[64];
+
+    /**
+     * The least number of runs the search has reached.
+     */
+    private int bestRuns;
+
+    /**
+     * Depth of the board which moves are calculated.
+     */
+    private int depth;
+
+    /**
+     * Starts the search from the start board.
+     *
+     * @param runs number of color runs of the start board
+     */
+    void start(int runs) {
+        pathRuns[0] = runs;
+        bestRuns = runs;
+    }
+
+    /**
+     * Sets the depth of the board which moves will be calculated next.
+     *
+     * @param depth number of moves from the start board
+     */
+    void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * Adds the learned order to the static rank of the move.
+     *
+     * @param rank         the static rank
+     * @param color        color of the move
+     * @param dCount       count of cells of the donor
+     * @param dColorsToGet top run length of the donor
+     * @param rCount       count of cells of the recipient
+     * @param rColorsToGet top run length of the recipient
+     * @param d            index of the donor tube
+     * @param r            index of the recipient tube
+     * @return the adaptive rank
+     * @see BoardModel#rankMove(int, int, int, int, int)
+     */
+    int rank(int rank, int color, int dCount, int dColorsToGet, int rCount, int rColorsToGet, int d, int r) {
+        int key = key(color, dCount, dColorsToGet, rCount, rColorsToGet);
+        // the number of bits of rewards, so the first rewards matter the most
+        int level = (key < history.length) ? 32 - Integer.numberOfLeadingZeros(history[key]) : 0;
+        int killer = (depth < killers.length && killers[depth] == (((d & 0xff) << 24) | ((r & 0xff) << 16)))
+                ? 1 : 0;
+        return rank * 2 + Math.min(level, 7) + killer * 2;
+    }
+
+    /**
+     * The search goes to the next level after the move.
+     *
+     * @param level     the new level, 1 and more
+     * @param move      the stored move
+     * @param donor     stored donor tube after the move
+     * @param recipient stored recipient tube after the move
+     * @see ColorMoveItem#storeMove()
+     */
+    void enter(int level, int move, int donor, int recipient) {
+        if (level >= pathKeys.length) {
+            int length = Math.max(level + 1, pathKeys.length << 1);
+            pathKeys = Arrays.copyOf(pathKeys, length);
+            pathMoves = Arrays.copyOf(pathMoves, length);
+            pathRuns = Arrays.copyOf(pathRuns, length);
+            killers = Arrays.copyOf(killers, length);
+        }
+
+        int color = move & 0xff;
+        int count = (move >> 8) & 0xff;
+        int donorBefore = PackedBoard.addColors(donor, color, count);
+        int recipientBefore = PackedBoard.removeColors(recipient, count);
+
+        int key = key(color, PackedBoard.getCount(donorBefore), PackedBoard.getColorsToGet(donorBefore),
+                PackedBoard.getCount(recipientBefore), PackedBoard.getColorsToGet(recipientBefore));
+        if (key >= history.length) {
+            history = Arrays.copyOf(history, Math.max(key + 1, history.length << 1));
+        }
+        pathKeys[level] = key;
+        pathMoves[level] = move & 0xffff0000;
+        pathRuns[level] = pathRuns[level - 1]
+                - PackedBoard.getRuns(donorBefore) - PackedBoard.getRuns(recipientBefore)
+                + PackedBoard.getRuns(donor) + PackedBoard.getRuns(recipient);
+
+        if (pathRuns[level] < bestRuns) {
+            // progress: reward all moves of the path
+            bestRuns = pathRuns[level];
+            for (int i = 1; i <= level; i++) {
+                if (history[pathKeys[i]] < Integer.MAX_VALUE) {
+                    history[pathKeys[i]]++;
+                }
+                killers[i - 1] = pathMoves[i];
+            }
+        }
+    }
+
+    /**
+     * All moves of the level were tried without the solution.
+     *
+     * @param level the level
+     */
+    void leave(int level) {
+        if (level > 0) {
+            history[pathKeys[level]] >>= 1;
+        }
+    }
+
+    /**
+     * Gets the kind of the move.
+     *
+     * @param color        color of the move
+     * @param dCount       count of cells of the donor
+     * @param dColorsToGet top run length of the donor
+     * @param rCount       count of cells of the recipient
+     * @param rColorsToGet top run length of the recipient
+     * @return index at the history table
+     */
+    private static int key(int color, int dCount, int dColorsToGet, int rCount, int rColorsToGet) {
+        return (color * STATES + dCount * 5 + dColorsToGet) * STATES + rCount * 5 + rColorsToGet;
+    }
+
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The search engine that finds the shortest solution. It uses IDA*: the depth-first search
+ * is limited by the bound of <i>moves done + moves left at least</i>, and the bound grows
+ * until the solution is found. <br>
+ * The estimation of moves left is the number of color runs at all tubes minus the number of
+ * tubes that will be closed at the end. One move joins at most two runs, so the estimation never
+ * exceeds the real number of moves, and the first found solution is the shortest one. The
+ * estimation is updated by two changed tubes only. <br>
+ * The first solution is found by the stack engine. It proves that the board has the solution at
+ * all and limits the bound of IDA*.
+ *
+ * @see Solver#ENGINE_OPTIMAL
+ */
+class OptimalSolver {
+
+    /**
+     * The result of the search when the solution is found.
+     */
+    private static final int FOUND = -1;
+
+    /**
+     * The size of one entry of the table of visited boards in bytes: the key and the value.
+     */
+    private static final int ENTRY_BYTES = 12;
+
+    /**
+     * The solver which runs this engine. Its break flag is used.
+     */
+    private final Solver solver;
+
+    /**
+     * The start configuration of the tubes board.
+     */
+    private final BoardModel startBoard;
+
+    /**
+     * The board to search at. Moves are made and unmade here.
+     */
+    private PackedBoard board;
+
+    /**
+     * Boards of the current iteration and the least number of moves they were reached with. Its size
+     * is limited by the table size of the Solver. When it's full, new boards are not kept, and they
+     * are only searched again.
+     */
+    private final LongIntHashMap visited;
+
+    /**
+     * Moves of the current path.
+     */
+    private int[] path = new int[64];
+
+    /**
+     * Moves of every level, one row per level.
+     */
+    private int[][] levelMoves = new int[64][];
+
+    /**
+     * Estimation changes of moves of every level, one row per level.
+     */
+    private int[][] levelDeltas = new int[64][];
+
+    /**
+     * The length of the found solution.
+     */
+    private int solutionLength;
+
+    /**
+     * Counts all processed moves of this engine.
+     */
+    long processedMoves;
+
+    /**
+     * It is <i>true</i> if the found solution is the shortest one.
+     */
+    boolean proven;
+
+    /**
+     * It is <i>true</i> if the solution was not found by the search without breaks, i.e. the board
+     * has no solution.
+     */
+    boolean complete;
+
+    /**
+     * Creates the engine.
+     *
+     * @param solver     the solver which runs this engine
+     * @param startBoard the start configuration of the tubes board
+     */
+    OptimalSolver(Solver solver, BoardModel startBoard) {
+        this.solver = solver;
+        this.startBoard = startBoard;
+        long slots = ((long) solver.getTableSize() << 20) / ENTRY_BYTES;
+        int capacity = (int) Math.max(16, Long.highestOneBit(Math.min(slots, 1 << 30)));
+        visited = new LongIntHashMap(Math.min(1 << 16, capacity), capacity);
+    }
+
+    /**
+     * Searches for the shortest solution.
+     *
+     * @param breakStop the break value of the first search, 0 means unlimited tries
+     * @return stored moves of the solution, or null if the solution was not found
+     */
+    int[] search(int breakStop) {
+        proven = false;
+        complete = false;
+        board = new PackedBoard(startBoard);
+        if (!board.hasFullColors()) {
+            return null;
+        }
+
+        int[] upper = firstSolution(breakStop);
+        if (upper == null) {
+            return null;
+        }
+
+        int threshold = board.estimateMoves();
+        while (threshold < upper.length && !solver.externalBreak) {
+            visited.clear();
+            int next = searchLevel(0, board.estimateMoves(), threshold, board.calculateHash());
+            if (next == FOUND) {
+                proven = true;
+                return Arrays.copyOf(path, solutionLength);
+            }
+            threshold = next;
+        }
+
+        // there's no solution shorter than the first one
+        proven = !solver.externalBreak;
+        return solver.externalBreak ? null : upper;
+    }
+
+    /**
+     * Shortens the found solution while the solver is not stopped. The depth-first search looks for
+     * any solution shorter than the best one, with the same bound of <i>moves done + moves left at
+     * least</i> as IDA* has. Every shorter solution is passed to the solver at once, and it becomes
+     * the bound of the next search. When the search finds nothing, the best solution is the shortest
+     * one.
+     *
+     * @param first stored moves of the found solution
+     * @return stored moves of the best solution
+     * @see Solver#improved(int[], long)
+     */
+    int[] improve(int[] first) {
+        proven = false;
+        board = new PackedBoard(startBoard);
+        int[] best = first;
+        while (!solver.externalBreak) {
+            visited.clear();
+            if (searchLevel(0, board.estimateMoves(), best.length - 1, board.calculateHash()) != FOUND) {
+                // there's no solution shorter than the best one
+                proven = !solver.externalBreak;
+                break;
+            }
+            best = Arrays.copyOf(path, solutionLength);
+            solver.improved(best, processedMoves);
+        }
+        return best;
+    }
+
+    /**
+     * Finds any solution by the stack engine. If it isn't found with breaks, the search goes again
+     * without breaks: this search is complete. The table of boards has the table size of the Solver.
+     *
+     * @param breakStop the break value of the first search
+     * @return stored moves of the solution, or null if the board has no solution
+     */
+    private int[] firstSolution(int breakStop) {
+        StackSolver engine = new StackSolver(solver, new PackedBoard(board), new AtomicBoolean());
+        TranspositionTable table = new TranspositionTable(solver.getTableSize());
+        int[] result = engine.search(table, breakStop);
+        if (result == null && breakStop > 0 && !solver.externalBreak) {
+            table.clearVisited();
+            result = engine.search(table, 0);
+            complete = result == null && !solver.externalBreak;
+        } else if (breakStop == 0) {
+            complete = result == null && !solver.externalBreak;
+        }
+        processedMoves += engine.processedMoves;
+        return result;
+    }
+
+    /**
+     * Searches the solution from the current board within the bound.
+     *
+     * @param level     number of moves done
+     * @param estimate  estimation of moves left
+     * @param threshold the bound of moves done plus the estimation
+     * @param hash      hash value of the current board
+     * @return FOUND, or the least exceeded bound of boards, or Integer.MAX_VALUE if all boards were
+     * passed already
+     */
+    private int searchLevel(int level, int estimate, int threshold, long hash) {
+        if (level + estimate > threshold) {
+            return level + estimate;
+        }
+        if (board.isSolved()) {
+            solutionLength = level;
+            return FOUND;
+        }
+        if (visited.get(hash, Integer.MAX_VALUE) <= level) {
+            // this board was passed already by the same or the shorter path
+            return Integer.MAX_VALUE;
+        }
+        visited.put(hash, level);
+
+        int count = calculateMoves(level);
+        int[] moves = levelMoves[level];
+        int[] deltas = levelDeltas[level];
+        int result = Integer.MAX_VALUE;
+
+        for (int i = 0; i < count && !solver.externalBreak; i++) {
+            int move = moves[i];
+            int idxFrom = (move >> 24) & 0xff;
+            int idxTo = (move >> 16) & 0xff;
+
+            long newHash = hash
+                    - BoardModel.tubeHash(board.getTube(idxFrom))
+                    - BoardModel.tubeHash(board.getTube(idxTo));
+            board.moveColor(idxFrom, idxTo);
+            newHash += BoardModel.tubeHash(board.getTube(idxFrom))
+                    + BoardModel.tubeHash(board.getTube(idxTo));
+            processedMoves++;
+
+            int next = searchLevel(level + 1, estimate + deltas[i], threshold, newHash);
+            board.undoMove(idxFrom, idxTo, (move >> 8) & 0xff);
+
+            if (next == FOUND) {
+                path[level] = move;
+                return FOUND;
+            }
+            result = Math.min(result, next);
+        }
+        return result;
+    }
+
+    /**
+     * Calculates all moves of the current board. The moves which reduce the estimation go first.
+     *
+     * @param level the level to put moves
+     * @return number of moves
+     */
+    private int calculateMoves(int level) {
+        int size = board.size();
+        if (level >= levelMoves.length) {
+            levelMoves = Arrays.copyOf(levelMoves, level << 1);
+            levelDeltas = Arrays.copyOf(levelDeltas, level << 1);
+            path = Arrays.copyOf(path, level << 1);
+        }
+        if (levelMoves[level] == null || levelMoves[level].length < size * size) {
+            levelMoves[level] = new int[size * size];
+            levelDeltas[level] = new int[size * size];
+        }
+        int[] moves = levelMoves[level];
+        int[] deltas = levelDeltas[level];
+        int count = board.calculateMoves(moves);
+
+        // insertion by the estimation change
+        for (int j = 0; j < count; j++) {
+            int move = moves[j];
+            int delta = estimateDelta(move);
+            int i = j;
+            while (i > 0 && deltas[i - 1] > delta) {
+                moves[i] = moves[i - 1];
+                deltas[i] = deltas[i - 1];
+                i--;
+            }
+            moves[i] = move;
+            deltas[i] = delta;
+        }
+        return count;
+    }
+
+    /**
+     * Calculates how the move changes the estimation of the current board.
+     *
+     * @param move the stored move
+     * @return the change, from -1 to 1
+     * @see PackedBoard#estimateMoves()
+     */
+    private int estimateDelta(int move) {
+        int donor = board.getTube((move >> 24) & 0xff);
+        int recipient = board.getTube((move >> 16) & 0xff);
+        int count = (move >> 8) & 0xff;
+        return PackedBoard.getRuns(PackedBoard.removeColors(donor, count))
+                + PackedBoard.getRuns(PackedBoard.addColors(recipient, move & 0xff, count))
+                - PackedBoard.getRuns(donor) - PackedBoard.getRuns(recipient);
+    }
+
+}
@@ -230,6 +230,74 @@ public class Options {
      */
     public static int odPositionY = -1;
 
+// --------- solver options -------------
+    /**
+     * The search engine of the solver.
+     *
+     * @see Solver#setEngine(int)
+     */
+    public static int solverEngine = Solver.ENGINE_TREE;
+
+    /**
+     * Number of threads of the portfolio and the parallel engines. 0 means all processor cores.
+     *
+     * @see Solver#setThreads(int)
+     */
+    public static int solverThreads = 0;
+
+    /**
+     * How deep the parallel engine splits the search into tasks.
+     *
+     * @see Solver#setSplitDepth(int)
+     */
+    public static int solverSplitDepth = 2;
+
+    /**
+     * The start beam width of the beam engine.
+     *
+     * @see Solver#setBeamWidth(int)
+     */
+    public static int solverBeamWidth = 1000;
+
+    /**
+     * The maximum size of the solver's transposition table, in megabytes.
+     *
+     * @see Solver#setTableSize(int)
+     */
+    public static int solverTableSize = Solver.DEFAULT_TABLE_SIZE;
+
+    /**
+     * The order of moves of the solver: static or adaptive.
+     *
+     * @see Solver#setOrdering(int)
+     */
+    public static int solverOrdering = Solver.ORDER_STATIC;
+
+    /**
+     * The maximum size of the solutions' file at the application folder, in megabytes. 0 means
+     * solutions are kept in the memory only, while the application works. Sizes over
+     * DiskSolutionCache.MAX_MEGABYTES are cut to it.
+     *
+     * @see DiskSolutionCache
+     */
+    public static int solverCacheSize = 16;
+
+    /**
+     * Seconds between checkpoints of the solver, they are saved at the application folder, so the
+     * interrupted search may be continued. 0 means the solver doesn't save checkpoints.
+     *
+     * @see Checkpoint
+     */
+    public static int solverCheckpoint = 30;
+
+    /**
+     * Does the solver keep shortening the found solution while the user follows it? Shorter solutions
+     * replace the rest of the shown one.
+     *
+     * @see Solver#setImprovement(boolean)
+     */
+    public static boolean solverImprovement = true;
+
 // --------- statistics -------------
     /**
      * Number of random filled boards from the first start
@@ -330,6 +398,16 @@ public class Options {
         // --------- options dialog -------------
         sProps.setProperty("OptionsDialogPosX", Integer.toString(odPositionX));
         sProps.setProperty("OptionsDialogPosY", Integer.toString(odPositionY));
+        // --------- solver options -------------
+        sProps.setProperty("SolverEngine", Integer.toString(solverEngine));
+        sProps.setProperty("SolverThreads", Integer.toString(solverThreads));
+        sProps.setProperty("SolverSplitDepth", Integer.toString(solverSplitDepth));
+        sProps.setProperty("SolverBeamWidth", Integer.toString(solverBeamWidth));
+        sProps.setProperty("SolverTableSize", Integer.toString(solverTableSize));
+        sProps.setProperty("SolverOrdering", Integer.toString(solverOrdering));
+        sProps.setProperty("SolverCacheSize", Integer.toString(solverCacheSize));
+        sProps.setProperty("SolverCheckpoint", Integer.toString(solverCheckpoint));
+        sProps.setProperty("SolverImprovement", (solverImprovement) ? "1" : "0");
         // --------- statistics -------------
         sProps.setProperty("xStatNumberRandomFill", Integer.toString(numRandomFill));
         sProps.setProperty("xStatNumberManualFill", Integer.toString(numManualFill));
@@ -407,6 +485,17 @@ public class Options {
             // --------- options dialog -------------
             odPositionX = Integer.parseInt(sProps.getProperty("OptionsDialogPosX", "-1"));
             odPositionY = Integer.parseInt(sProps.getProperty("OptionsDialogPosY", "-1"));
+            // --------- solver options -------------
+            solverEngine = Integer.parseInt(sProps.getProperty("SolverEngine", "0"));
+            solverThreads = Integer.parseInt(sProps.getProperty("SolverThreads", "0"));
+            solverSplitDepth = Integer.parseInt(sProps.getProperty("SolverSplitDepth", "2"));
+            solverBeamWidth = Integer.parseInt(sProps.getProperty("SolverBeamWidth", "1000"));
+            solverTableSize = Integer.parseInt(sProps.getProperty("SolverTableSize",
+                    Integer.toString(Solver.DEFAULT_TABLE_SIZE)));
+            solverOrdering = Integer.parseInt(sProps.getProperty("SolverOrdering", "0"));
+            solverCacheSize = Integer.parseInt(sProps.getProperty("SolverCacheSize", "16"));
+            solverCheckpoint = Integer.parseInt(sProps.getProperty("SolverCheckpoint", "30"));
+            solverImprovement = Integer.parseInt(sProps.getProperty("SolverImprovement", "1")) == 1;
             // --------- statistics -------------
             numRandomFill = Integer.parseInt(sProps.getProperty("xStatNumberRandomFill", "0"));
             numManualFill = Integer.parseInt(sProps.getProperty("xStatNumberManualFill", "0"));
@@ -0,0 +1,470 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+/**
+ * The compact board for the solver. Every tube is one integer value stored the same way as
+ * TubeModel.storeColors() does: one byte by one color, the lowest byte is the bottom cell,
+ * and 0 is an empty cell. So the whole board is one plain array of integers without any
+ * objects per tube, and copying the board is just one System.arraycopy().<br>
+ * Static routines get the tube's properties (count, top color, colors to get, etc.) from the
+ * stored integer by bit operations, without loops and branches.
+ *
+ * @see TubeModel#storeColors()
+ * @see BoardModel
+ */
+public class PackedBoard {
+
+    /**
+     * Stored tubes.
+     */
+    private final int[] tubes;
+
+    /**
+     * Creates the empty board.
+     *
+     * @param size number of tubes
+     */
+    public PackedBoard(int size) {
+        tubes = new int[size];
+    }
+
+    /**
+     * Creates the board from the board model.
+     *
+     * @param bm the board model
+     */
+    public PackedBoard(BoardModel bm) {
+        this(bm.size());
+        for (int i = 0; i < tubes.length; i++) {
+            tubes[i] = bm.get(i).storeColors();
+        }
+    }
+
+    /**
+     * Creates the copy of another packed board.
+     *
+     * @param pb the board to copy
+     */
+    public PackedBoard(PackedBoard pb) {
+        this(pb.tubes.length);
+        assign(pb);
+    }
+
+    /**
+     * Copies tubes from the array.
+     *
+     * @param src    the array of stored tubes
+     * @param offset index of the first tube at the array
+     */
+    public void load(int[] src, int offset) {
+        System.arraycopy(src, offset, tubes, 0, tubes.length);
+    }
+
+    /**
+     * Copies tubes to the array.
+     *
+     * @param dest   the array of stored tubes
+     * @param offset index to put the first tube
+     */
+    public void store(int[] dest, int offset) {
+        System.arraycopy(tubes, 0, dest, offset, tubes.length);
+    }
+
+    /**
+     * Copies all tubes from another board of the same size.
+     *
+     * @param pb the board to copy
+     */
+    public void assign(PackedBoard pb) {
+        System.arraycopy(pb.tubes, 0, tubes, 0, tubes.length);
+    }
+
+    /**
+     * Fills the board model by tubes of this board. The model will have the same number of tubes.
+     *
+     * @param bm the board model to fill
+     */
+    public void assignTo(BoardModel bm) {
+        bm.clear();
+        for (int stored : tubes) {
+            TubeModel tube = new TubeModel();
+            for (int j = 0; j < 4; j++) {
+                tube.putColor((byte) (stored & 0xff));
+                stored >>= 8;
+            }
+            bm.addNewTube(tube);
+        }
+    }
+
+    /**
+     * Creates the new board model with tubes of this board.
+     *
+     * @return new board model
+     */
+    public BoardModel toBoardModel() {
+        BoardModel bm = new BoardModel();
+        assignTo(bm);
+        return bm;
+    }
+
+    /**
+     * Gets the number of tubes.
+     *
+     * @return number of tubes
+     */
+    public int size() {
+        return tubes.length;
+    }
+
+    /**
+     * Gets the stored tube.
+     *
+     * @param idx index of the tube
+     * @return stored colors of the tube
+     */
+    public int getTube(int idx) {
+        return tubes[idx];
+    }
+
+    /**
+     * Gets the array of stored tubes. It's not a copy, so it must not be changed.
+     *
+     * @return stored tubes
+     */
+    int[] getTubes() {
+        return tubes;
+    }
+
+    /**
+     * Sets the stored tube.
+     *
+     * @param idx    index of the tube
+     * @param stored stored colors of the tube
+     */
+    public void setTube(int idx, int stored) {
+        tubes[idx] = stored;
+    }
+
+    /**
+     * Calculates the hash value of this board. It is equal to the hash value of the same board model.
+     *
+     * @return hash value
+     * @see BoardModel#calculateHash()
+     */
+    public long calculateHash() {
+        long result = 0;
+        for (int stored : tubes) {
+            result += BoardModel.tubeHash(stored);
+        }
+        return result;
+    }
+
+    /**
+     * Is this tubes board solved already?
+     *
+     * @return false if any tube state is REGULAR or FILLED
+     */
+    public boolean isSolved() {
+        for (int stored : tubes) {
+            int state = getState(stored);
+            if (state == 1 || state == 2) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks that every color can fill whole tubes. Otherwise, the board can't be solved.
+     *
+     * @return true if the number of cells of every color is multiple of 4
+     */
+    public boolean hasFullColors() {
+        int[] counts = new int[256];
+        for (int stored : tubes) {
+            for (int j = 0; j < 4; j++) {
+                counts[stored & 0xff]++;
+                stored >>>= 8;
+            }
+        }
+        for (int color = 1; color < 256; color++) {
+            if (counts[color] % 4 != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Has this board any move? The unsolved board without moves can't be solved.
+     *
+     * @return true if any color can be moved from one tube to another
+     */
+    public boolean hasMoves() {
+        for (int i = 0; i < tubes.length; i++) {
+            for (int j = 0; j < tubes.length; j++) {
+                if (i != j && canMove(tubes[i], tubes[j])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Estimates how much moves are needed to solve the board at least. It is the number of color runs
+     * at all tubes minus the number of tubes that will be closed at the end. One move joins at most two
+     * runs, so the board can't be solved by fewer moves.
+     *
+     * @return the estimation
+     * @see #getRuns(int)
+     */
+    public int estimateMoves() {
+        int runs = 0;
+        int cells = 0;
+        for (int stored : tubes) {
+            runs += getRuns(stored);
+            cells += getCount(stored);
+        }
+        return runs - cells / 4;
+    }
+
+    /**
+     * Calculates all available moves of the board without ranking. Only one of empty tubes is used
+     * as the recipient, and the move of the whole one-color tube into the empty tube is skipped: it
+     * gives the same board with other tube places.
+     *
+     * @param moves the array to put stored moves, its length must be size() * size() at least
+     * @return number of moves
+     * @see ColorMoveItem#storeMove()
+     */
+    public int calculateMoves(int[] moves) {
+        int count = 0;
+        boolean emptyTubeProcessed = false; // true if one of empty tube has processed already
+
+        for (int r = 0; r < tubes.length; r++) {
+            int recipient = tubes[r];
+            int rCount = getCount(recipient);
+
+            if (rCount == 0 && emptyTubeProcessed) {
+                continue;
+            }
+
+            for (int d = 0; d < tubes.length; d++) {
+                int donor = tubes[d];
+
+                if (d != r && canMove(donor, recipient)) {
+                    int dColorsToGet = getColorsToGet(donor);
+                    if (rCount == 0 && dColorsToGet == getCount(donor)) {
+                        continue;
+                    }
+                    int moveCount = Math.min(4 - rCount, dColorsToGet);
+                    moves[count++] = ((d & 0xff) << 24) + ((r & 0xff) << 16) + ((moveCount & 0xff) << 8)
+                            + getTopColor(donor);
+                }
+            }
+
+            if (rCount == 0) {
+                emptyTubeProcessed = true;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * This routine checks the possibility to transfer a color cell from one
+     * tube to another. Donor tube must be not empty and not closed.
+     *
+     * @param idxFrom index of the donor tube
+     * @param idxTo   index of the recipient tube
+     * @return true or false
+     * @see BoardModel#canMakeMove(TubeModel, TubeModel)
+     */
+    public boolean canMakeMove(int idxFrom, int idxTo) {
+        return canMove(tubes[idxFrom], tubes[idxTo]);
+    }
+
+    /**
+     * Doing move.
+     *
+     * @param idxFrom index of the Donor tube
+     * @param idxTo   index of the Recipient tube
+     * @return number of colors that were be moved
+     * @see BoardModel#moveColor(int, int)
+     */
+    public int moveColor(int idxFrom, int idxTo) {
+        if (!canMakeMove(idxFrom, idxTo)) {
+            return 0;
+        }
+        int donor = tubes[idxFrom];
+        int recipient = tubes[idxTo];
+        int count = Math.min(getColorsToGet(donor), 4 - getCount(recipient));
+        tubes[idxFrom] = removeColors(donor, count);
+        tubes[idxTo] = addColors(recipient, getTopColor(donor), count);
+        return count;
+    }
+
+    /**
+     * Undoing move: returns moved colors from the recipient back to the donor.
+     *
+     * @param idxFrom index of the Donor tube of the move
+     * @param idxTo   index of the Recipient tube of the move
+     * @param count   number of colors that were moved
+     */
+    public void undoMove(int idxFrom, int idxTo, int count) {
+        int recipient = tubes[idxTo];
+        tubes[idxTo] = removeColors(recipient, count);
+        tubes[idxFrom] = addColors(tubes[idxFrom], getTopColor(recipient), count);
+    }
+
+///////////////////////////////////////////////////////////////////////////
+//
+//                * Stored tube routines *
+//
+///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Gets the count of the filled colors of the stored tube.
+     *
+     * @param stored stored colors of the tube
+     * @return colors count
+     */
+    public static int getCount(int stored) {
+        return (39 - Integer.numberOfLeadingZeros(stored)) >> 3;
+    }
+
+    /**
+     * Gets the count of the empty cells of the stored tube.
+     *
+     * @param stored stored colors of the tube
+     * @return free space
+     */
+    public static int getFreeSpace(int stored) {
+        return 4 - getCount(stored);
+    }
+
+    /**
+     * Gets the top color of the stored tube.
+     *
+     * @param stored stored colors of the tube
+     * @return color number, 0 if the tube is empty
+     */
+    public static int getTopColor(int stored) {
+        // for the empty tube the shift is -8 & 31 = 24, and 0 >>> 24 is still 0
+        return (stored >>> ((31 - Integer.numberOfLeadingZeros(stored)) & ~7)) & 0xff;
+    }
+
+    /**
+     * How much colors we can get from the stored tube at the one move, i.e. the length
+     * of the top run of the same color.
+     *
+     * @param stored stored colors of the tube
+     * @return 0 if the tube is empty, at least 1 otherwise
+     * @see TubeModel#colorsToGet()
+     */
+    public static int getColorsToGet(int stored) {
+        int count = getCount(stored);
+        // cells of the top color become 0, other filled cells are not 0
+        int diff = (stored ^ (getTopColor(stored) * 0x01010101)) & lowMask(count);
+        return count - getCount(diff);
+    }
+
+    /**
+     * Gets the number of color runs of the stored tube, i.e. the number of groups of the same
+     * color cells lying one on another.
+     *
+     * @param stored stored colors of the tube
+     * @return 0 if the tube is empty, from 1 to 4 otherwise
+     */
+    public static int getRuns(int stored) {
+        // a byte is not 0 where the cell differs from the cell above it
+        int diff = stored ^ (stored >>> 8);
+        diff |= diff >>> 4;
+        diff |= diff >>> 2;
+        diff |= diff >>> 1;
+        return Integer.bitCount(diff & 0x01010101);
+    }
+
+    /**
+     * Is the stored tube closed?
+     *
+     * @param stored stored colors of the tube
+     * @return true if all the tube's cells are fulled by one color, false otherwise.
+     */
+    public static boolean isClosed(int stored) {
+        return (stored & 0xff) != 0 && stored == (stored & 0xff) * 0x01010101;
+    }
+
+    /**
+     * Gets the state of the stored tube. The states are the same as the TubeModel has: <ul>
+     * <li>0 - STATE_EMPTY
+     * <li>1 - STATE_REGULAR
+     * <li>2 - STATE_FILLED
+     * <li>3 - STATE_CLOSED</ul>
+     *
+     * @param stored stored colors of the tube
+     * @return the state
+     * @see TubeModel#getState()
+     */
+    public static int getState(int stored) {
+        int count = getCount(stored);
+        return ((count + 3) >> 2) + (count >> 2) + (isClosed(stored) ? 1 : 0);
+    }
+
+    /**
+     * Checks the possibility to transfer a color from one stored tube to another.
+     *
+     * @param donor     stored donor tube
+     * @param recipient stored recipient tube
+     * @return true or false
+     * @see BoardModel#canMakeMove(TubeModel, TubeModel)
+     */
+    public static boolean canMove(int donor, int recipient) {
+        int rCount = getCount(recipient);
+        return donor != 0 && !isClosed(donor)
+                && rCount < 4
+                && (rCount == 0 || getTopColor(recipient) == getTopColor(donor));
+    }
+
+    /**
+     * Removes top colors from the stored tube.
+     *
+     * @param stored stored colors of the tube
+     * @param count  how much colors to remove
+     * @return new stored tube
+     */
+    public static int removeColors(int stored, int count) {
+        return stored & lowMask(getCount(stored) - count);
+    }
+
+    /**
+     * Puts colors at the top of the stored tube.
+     *
+     * @param stored stored colors of the tube
+     * @param color  color number
+     * @param count  how much colors to put
+     * @return new stored tube
+     */
+    public static int addColors(int stored, int color, int count) {
+        return stored | ((color * 0x01010101) & lowMask(count)) << (getCount(stored) << 3);
+    }
+
+    /**
+     * Gets the mask of the lowest cells of the tube.
+     *
+     * @param cells number of cells, from 0 to 4
+     * @return the mask with 0xff at every cell
+     */
+    private static int lowMask(int cells) {
+        return (int) ((1L << (cells << 3)) - 1);
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The search engine that splits one search between processor cores. Every move of the start board
+ * becomes a task, and the tasks are split by their moves again down to the split depth. Deeper tasks
+ * pass through their subtrees by the stack engine. The tasks are run by the ForkJoinPool, so idle
+ * threads steal tasks from the busy ones.<br>
+ * All tasks share one set of visited boards, so no board is calculated twice. Tasks don't break the
+ * search to start with a new color: the shared set makes the search complete, and if all tasks have
+ * finished without the solution, the board has no solution at all. When the set is full, tasks check
+ * boards of their paths, so the search is still complete but may pass some boards again.
+ *
+ * @see Solver#ENGINE_PARALLEL
+ * @see StackSolver
+ */
+class ParallelSolver {
+
+    /**
+     * The solver which runs this engine. Its break flag is used.
+     */
+    private final Solver solver;
+
+    /**
+     * The start configuration of the tubes board.
+     */
+    private final PackedBoard startBoard;
+
+    /**
+     * Tasks at this depth and deeper are not split.
+     */
+    private final int splitDepth;
+
+    /**
+     * The set of hash values of all calculated boards, shared by all tasks. Its size is limited by
+     * the table size of the Solver.
+     */
+    private final ConcurrentLongHashSet hashes;
+
+    /**
+     * The stop flag of all tasks. It is set when the solution is found.
+     */
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
+    /**
+     * Stored moves of the first found solution.
+     */
+    private final AtomicReference<int[]> solution = new AtomicReference<>();
+
+    /**
+     * Counts processed moves of all tasks.
+     */
+    private final LongAdder processedMoves = new LongAdder();
+
+    /**
+     * Creates the engine.
+     *
+     * @param solver     the solver which runs this engine
+     * @param startBoard the start configuration of the tubes board
+     * @param splitDepth tasks at this depth and deeper are not split, 0 means one task for the whole board
+     */
+    ParallelSolver(Solver solver, BoardModel startBoard, int splitDepth) {
+        this.solver = solver;
+        this.startBoard = new PackedBoard(startBoard);
+        this.splitDepth = splitDepth;
+        hashes = new ConcurrentLongHashSet(solver.getTableSize());
+    }
+
+    /**
+     * Runs all tasks and waits for the solution.
+     *
+     * @param threads number of threads
+     * @return stored moves of the solution, or null if the solution was not found
+     */
+    int[] search(int threads) {
+        hashes.add(startBoard.calculateHash());
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new SearchTask(startBoard, new int[0]));
+        } finally {
+            pool.shutdown();
+        }
+        return solution.get();
+    }
+
+    /**
+     * Has the last search passed all the moves? Tasks are complete searches, so the search is
+     * complete if it wasn't stopped by the solution or by the user.
+     *
+     * @return true if the search was complete
+     */
+    boolean isComplete() {
+        return !stopped.get() && !solver.externalBreak;
+    }
+
+    /**
+     * Gets the number of processed moves of all tasks.
+     *
+     * @return processed moves
+     */
+    long getProcessedMoves() {
+        return processedMoves.sum();
+    }
+
+    /**
+     * Saves the solution if it is the first one and stops all tasks.
+     *
+     * @param moves stored moves of the solution
+     */
+    private void solved(int[] moves) {
+        solution.compareAndSet(null, moves);
+        stopped.set(true);
+    }
+
+    /**
+     * The task searches the solution for one board.
+     */
+    private class SearchTask extends RecursiveAction {
+
+        /**
+         * The board of this task. It belongs to this task only.
+         */
+        private final PackedBoard board;
+
+        /**
+         * Stored moves from the start board to the board of this task.
+         */
+        private final int[] path;
+
+        /**
+         * Creates the task.
+         *
+         * @param board the board
+         * @param path  stored moves from the start board to this board
+         */
+        SearchTask(PackedBoard board, int[] path) {
+            this.board = board;
+            this.path = path;
+        }
+
+        @Override
+        protected void compute() {
+            if (stopped.get() || solver.externalBreak) {
+                return;
+            }
+
+            StackSolver engine = new StackSolver(solver, board, stopped);
+
+            if (path.length >= splitDepth) {
+                int[] moves = engine.search(hashes, 0);
+                processedMoves.add(engine.processedMoves);
+                if (moves != null) {
+                    solved(concat(path, moves));
+                }
+                return;
+            }
+
+            ArrayList<SearchTask> tasks = new ArrayList<>();
+            for (int move : engine.getStartMoves()) {
+                PackedBoard child = new PackedBoard(board);
+                child.moveColor((move >> 24) & 0xff, (move >> 16) & 0xff);
+                processedMoves.increment();
+
+                if (child.isSolved()) {
+                    solved(concat(path, new int[]{move}));
+                    return;
+                }
+                if (hashes.add(child.calculateHash())) {
+                    tasks.add(new SearchTask(child, concat(path, new int[]{move})));
+                }
+            }
+            // the best move is the first task, so it will be done by this thread
+            invokeAll(tasks);
+        }
+
+        /**
+         * Joins two arrays of moves.
+         *
+         * @param first  first moves
+         * @param second next moves
+         * @return all moves
+         */
+        private int[] concat(int[] first, int[] second) {
+            int[] result = Arrays.copyOf(first, first.length + second.length);
+            System.arraycopy(second, 0, result, first.length, second.length);
+            return result;
+        }
+    }
+
+}
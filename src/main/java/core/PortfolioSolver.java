@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The portfolio of search engines. It runs several stack engines with different configurations
+ * at the same time, one engine per thread. Configurations differ by the break value,
+ * the start color and the randomized order of moves with equal ranks. The first found solution
+ * wins, and all other engines are stopped. <br>
+ * Every engine doubles its break value and starts again by itself when it hasn't found the solution.
+ * One of the engines has unlimited tries, so if it hasn't found the solution, the board has no
+ * solution at all.
+ *
+ * @see Solver#ENGINE_PORTFOLIO
+ * @see StackSolver
+ */
+class PortfolioSolver {
+
+    /**
+     * The solver which runs this portfolio. Its break flag is used.
+     */
+    private final Solver solver;
+
+    /**
+     * The start configuration of the tubes board.
+     */
+    private final BoardModel startBoard;
+
+    /**
+     * The break value of the default configuration.
+     */
+    private final int breakStop;
+
+    /**
+     * Engines of the portfolio.
+     */
+    private Worker[] workers;
+
+    /**
+     * The engine which has found the solution.
+     */
+    private Worker winner;
+
+    /**
+     * It becomes <i>true</i> when the engine with unlimited tries has passed all the moves without
+     * the solution.
+     */
+    private boolean complete;
+
+    /**
+     * Creates the portfolio.
+     *
+     * @param solver     the solver which runs this portfolio
+     * @param startBoard the start configuration of the tubes board
+     * @param breakStop  how much tries before the default engine will break the solving and start it
+     *                   again with the new color, 0 means unlimited tries
+     */
+    PortfolioSolver(Solver solver, BoardModel startBoard, int breakStop) {
+        this.solver = solver;
+        this.startBoard = startBoard;
+        this.breakStop = breakStop;
+    }
+
+    /**
+     * Runs all engines and waits for the first solution.
+     *
+     * @param threads number of engines, at least 2
+     * @return stored moves of the solution, or null if the solution was not found
+     */
+    int[] search(int threads) {
+        createWorkers(threads);
+        winner = null;
+        complete = false;
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers.length);
+        CompletionService<Worker> results = new ExecutorCompletionService<>(pool);
+        for (Worker w : workers) {
+            results.submit(w);
+        }
+
+        try {
+            for (int i = 0; i < workers.length && winner == null; i++) {
+                Worker w;
+                try {
+                    w = results.take().get();
+                } catch (ExecutionException e) {
+                    // this engine has failed, the others go on
+                    continue;
+                }
+                if (w.solution != null) {
+                    winner = w;
+                } else if (w.complete) {
+                    // all the moves were tried, there's no solution
+                    complete = true;
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Worker w : workers) {
+                w.engine.stop();
+            }
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        return winner != null ? winner.solution : null;
+    }
+
+    /**
+     * Creates engines with different configurations: <ul>
+     * <li>the first one is the same as the stack engine of the Solver;
+     * <li>the second one has unlimited tries;
+     * <li>the others start with another color than the color of the best move (the first engine starts
+     * with it already), or shuffle moves with equal ranks and have the bigger break value.</ul>
+     *
+     * @param count number of engines
+     */
+    private void createWorkers(int count) {
+        workers = new Worker[count];
+        int[] colors = new StackSolver(solver, startBoard).getStartColors();
+        int tableSize = Math.max(1, solver.getTableSize() / count);
+
+        for (int i = 0; i < count; i++) {
+            Worker w = new Worker(i, new StackSolver(solver, startBoard), new TranspositionTable(tableSize));
+            if (i == 0) {
+                w.breakStop = breakStop;
+            } else if (i == 1) {
+                w.breakStop = 0;
+            } else if (i % 2 == 0 && colors.length > 1) {
+                w.breakStop = breakStop;
+                w.startColor = colors[1 + (i / 2 - 1) % (colors.length - 1)];
+                w.engine.setStartColor(w.startColor);
+            } else {
+                w.breakStop = breakStop << ((i / 2) % 3);
+                w.seed = i;
+                w.engine.setRandomSeed(w.seed);
+            }
+            workers[i] = w;
+        }
+    }
+
+    /**
+     * Gets the number of processed moves of all engines.
+     *
+     * @return processed moves
+     */
+    long getProcessedMoves() {
+        long result = 0;
+        if (workers != null) {
+            for (Worker w : workers) {
+                result += w.engine.processedMoves;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Has the last search passed all the moves? If so, and the solution was not found, the board has
+     * no solution.
+     *
+     * @return true if the search was complete
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Describes the configuration which has found the solution.
+     *
+     * @return the description, or null if the solution was not found
+     */
+    String getReport() {
+        return winner != null ? winner.toString() : null;
+    }
+
+    /**
+     * One engine of the portfolio with its configuration.
+     */
+    private class Worker implements Callable<Worker> {
+
+        /**
+         * The number of the engine.
+         */
+        private final int number;
+
+        /**
+         * The search engine.
+         */
+        private final StackSolver engine;
+
+        /**
+         * The table of boards calculated by this engine. Tables of all engines share the table size
+         * of the Solver, and dead ends are kept when the engine starts again.
+         */
+        private final TranspositionTable table;
+
+        /**
+         * The start break value, 0 means unlimited tries.
+         */
+        private int breakStop;
+
+        /**
+         * The color to start with, 0 means the usual order.
+         */
+        private int startColor;
+
+        /**
+         * The seed of the randomized tie-breaking, 0 means the usual order.
+         */
+        private long seed;
+
+        /**
+         * The break value of the last search.
+         */
+        private int lastBreakStop;
+
+        /**
+         * Stored moves of the solution.
+         */
+        private int[] solution;
+
+        /**
+         * It becomes <i>true</i> when the search with unlimited tries has finished without the solution.
+         */
+        private boolean complete;
+
+        /**
+         * Creates the engine.
+         *
+         * @param number the number of the engine
+         * @param engine the search engine
+         * @param table  the table of boards of this engine
+         */
+        Worker(int number, StackSolver engine, TranspositionTable table) {
+            this.number = number;
+            this.engine = engine;
+            this.table = table;
+        }
+
+        @Override
+        public Worker call() {
+            lastBreakStop = breakStop;
+            while (!engine.isStopped() && !solver.externalBreak) {
+                table.clearVisited();
+                solution = engine.search(table, lastBreakStop);
+                if (solution != null) {
+                    break;
+                }
+                if (lastBreakStop == 0) {
+                    complete = !engine.isStopped() && !solver.externalBreak;
+                    break;
+                }
+                lastBreakStop <<= 1;
+                if (lastBreakStop < 0) {
+                    lastBreakStop = 0;
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("engine ").append(number);
+            sb.append(": break ").append(breakStop > 0 ? String.valueOf(breakStop) : "unlimited");
+            if (startColor != 0) {
+                sb.append(", start color ").append(startColor);
+            }
+            if (seed != 0) {
+                sb.append(", random seed ").append(seed);
+            }
+            if (lastBreakStop != breakStop) {
+                sb.append(", solved at break ").append(lastBreakStop > 0 ? String.valueOf(lastBreakStop) : "unlimited");
+            }
+            return sb.toString();
+        }
+    }
+
+}
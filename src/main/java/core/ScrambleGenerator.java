@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+import java.util.SplittableRandom;
+
+/**
+ * Generates puzzles which surely can be solved. The generator starts from the solved board: filled
+ * tubes are closed by their colors, and empty tubes follow them. Then it does random reverse pours:
+ * the pour from B to A is reverse if the usual move from A to B gives the board back, i.e. A gets
+ * the cells that the move takes from it. So the scramble turned back is the solution of the puzzle,
+ * and the solver is not needed to check it.
+ * <br>
+ * The depth is the number of reverse pours. The mixing is the chance to take the pour that breaks
+ * most color runs: with 0 all pours are taken equally, with 1 the colors are mixed as much as
+ * possible on every step. Cells are stored at the packed form, and the generator doesn't create any
+ * objects.
+ *
+ * @see BoardGenerator
+ * @see PackedBoard
+ */
+public class ScrambleGenerator {
+
+    /**
+     * The random generator.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * Number of all tubes.
+     */
+    private final int tubesCount;
+
+    /**
+     * Number of filled tubes, and of colors at the board.
+     */
+    private final int filledCount;
+
+    /**
+     * Palette colors, from 1 to the number of palette colors. The first filledCount ones are the
+     * colors of the board after the shuffle.
+     */
+    private final int[] palette;
+
+    /**
+     * Stored tubes of the last board.
+     */
+    private final int[] tubes;
+
+    /**
+     * Reverse pours that can be done at the current step: <i>from&lt;&lt;16 | to&lt;&lt;8 | count</i>.
+     */
+    private final int[] pours;
+
+    /**
+     * Reverse pours of the last board as stored moves.
+     */
+    private int[] scramble;
+
+    /**
+     * Number of reverse pours of the last board.
+     */
+    private int scrambleCount;
+
+    /**
+     * Number of reverse pours of every board.
+     */
+    private int depth = 40;
+
+    /**
+     * The chance to take the pour that breaks most color runs.
+     */
+    private double mixing = 0.5;
+
+    /**
+     * Creates the generator.
+     *
+     * @param seed       the random seed
+     * @param tubes      number of all tubes
+     * @param emptyTubes number of empty tubes, the rest tubes are filled
+     * @param colors     number of palette colors, the colors of the board are taken from them
+     * @throws IllegalArgumentException if the board can't be made
+     */
+    public ScrambleGenerator(long seed, int tubes, int emptyTubes, int colors) {
+        if (emptyTubes < 0 || tubes <= emptyTubes || tubes > 255
+                || colors < tubes - emptyTubes || colors > 255) {
+            throw new IllegalArgumentException("Wrong board: " + tubes + " tubes, "
+                    + emptyTubes + " empty tubes, " + colors + " colors");
+        }
+        random = new SplittableRandom(seed);
+        tubesCount = tubes;
+        filledCount = tubes - emptyTubes;
+        palette = new int[colors];
+        this.tubes = new int[tubes];
+        pours = new int[tubes * (tubes - 1) * 4];
+        scramble = new int[depth];
+    }
+
+    /**
+     * Sets the number of reverse pours of every board.
+     *
+     * @param depth number of pours
+     * @throws IllegalArgumentException if the depth is negative
+     */
+    public void setDepth(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Wrong depth: " + depth);
+        }
+        this.depth = depth;
+        if (scramble.length < depth) {
+            scramble = new int[depth];
+        }
+    }
+
+    /**
+     * Gets the number of reverse pours of every board.
+     *
+     * @return number of pours
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Sets the chance to take the pour that breaks most color runs.
+     *
+     * @param mixing the value from 0 to 1
+     * @throws IllegalArgumentException if the value is out of range
+     */
+    public void setMixing(double mixing) {
+        if (!(mixing >= 0 && mixing <= 1)) {
+            throw new IllegalArgumentException("Wrong mixing: " + mixing);
+        }
+        this.mixing = mixing;
+    }
+
+    /**
+     * Gets the chance to take the pour that breaks most color runs.
+     *
+     * @return the value from 0 to 1
+     */
+    public double getMixing() {
+        return mixing;
+    }
+
+    /**
+     * Gets the number of tubes of boards.
+     *
+     * @return number of tubes
+     */
+    public int size() {
+        return tubesCount;
+    }
+
+    /**
+     * Generates the next board.
+     *
+     * @param dest   the array to put stored tubes
+     * @param offset index to put the first tube
+     * @return number of reverse pours, it may be less than the depth if no pours were left
+     * @see TubeModel#storeColors()
+     */
+    public int next(int[] dest, int offset) {
+        generate();
+        System.arraycopy(tubes, 0, dest, offset, tubesCount);
+        return scrambleCount;
+    }
+
+    /**
+     * Generates the next board into the packed board.
+     *
+     * @param board the board with size() tubes
+     * @return number of reverse pours, it may be less than the depth if no pours were left
+     */
+    public int next(PackedBoard board) {
+        generate();
+        board.load(tubes, 0);
+        return scrambleCount;
+    }
+
+    /**
+     * Gets the solution of the last board: the reverse pours turned back as stored moves.
+     *
+     * @param dest the array to put moves, at least of the depth length
+     * @return number of moves
+     * @see GameMoves#getStoredMove(int)
+     */
+    public int getSolution(int[] dest) {
+        for (int i = 0; i < scrambleCount; i++) {
+            dest[i] = scramble[scrambleCount - 1 - i];
+        }
+        return scrambleCount;
+    }
+
+    /**
+     * Gets the number of color runs of the last board, i.e. groups of the same color cells lying
+     * one on another. The solved board has the number of colors, and the larger number means more
+     * mixed colors.
+     *
+     * @return number of runs
+     */
+    public int getRuns() {
+        int runs = 0;
+        for (int i = 0; i < tubesCount; i++) {
+            runs += PackedBoard.getRuns(tubes[i]);
+        }
+        return runs;
+    }
+
+    /**
+     * Makes the solved board and scrambles it.
+     */
+    private void generate() {
+        // colors of the board: the partial shuffle of the palette
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = i + 1;
+        }
+        for (int i = 0; i < filledCount; i++) {
+            int j = i + random.nextInt(palette.length - i);
+            int color = palette[j];
+            palette[j] = palette[i];
+            palette[i] = color;
+            tubes[i] = color * 0x01010101;
+        }
+        for (int i = filledCount; i < tubesCount; i++) {
+            tubes[i] = 0;
+        }
+
+        scrambleCount = 0;
+        int last = -1;
+        while (scrambleCount < depth) {
+            int count = findPours(last);
+            if (count == 0) {
+                break;
+            }
+            int pour;
+            if (count == 1) {
+                pour = pours[0];
+            } else if (mixing > 0 && random.nextDouble() < mixing) {
+                pour = mostMixing(count);
+            } else {
+                pour = pours[random.nextInt(count)];
+            }
+            last = pour;
+            scrambleCount++;
+            doPour(pour);
+        }
+    }
+
+    /**
+     * Finds all reverse pours of the current board. The pour that turns the last pour back is
+     * skipped, unless there are no other pours.
+     *
+     * @param last the last pour, or -1
+     * @return number of pours
+     */
+    private int findPours(int last) {
+        int undo = (last < 0) ? -1 : ((last >> 8) & 0xff) << 16 | ((last >> 16) & 0xff) << 8 | (last & 0xff);
+        int count = 0;
+        boolean undoFound = false;
+        for (int from = 0; from < tubesCount; from++) {
+            int donor = tubes[from];
+            if (donor == 0) {
+                continue;
+            }
+            int donorCount = PackedBoard.getCount(donor);
+            int run = PackedBoard.getColorsToGet(donor);
+            int color = PackedBoard.getTopColor(donor);
+            for (int to = 0; to < tubesCount; to++) {
+                int recipient = tubes[to];
+                int free = PackedBoard.getFreeSpace(recipient);
+                if (to == from || free == 0) {
+                    continue;
+                }
+                for (int k = 1; k <= run && k <= free; k++) {
+                    // the donor after the pour has its color at the top, or it's empty
+                    if (k == run && k != donorCount) {
+                        break;
+                    }
+                    // the move back takes all k cells and no more
+                    int back = PackedBoard.addColors(recipient, color, k);
+                    if (PackedBoard.isClosed(back)
+                            || Math.min(PackedBoard.getColorsToGet(back), 4 - donorCount + k) != k) {
+                        continue;
+                    }
+                    int pour = from << 16 | to << 8 | k;
+                    if (pour == undo) {
+                        undoFound = true;
+                    } else {
+                        pours[count++] = pour;
+                    }
+                }
+            }
+        }
+        if (count == 0 && undoFound) {
+            pours[count++] = undo;
+        }
+        return count;
+    }
+
+    /**
+     * Finds the pour that adds most color runs. Pours with the same result are taken randomly.
+     *
+     * @param count number of found pours
+     * @return the pour
+     */
+    private int mostMixing(int count) {
+        int best = 0;
+        int bestDelta = Integer.MIN_VALUE;
+        int same = 0;
+        for (int i = 0; i < count; i++) {
+            int pour = pours[i];
+            int from = (pour >> 16) & 0xff;
+            int to = (pour >> 8) & 0xff;
+            int k = pour & 0xff;
+            int donor = tubes[from];
+            int recipient = tubes[to];
+            int after = PackedBoard.addColors(recipient, PackedBoard.getTopColor(donor), k);
+            int delta = PackedBoard.getRuns(PackedBoard.removeColors(donor, k)) + PackedBoard.getRuns(after)
+                    - PackedBoard.getRuns(donor) - PackedBoard.getRuns(recipient);
+            if (delta > bestDelta) {
+                bestDelta = delta;
+                best = pour;
+                same = 1;
+            } else if (delta == bestDelta && random.nextInt(++same) == 0) {
+                best = pour;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Does the reverse pour and stores the move that turns it back.
+     *
+     * @param pour the pour
+     */
+    private void doPour(int pour) {
+        int from = (pour >> 16) & 0xff;
+        int to = (pour >> 8) & 0xff;
+        int k = pour & 0xff;
+        int color = PackedBoard.getTopColor(tubes[from]);
+        tubes[from] = PackedBoard.removeColors(tubes[from], k);
+        tubes[to] = PackedBoard.addColors(tubes[to], color, k);
+        scramble[scrambleCount - 1] = to << 24 | from << 16 | k << 8 | color;
+    }
+
+}
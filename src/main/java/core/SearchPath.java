@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The memory model of the tree engine: it keeps only the active path of the search. Every level of
+ * the path has one board, and the board is reused when the search goes to the next move of the level.
+ * Moves that are not tried yet are kept as stored moves in one array: the moves of every level follow
+ * the moves of its parent level, and the last move of the level is its current move. So passed boards
+ * and tried moves are not kept anywhere, and the solution is made of current moves of the path.
+ *
+ * @see Solver#ENGINE_TREE
+ * @see ColorMoveItem#storeMove()
+ */
+class SearchPath {
+
+    /**
+     * Boards of the path, one by level. The first one is the start board.
+     */
+    private final ArrayList<BoardModel> boards = new ArrayList<>();
+
+    /**
+     * Stored moves of all levels.
+     */
+    private int[] moves = new int[1024];
+
+    /**
+     * Ranks of moves, they are used only when moves are sorted.
+     */
+    private int[] ranks = new int[1024];
+
+    /**
+     * Index of the first move of every level.
+     */
+    private int[] levelStart = new int[64];
+
+    /**
+     * Index after the last move of every level.
+     */
+    private int[] levelEnd = new int[64];
+
+    /**
+     * The current level.
+     */
+    private int level;
+
+    /**
+     * Index after the last move of the board after the current move.
+     *
+     * @see #tryMove()
+     */
+    private int childEnd;
+
+    /**
+     * Learns the order of moves, or null for the static order.
+     */
+    private MoveHistory history;
+
+    /**
+     * Creates the path.
+     *
+     * @param startBoard the start board, it's the root board of the solver
+     */
+    SearchPath(BoardModel startBoard) {
+        boards.add(startBoard);
+    }
+
+    /**
+     * Turns on the adaptive order of moves. The history is set to the move generator of the start
+     * board, so all boards of the path use it.
+     *
+     * @param history the history of the search, or null for the static order
+     */
+    void setHistory(MoveHistory history) {
+        this.history = history;
+        boards.get(0).getGenerator().setHistory(history);
+    }
+
+    /**
+     * Starts the path from the start board: calculates its hash and moves.
+     */
+    void start() {
+        BoardModel board = boards.get(0);
+        board.calculateHash();
+        if (history != null) {
+            int runs = 0;
+            for (int i = 0; i < board.size(); i++) {
+                runs += PackedBoard.getRuns(board.get(i).storeColors());
+            }
+            history.start(runs);
+            history.setDepth(0);
+        }
+        level = 0;
+        levelStart[0] = 0;
+        levelEnd[0] = calculateMoves(board, 0);
+    }
+
+    /**
+     * Gets the board of the current level.
+     *
+     * @return the board
+     */
+    BoardModel getBoard() {
+        return boards.get(level);
+    }
+
+    /**
+     * Gets the board after the current move.
+     *
+     * @return the board
+     * @see #tryMove()
+     */
+    BoardModel getChild() {
+        return boards.get(level + 1);
+    }
+
+    /**
+     * Gets the current level, i.e. the number of moves from the start board.
+     *
+     * @return the level
+     */
+    int getLevel() {
+        return level;
+    }
+
+    /**
+     * Does the current level have any moves?
+     *
+     * @return true if there are moves that were not tried
+     */
+    boolean hasMove() {
+        return levelEnd[level] > levelStart[level];
+    }
+
+    /**
+     * Gets the current move of the level, it's the best move that was not tried yet.
+     *
+     * @return the stored move
+     */
+    int getMove() {
+        return moves[levelEnd[level] - 1];
+    }
+
+    /**
+     * Makes the current move at the board of the next level. The move will be named successful, as
+     * ColorMoveItem.doMove() does, if the board is solved or has new moves after the move.
+     *
+     * @return true if the move was successful
+     * @see #getChild()
+     */
+    boolean tryMove() {
+        BoardModel child = makeChild();
+        childEnd = levelEnd[level];
+        if (child.isSolved()) {
+            return true;
+        }
+        if (history != null) {
+            history.setDepth(level + 1);
+        }
+        childEnd = calculateMoves(child, levelEnd[level]);
+        return childEnd > levelEnd[level];
+    }
+
+    /**
+     * Makes the current move at the board of the next level, without calculating its moves.
+     *
+     * @return the board after the move
+     */
+    private BoardModel makeChild() {
+        BoardModel board = boards.get(level);
+        if (level + 1 == boards.size()) {
+            BoardModel child = new BoardModel();
+            child.root = board.root;
+            for (int i = 0; i < board.size(); i++) {
+                child.addNewTube();
+            }
+            boards.add(child);
+        }
+        BoardModel child = boards.get(level + 1);
+        for (int i = 0; i < board.size(); i++) {
+            child.get(i).assignColors(board.get(i));
+        }
+
+        int move = getMove();
+        int idxFrom = (move >> 24) & 0xff;
+        int idxTo = (move >> 16) & 0xff;
+        child.moveColor(idxFrom, idxTo);
+        child.updateHash(board, idxFrom, idxTo);
+        return child;
+    }
+
+    /**
+     * Continues the path from the checkpoint: takes its levels and moves, and makes boards of the path
+     * by current moves of levels.
+     *
+     * @param checkpoint the checkpoint of the same start board
+     * @return hash values of boards of the path, from the start board
+     */
+    long[] resume(Checkpoint checkpoint) {
+        start();
+        int depth = checkpoint.level;
+        if (depth >= levelStart.length) {
+            levelStart = Arrays.copyOf(levelStart, depth + 1);
+            levelEnd = Arrays.copyOf(levelEnd, depth + 1);
+        }
+        System.arraycopy(checkpoint.levelStart, 0, levelStart, 0, depth + 1);
+        System.arraycopy(checkpoint.levelEnd, 0, levelEnd, 0, depth + 1);
+        int size = boards.get(0).size();
+        if (checkpoint.moves.length + size * size >= moves.length) {
+            moves = new int[checkpoint.moves.length + size * size + 1];
+            ranks = new int[moves.length];
+        }
+        System.arraycopy(checkpoint.moves, 0, moves, 0, checkpoint.moves.length);
+
+        long[] hashes = new long[depth + 1];
+        hashes[0] = boards.get(0).hash;
+        for (level = 0; level < depth; level++) {
+            BoardModel child = makeChild();
+            hashes[level + 1] = child.hash;
+            if (history != null) {
+                int move = getMove();
+                history.enter(level + 1, move, child.get((move >> 24) & 0xff).storeColors(),
+                        child.get((move >> 16) & 0xff).storeColors());
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Goes to the board after the successful move.
+     */
+    void push() {
+        if (level + 1 == levelStart.length) {
+            levelStart = Arrays.copyOf(levelStart, level << 1);
+            levelEnd = Arrays.copyOf(levelEnd, level << 1);
+        }
+        levelStart[level + 1] = levelEnd[level];
+        level++;
+        levelEnd[level] = childEnd;
+        if (history != null) {
+            BoardModel board = boards.get(level);
+            int move = moves[levelEnd[level - 1] - 1];
+            history.enter(level, move, board.get((move >> 24) & 0xff).storeColors(),
+                    board.get((move >> 16) & 0xff).storeColors());
+        }
+    }
+
+    /**
+     * Deletes the current move of the level, the next move becomes current.
+     */
+    void deleteMove() {
+        levelEnd[level]--;
+    }
+
+    /**
+     * Returns to the parent level. Its current move is the move that led here.
+     */
+    void pop() {
+        level--;
+    }
+
+    /**
+     * Returns to the start board. Moves of the start board remain the same.
+     */
+    void restart() {
+        level = 0;
+    }
+
+    /**
+     * Saves the checkpoint of the path.
+     *
+     * @param solver     the solver that writes checkpoints
+     * @param breakCount moves counted after the last break
+     * @see Solver#checkpoint(int, int, int[], int[], int[], long)
+     */
+    void checkpoint(Solver solver, int breakCount) {
+        solver.checkpoint(breakCount, level, levelStart, levelEnd, moves, 0);
+    }
+
+    /**
+     * Gets moves from the start board to the current one.
+     *
+     * @return stored moves
+     */
+    int[] getSolution() {
+        int[] result = new int[level];
+        for (int i = 0; i < level; i++) {
+            result[i] = moves[levelEnd[i] - 1];
+        }
+        return result;
+    }
+
+    /**
+     * Calculates moves of the board and puts them after the moves of the current level.
+     *
+     * @param board the board
+     * @param start index of the moves' array to put the first move
+     * @return index after the last move
+     */
+    private int calculateMoves(BoardModel board, int start) {
+        int size = board.size();
+        if (start + size * size >= moves.length) {
+            int newLength = Math.max(moves.length << 1, start + size * size + 1);
+            moves = Arrays.copyOf(moves, newLength);
+            ranks = Arrays.copyOf(ranks, newLength);
+        }
+        return board.calculateMoves(moves, ranks, start);
+    }
+
+}
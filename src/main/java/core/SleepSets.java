@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Skips moves that only change the order of independent moves (the partial-order reduction by sleep
+ * sets). Two moves are independent when they use four different tubes and none of them empties the
+ * donor or fills the empty tube: then both orders of these moves give the same board, and one move
+ * doesn't change the other one.<br>
+ * When the search returns from the board after the move, the move is <i>done</i> at its level. The
+ * next moves of the level give their boards the done moves which are independent of them, and these
+ * moves are not tried there: the board after such move was reached already from the done move, in the
+ * other order. So the search doesn't make the move and doesn't calculate moves of the new board only
+ * to find that it was passed.<br>
+ * Only the moves done at the parent board are skipped, not the ones the parent has got from its
+ * parent. The board of the done move was passed through, so it has tried all moves that are skipped
+ * later. The board of the skipped move of the grandparent may be passed by the other path, and it
+ * doesn't have to try them, as the table doesn't keep sleep sets. So the search skips only the boards
+ * it would find at the table, and it finds the same solution as without the reduction.<br>
+ * The tree and the stack engines use sleep sets at the same points, so they still find the same
+ * solution.
+ *
+ * @see Solver#setReduction(boolean)
+ * @see ColorMoveItem#storeMove()
+ */
+class SleepSets {
+
+    /**
+     * Moves of sleep sets of all levels, donor and recipient of stored moves only.
+     */
+    private int[] moves = new int[256];
+
+    /**
+     * Index of the first move of the sleep set of every level.
+     */
+    private int[] levelStart = new int[64];
+
+    /**
+     * Index of the first move done at every level. Moves before it came from the parent level.
+     */
+    private int[] doneStart = new int[64];
+
+    /**
+     * Index after the last move of the sleep set of every level.
+     */
+    private int[] levelEnd = new int[64];
+
+    /**
+     * The current level.
+     */
+    private int level;
+
+    /**
+     * Starts the search from the start board with the empty sleep set.
+     */
+    void start() {
+        level = 0;
+        levelStart[0] = 0;
+        doneStart[0] = 0;
+        levelEnd[0] = 0;
+    }
+
+    /**
+     * Returns to the start board after the break. Moves tried before the break are not added to the
+     * sleep set, as their subtrees were not passed through.
+     */
+    void restart() {
+        start();
+    }
+
+    /**
+     * Continues the search from the saved path. Moves done at the path before are unknown, so all
+     * levels of the path get empty sleep sets.
+     *
+     * @param depth the current level of the path
+     * @see Checkpoint
+     */
+    void resume(int depth) {
+        if (depth >= levelStart.length) {
+            levelStart = Arrays.copyOf(levelStart, depth + 1);
+            doneStart = Arrays.copyOf(doneStart, depth + 1);
+            levelEnd = Arrays.copyOf(levelEnd, depth + 1);
+        }
+        Arrays.fill(levelStart, 0, depth + 1, 0);
+        Arrays.fill(doneStart, 0, depth + 1, 0);
+        Arrays.fill(levelEnd, 0, depth + 1, 0);
+        level = depth;
+    }
+
+    /**
+     * Is the move in the sleep set of the current level?
+     *
+     * @param move the stored move
+     * @return true if the move must not be tried
+     */
+    boolean contains(int move) {
+        int key = move & 0xffff0000;
+        for (int i = levelStart[level]; i < levelEnd[level]; i++) {
+            if (moves[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The search has returned from the board after the move of the current level, all moves of that
+     * board were tried. The board of the level must be the same as before the move.
+     *
+     * @param move      the stored move
+     * @param donor     stored donor tube
+     * @param recipient stored recipient tube
+     */
+    void done(int move, int donor, int recipient) {
+        if (PackedBoard.getCount(recipient) == 0 || PackedBoard.getCount(donor) == ((move >> 8) & 0xff)) {
+            // the move changes empty tubes, so it's not independent of any move
+            return;
+        }
+        if (levelEnd[level] == moves.length) {
+            moves = Arrays.copyOf(moves, moves.length << 1);
+        }
+        moves[levelEnd[level]++] = move & 0xffff0000;
+    }
+
+    /**
+     * Goes to the next level after the move. Its sleep set is made of moves done at the current level
+     * which are independent of the move.
+     *
+     * @param move      the stored move
+     * @param donor     stored donor tube after the move
+     * @param recipient stored recipient tube after the move
+     */
+    void push(int move, int donor, int recipient) {
+        if (level + 1 == levelStart.length) {
+            levelStart = Arrays.copyOf(levelStart, level << 1);
+            doneStart = Arrays.copyOf(doneStart, level << 1);
+            levelEnd = Arrays.copyOf(levelEnd, level << 1);
+        }
+        int start = levelEnd[level];
+        int end = start;
+        if (donor != 0 && PackedBoard.getCount(recipient) != ((move >> 8) & 0xff)) {
+            int from = (move >> 24) & 0xff;
+            int to = (move >> 16) & 0xff;
+            int count = levelEnd[level] - doneStart[level];
+            if (end + count > moves.length) {
+                moves = Arrays.copyOf(moves, Math.max(moves.length << 1, end + count));
+            }
+            for (int i = doneStart[level]; i < levelEnd[level]; i++) {
+                int d = (moves[i] >> 24) & 0xff;
+                int r = (moves[i] >> 16) & 0xff;
+                if (d != from && d != to && r != from && r != to) {
+                    moves[end++] = moves[i];
+                }
+            }
+        }
+        level++;
+        levelStart[level] = start;
+        doneStart[level] = end;
+        levelEnd[level] = end;
+    }
+
+    /**
+     * Returns to the parent level.
+     */
+    void pop() {
+        level--;
+    }
+
+    /**
+     * Calculates the hash value of the board after the move without making the move.
+     *
+     * @param hash      hash value of the board
+     * @param move      the stored move
+     * @param donor     stored donor tube
+     * @param recipient stored recipient tube
+     * @return hash value of the new board
+     * @see BoardModel#tubeHash(int)
+     */
+    static long moveHash(long hash, int move, int donor, int recipient) {
+        int count = (move >> 8) & 0xff;
+        return hash - BoardModel.tubeHash(donor) - BoardModel.tubeHash(recipient)
+                + BoardModel.tubeHash(PackedBoard.removeColors(donor, count))
+                + BoardModel.tubeHash(PackedBoard.addColors(recipient, move & 0xff, count));
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+/**
+ * The result of the Solver: moves of the solution and statistics of the search. The object is
+ * immutable, so it can be passed between threads freely. The solver doesn't change the game
+ * by itself, the application decides what to do with the solution.
+ *
+ * @see Solver#solve()
+ */
+public final class Solution {
+
+    /**
+     * Stored moves of the solution.
+     *
+     * @see ColorMoveItem#storeMove()
+     */
+    private final int[] moves;
+
+    /**
+     * The search engine which has found the solution.
+     *
+     * @see Solver#setEngine(int)
+     */
+    private final int engine;
+
+    /**
+     * Number of processed moves.
+     */
+    private final long processedMoves;
+
+    /**
+     * The search time in milliseconds.
+     */
+    private final double workingTime;
+
+    /**
+     * It is <i>true</i> if there's no shorter solution.
+     */
+    private final boolean optimal;
+
+    /**
+     * The description of the search configuration, or null.
+     */
+    private final String solvedBy;
+
+    /**
+     * Number of moves the search has found, before the solution was shortened by the optimizer.
+     *
+     * @see SolutionOptimizer
+     */
+    private final int foundLength;
+
+    /**
+     * Creates the solution which was not shortened after the search.
+     *
+     * @param moves          stored moves of the solution, the array is copied
+     * @param engine         the search engine
+     * @param processedMoves number of processed moves
+     * @param workingTime    the search time in milliseconds
+     * @param optimal        true if there's no shorter solution
+     * @param solvedBy       the description of the search configuration, or null
+     */
+    public Solution(int[] moves, int engine, long processedMoves, double workingTime,
+                    boolean optimal, String solvedBy) {
+        this(moves, engine, processedMoves, workingTime, optimal, solvedBy, moves.length);
+    }
+
+    /**
+     * Creates the solution.
+     *
+     * @param moves          stored moves of the solution, the array is copied
+     * @param engine         the search engine
+     * @param processedMoves number of processed moves
+     * @param workingTime    the search time in milliseconds
+     * @param optimal        true if there's no shorter solution
+     * @param solvedBy       the description of the search configuration, or null
+     * @param foundLength    number of moves the search has found
+     */
+    public Solution(int[] moves, int engine, long processedMoves, double workingTime,
+                    boolean optimal, String solvedBy, int foundLength) {
+        this.moves = moves.clone();
+        this.foundLength = foundLength;
+        this.engine = engine;
+        this.processedMoves = processedMoves;
+        this.workingTime = workingTime;
+        this.optimal = optimal;
+        this.solvedBy = solvedBy;
+    }
+
+    /**
+     * Gets the number of moves.
+     *
+     * @return the solution length
+     */
+    public int length() {
+        return moves.length;
+    }
+
+    /**
+     * Gets the number of moves the search has found. It's more than length() if the optimizer has
+     * shortened the solution.
+     *
+     * @return the length of the found solution
+     * @see SolutionOptimizer
+     */
+    public int getFoundLength() {
+        return foundLength;
+    }
+
+    /**
+     * Gets the stored move.
+     *
+     * @param idx number of the move
+     * @return the stored move
+     * @see ColorMoveItem#storeMove()
+     */
+    public int getMove(int idx) {
+        return moves[idx];
+    }
+
+    /**
+     * Gets all stored moves.
+     *
+     * @return the copy of moves
+     */
+    public int[] getMoves() {
+        return moves.clone();
+    }
+
+    /**
+     * Gets the search engine which has found the solution.
+     *
+     * @return the engine number
+     */
+    public int getEngine() {
+        return engine;
+    }
+
+    /**
+     * Gets the number of processed moves.
+     *
+     * @return processed moves
+     */
+    public long getProcessedMoves() {
+        return processedMoves;
+    }
+
+    /**
+     * Gets the search time.
+     *
+     * @return the time in milliseconds
+     */
+    public double getWorkingTime() {
+        return workingTime;
+    }
+
+    /**
+     * Is this solution proven to be the shortest one?
+     *
+     * @return true if there's no shorter solution
+     */
+    public boolean isOptimal() {
+        return optimal;
+    }
+
+    /**
+     * Gets the description of the search configuration which has found the solution.
+     *
+     * @return the description, or null
+     * @see Solver#solvedBy
+     */
+    public String getSolvedBy() {
+        return solvedBy;
+    }
+
+}
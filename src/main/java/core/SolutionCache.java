@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps solutions of boards that were solved already, so the same board is not solved again. Boards
+ * are kept by their canonical forms, so the board which differs by the order of tubes or by colors
+ * only gets the same solution, translated to its tubes and colors.<br>
+ * The cache keeps the limited number of boards, and the board that was used the longest time ago is
+ * removed first. One cache can be shared between solvers of different boards and threads.<br>
+ * Subclasses may keep solutions somewhere else too: a board that is not in the memory is loaded
+ * from there, and every new solution is stored there.
+ *
+ * @see DiskSolutionCache
+ * @see CanonicalBoard
+ * @see Solver#setSolutionCache(SolutionCache)
+ */
+public class SolutionCache {
+
+    /**
+     * Solutions at the canonical form by canonical forms, in the order of use.
+     */
+    private final LinkedHashMap<CanonicalBoard, int[]> solutions;
+
+    /**
+     * Number of found solutions.
+     */
+    private long hits;
+
+    /**
+     * Number of boards that were not found.
+     */
+    private long misses;
+
+    /**
+     * Creates the cache.
+     *
+     * @param capacity maximum number of boards
+     */
+    public SolutionCache(int capacity) {
+        solutions = new LinkedHashMap<CanonicalBoard, int[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CanonicalBoard, int[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets the solution of the board.
+     *
+     * @param board the canonical form of the board
+     * @return stored moves of the solution for the board's tubes and colors, or null if the board
+     * is not in the cache
+     * @see ColorMoveItem#storeMove()
+     */
+    public synchronized int[] get(CanonicalBoard board) {
+        int[] moves = solutions.get(board);
+        if (moves == null) {
+            moves = load(board);
+            if (moves != null) {
+                solutions.put(board, moves);
+            }
+        }
+        if (moves == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        int[] result = new int[moves.length];
+        for (int i = 0; i < moves.length; i++) {
+            result[i] = board.fromCanonical(moves[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Puts the solution of the board into the cache. The shorter solution replaces the longer one.
+     *
+     * @param board the canonical form of the board
+     * @param moves stored moves of the solution for the board's tubes and colors
+     */
+    public synchronized void put(CanonicalBoard board, int[] moves) {
+        int[] old = solutions.get(board);
+        if (old != null && old.length <= moves.length) {
+            return;
+        }
+        int[] canonical = new int[moves.length];
+        for (int i = 0; i < moves.length; i++) {
+            canonical[i] = board.toCanonical(moves[i]);
+        }
+        solutions.put(board, canonical);
+        store(board, canonical);
+    }
+
+    /**
+     * Loads the solution of the board that is not in the memory. It is called with the lock of the
+     * cache. The routine to override it.
+     *
+     * @param board the canonical form of the board
+     * @return stored moves of the solution at the canonical form, or null if it's not found
+     */
+    protected int[] load(CanonicalBoard board) {
+        return null;
+    }
+
+    /**
+     * Stores the new solution of the board. It is called with the lock of the cache. The routine
+     * to override it.
+     *
+     * @param board the canonical form of the board
+     * @param moves stored moves of the solution at the canonical form
+     */
+    protected void store(CanonicalBoard board, int[] moves) {
+        // the routine to override
+    }
+
+    /**
+     * Gets the number of boards at the cache.
+     *
+     * @return number of boards
+     */
+    public synchronized int size() {
+        return solutions.size();
+    }
+
+    /**
+     * Gets the number of found solutions.
+     *
+     * @return number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of boards that were not found.
+     *
+     * @return number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Removes all boards from the cache.
+     */
+    public synchronized void clear() {
+        solutions.clear();
+    }
+
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Shortens the found solution without a search. Solutions of the tree and other engines often have
+ * detours: the color is poured out and back, one transfer is split into two pours, or the same board
+ * is reached twice. The optimizer replays moves at the packed board, and:<ul>
+ * <li> cuts the loop between two equal boards of the solution;
+ * <li> merges two moves of the same color into one move, if the one move gives the same board. The
+ * later move is moved back to the earlier one over moves that don't touch its tubes: such moves are
+ * independent, and their order doesn't matter.
+ * </ul>
+ * Both passes are repeated while the solution becomes shorter. Every pass takes the time linear to
+ * the solution length. The result is replayed by BoardModel.moveColor() at the end, and the found
+ * solution is returned if anything is wrong.
+ *
+ * @see Solver#solve()
+ */
+public class SolutionOptimizer {
+
+    /**
+     * How far the later move of the same color is moved back to the earlier one.
+     */
+    private static final int MERGE_WINDOW = 8;
+
+    /**
+     * The start board.
+     */
+    private final PackedBoard start;
+
+    /**
+     * Creates the optimizer.
+     *
+     * @param board the start board of solutions
+     */
+    public SolutionOptimizer(BoardModel board) {
+        start = new PackedBoard(board);
+    }
+
+    /**
+     * Shortens the solution.
+     *
+     * @param moves stored moves of the solution
+     * @return stored moves of the shorter solution, or the same array if nothing is shortened
+     * @see ColorMoveItem#storeMove()
+     */
+    public int[] optimize(int[] moves) {
+        if (replay(moves) == null) {
+            return moves;
+        }
+        int[] result = moves;
+        int length;
+        do {
+            length = result.length;
+            result = mergeMoves(cutLoops(result));
+        } while (result.length < length);
+        return (result.length < moves.length && verify(result)) ? result : moves;
+    }
+
+    /**
+     * Cuts loops: when the board is reached again later, moves between are skipped. The latest
+     * appearance of every board is taken, so the nested loops are cut at once.
+     *
+     * @param moves stored moves of the solution
+     * @return stored moves without loops
+     */
+    private int[] cutLoops(int[] moves) {
+        int[][] boards = replay(moves);
+        LongIntHashMap last = new LongIntHashMap(2 * moves.length + 2, 1 << 30);
+        for (int i = 0; i <= moves.length; i++) {
+            last.put(hash(boards[i]), i);
+        }
+
+        int[] result = new int[moves.length];
+        int count = 0;
+        int i = 0;
+        while (i < moves.length) {
+            int j = last.get(hash(boards[i]), i);
+            if (j > i && Arrays.equals(boards[i], boards[j])) {
+                i = j;
+                if (i == moves.length) {
+                    break;
+                }
+            }
+            result[count++] = moves[i++];
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Merges two moves of the same color into one move, or removes both of them if they give the same
+     * board back. The later move is moved back over moves without its tubes, until the move of the
+     * same color with the common tube is met.
+     *
+     * @param moves stored moves of the solution
+     * @return stored moves after merges
+     */
+    private int[] mergeMoves(int[] moves) {
+        int size = start.size();
+        int[] result = new int[moves.length];
+        // boards before every move of the result, and after the last one
+        int[][] boards = new int[moves.length + 1][];
+        boards[0] = start.getTubes().clone();
+        int count = 0;
+        PackedBoard board = new PackedBoard(start);
+        PackedBoard test = new PackedBoard(size);
+
+        for (int move : moves) {
+            board.load(boards[count], 0);
+            board.moveColor((move >> 24) & 0xff, (move >> 16) & 0xff);
+            int[] target = board.getTubes().clone();
+
+            int merged = -1;
+            for (int j = count - 1; j >= Math.max(0, count - MERGE_WINDOW); j--) {
+                int prev = result[j];
+                if (sharesTube(prev, move)) {
+                    if ((prev & 0xff) == (move & 0xff)) {
+                        merged = tryMerge(test, boards[j], prev, move, result, j + 1, count, target);
+                    }
+                    if (merged >= 0) {
+                        count = rebuild(board, result, boards, j, count, merged);
+                    }
+                    break;
+                }
+            }
+            if (merged < 0) {
+                result[count++] = move;
+                boards[count] = target;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Looks for the one move that gives the same board as two moves of the same color. Moves between
+     * them are replayed after it.
+     *
+     * @param test   the board to replay moves
+     * @param before the board before the first move
+     * @param first  the first move
+     * @param second the second move
+     * @param moves  moves of the result
+     * @param from   index of the first move between
+     * @param to     index after the last move between
+     * @param target the board after the second move
+     * @return the stored move, 0 if both moves may be removed, or -1 if they can't be merged
+     */
+    private int tryMerge(PackedBoard test, int[] before, int first, int second,
+                         int[] moves, int from, int to, int[] target) {
+        int[] donors = {(first >> 24) & 0xff, (second >> 24) & 0xff};
+        int[] recipients = {(first >> 16) & 0xff, (second >> 16) & 0xff};
+
+        // no move at all
+        if (replayTail(test, before, -1, -1, moves, from, to, target)) {
+            return 0;
+        }
+        for (int donor : donors) {
+            for (int recipient : recipients) {
+                if (donor != recipient && replayTail(test, before, donor, recipient, moves, from, to, target)) {
+                    test.load(before, 0);
+                    int color = PackedBoard.getTopColor(test.getTube(donor));
+                    int count = test.moveColor(donor, recipient);
+                    return (donor << 24) | (recipient << 16) | (count << 8) | color;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Replays the move and moves between, and compares the board with the target.
+     *
+     * @param test      the board to replay moves
+     * @param before    the board before the move
+     * @param donor     the donor of the move, or -1 for no move
+     * @param recipient the recipient of the move
+     * @param moves     moves of the result
+     * @param from      index of the first move between
+     * @param to        index after the last move between
+     * @param target    the board to get
+     * @return true if all moves can be done, and the target board is reached
+     */
+    private static boolean replayTail(PackedBoard test, int[] before, int donor, int recipient,
+                                      int[] moves, int from, int to, int[] target) {
+        test.load(before, 0);
+        if (donor >= 0 && test.moveColor(donor, recipient) == 0) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (test.moveColor((moves[i] >> 24) & 0xff, (moves[i] >> 16) & 0xff) == 0) {
+                return false;
+            }
+        }
+        return Arrays.equals(test.getTubes(), target);
+    }
+
+    /**
+     * Puts the merged move instead of the first one, and replays moves between again: their counts
+     * may be other now.
+     *
+     * @param board  the board to replay moves
+     * @param moves  moves of the result
+     * @param boards boards before moves of the result
+     * @param index  index of the first move of the merged two
+     * @param count  number of moves of the result
+     * @param merged the merged move, or 0 to remove both moves
+     * @return new number of moves of the result
+     */
+    private static int rebuild(PackedBoard board, int[] moves, int[][] boards, int index, int count, int merged) {
+        int[] tail = Arrays.copyOfRange(moves, index + 1, count);
+        int n = index;
+        if (merged != 0) {
+            moves[n] = merged;
+            board.load(boards[n], 0);
+            board.moveColor((merged >> 24) & 0xff, (merged >> 16) & 0xff);
+            boards[++n] = board.getTubes().clone();
+        }
+        for (int move : tail) {
+            board.load(boards[n], 0);
+            int donor = (move >> 24) & 0xff;
+            int recipient = (move >> 16) & 0xff;
+            int color = PackedBoard.getTopColor(board.getTube(donor));
+            int moved = board.moveColor(donor, recipient);
+            moves[n] = (donor << 24) | (recipient << 16) | (moved << 8) | color;
+            boards[++n] = board.getTubes().clone();
+        }
+        return n;
+    }
+
+    /**
+     * Replays moves at the packed board.
+     *
+     * @param moves stored moves
+     * @return tubes of all boards of the solution, from the start board to the last one, or null if
+     * any move can't be done
+     */
+    private int[][] replay(int[] moves) {
+        int[][] boards = new int[moves.length + 1][];
+        PackedBoard board = new PackedBoard(start);
+        boards[0] = board.getTubes().clone();
+        for (int i = 0; i < moves.length; i++) {
+            int donor = (moves[i] >> 24) & 0xff;
+            int recipient = (moves[i] >> 16) & 0xff;
+            if (donor >= board.size() || recipient >= board.size()
+                    || board.moveColor(donor, recipient) == 0) {
+                return null;
+            }
+            boards[i + 1] = board.getTubes().clone();
+        }
+        return boards;
+    }
+
+    /**
+     * Checks the shortened solution by the moves of the board model, as the game does them: every
+     * move must move the same color and the same number of cells, and the board must be solved.
+     *
+     * @param moves stored moves
+     * @return true if the solution is right
+     */
+    private boolean verify(int[] moves) {
+        BoardModel board = start.toBoardModel();
+        for (int move : moves) {
+            int donor = (move >> 24) & 0xff;
+            int recipient = (move >> 16) & 0xff;
+            if ((board.get(donor).getCurrentColor() & 0xff) != (move & 0xff)
+                    || board.moveColor(donor, recipient) != ((move >> 8) & 0xff)) {
+                return false;
+            }
+        }
+        return board.isSolved();
+    }
+
+    /**
+     * Do the moves have any common tube?
+     *
+     * @param move1 the stored move
+     * @param move2 another stored move
+     * @return true if they have the common donor or recipient
+     */
+    private static boolean sharesTube(int move1, int move2) {
+        int from1 = (move1 >> 24) & 0xff;
+        int to1 = (move1 >> 16) & 0xff;
+        int from2 = (move2 >> 24) & 0xff;
+        int to2 = (move2 >> 16) & 0xff;
+        return from1 == from2 || from1 == to2 || to1 == from2 || to1 == to2;
+    }
+
+    /**
+     * Calculates the hash value of tubes. Tubes at other places give other values.
+     *
+     * @param tubes stored tubes
+     * @return hash value
+     */
+    private static long hash(int[] tubes) {
+        long result = 0;
+        for (int stored : tubes) {
+            result = result * 0x9E3779B97F4A7C15L + stored;
+        }
+        return result;
+    }
+
+}
@@ -9,13 +9,15 @@
  */
 package core;
 
-import java.util.ArrayList;
-
-import static gui.MainFrame.gameMoves;
-import static gui.MainFrame.movesDone;
+import java.io.File;
 
 /**
  * The solver is the solver. It passes through the moves' tree  and finds a solution to the game. Or does not find.
+ * <br>
+ * The solver doesn't use any static data, so several solvers can work at the same time. It doesn't change
+ * the game either: the found solution is returned as the Solution object.
+ *
+ * @see Solution
  */
 public class Solver implements Runnable {
 
@@ -35,6 +37,86 @@ public class Solver implements Runnable {
      */
     private int breakStop;
 
+    /**
+     * The search engine: moves' tree, it is the default one.
+     */
+    public static final int ENGINE_TREE = 0;
+
+    /**
+     * The search engine: one board and the moves' stack.
+     *
+     * @see StackSolver
+     */
+    public static final int ENGINE_STACK = 1;
+
+    /**
+     * The search engine: several stack engines with different configurations race at all processor cores.
+     *
+     * @see PortfolioSolver
+     */
+    public static final int ENGINE_PORTFOLIO = 2;
+
+    /**
+     * The search engine: one search split into tasks between all processor cores.
+     *
+     * @see ParallelSolver
+     */
+    public static final int ENGINE_PARALLEL = 3;
+
+    /**
+     * The search engine: the shortest solution by IDA*.
+     *
+     * @see OptimalSolver
+     */
+    public static final int ENGINE_OPTIMAL = 4;
+
+    /**
+     * The search engine: the beam search, it keeps only the best boards of every level.
+     *
+     * @see BeamSolver
+     */
+    public static final int ENGINE_BEAM = 5;
+
+    /**
+     * Moves are ordered by the static rank only.
+     *
+     * @see #setOrdering(int)
+     */
+    public static final int ORDER_STATIC = 0;
+
+    /**
+     * Moves are ordered by the static rank and by the history of the search.
+     *
+     * @see #setOrdering(int)
+     * @see MoveHistory
+     */
+    public static final int ORDER_ADAPTIVE = 1;
+
+    /**
+     * The default maximum size of the transposition table, in megabytes.
+     */
+    public static final int DEFAULT_TABLE_SIZE = 64;
+
+    /**
+     * The current search engine.
+     */
+    private int engine = ENGINE_TREE;
+
+    /**
+     * Number of threads of the portfolio and the parallel engines. 0 means all processor cores.
+     */
+    private int threads = 0;
+
+    /**
+     * How deep the parallel engine splits the search into tasks.
+     */
+    private int splitDepth = 2;
+
+    /**
+     * The start beam width of the beam engine.
+     */
+    private int beamWidth = 1000;
+
     /**
      * the time (in milliseconds) between start and end
      */
@@ -43,13 +125,119 @@ public class Solver implements Runnable {
     /**
      * It becomes <i>true</i> when user has pressed the BREAK key.
      */
-    public boolean externalBreak;
+    public volatile boolean externalBreak;
+
+    /**
+     * Counts all processed moves, successful or not. Like the working time, it
+     * accumulates over all runs of this solver.
+     */
+    public long processedMoves;
+
+    /**
+     * Describes the configuration of the portfolio or the beam engine which has found the solution
+     * at the last run, or it is "solution cache" if the solution was taken from the cache. It is null
+     * for other engines or if the solution was not found.
+     */
+    public String solvedBy;
+
+    /**
+     * The proven minimum number of moves found by the optimal engine at the last run.
+     * It is -1 for other engines or if the solution was not found.
+     */
+    public int provenMinimum = -1;
+
+    /**
+     * It is <i>true</i> if the last run has proven that the board has no solution: the board has
+     * failed static checks, or the engine has passed all the moves: the tree or the stack engine
+     * without breaks, the portfolio engine by its unlimited worker, the parallel engine by all its
+     * tasks, the optimal engine by its search without breaks, and the beam engine without cutting
+     * boards off.
+     *
+     * @see #passesChecks(BoardModel)
+     */
+    public boolean provenUnsolvable;
+
+    /**
+     * It becomes <i>true</i> when the tree or the stack engine breaks the search and starts it again
+     * with another color, so the search doesn't pass all the moves.
+     */
+    private boolean restarted;
+
+    /**
+     * True if the solver keeps shortening the found solution after onSolved().
+     */
+    private boolean improvement;
+
+    /**
+     * The table of hash values of all calculated board to avoid repeating and recalculating their
+     * moves. Boards that are proven to have no solution are marked there. Unlike visited boards, they
+     * are kept when the solver starts again, so the next runs (with the doubled break value, for
+     * example) skip these boards at once and don't repeat the work.
+     *
+     * @see DeadEnds
+     */
+    private TranspositionTable table = new TranspositionTable(DEFAULT_TABLE_SIZE);
+
+    /**
+     * The maximum size of sets of visited boards in megabytes. The tree and the stack engines use it
+     * for their table, other engines share it between their sets.
+     */
+    private int tableSize = DEFAULT_TABLE_SIZE;
+
+    /**
+     * Learns the order of moves of the tree and the stack engines. It is null for the static order.
+     */
+    private MoveHistory history;
+
+    /**
+     * True if the depth-first search skips moves that only change the order of independent moves.
+     */
+    private boolean reduction = true;
 
     /**
-     * The stack of hash values of all calculated board to avoid
-     * repeating and recalculating their moves.
+     * Solutions of boards that were solved already, or null.
      */
-    private final ArrayList<Long> hashes = new ArrayList<>();
+    private SolutionCache solutionCache;
+
+    /**
+     * The solution found at the last run, or null.
+     */
+    private volatile Solution solution;
+
+    /**
+     * The file to save checkpoints of the search, or null.
+     */
+    private File checkpointFile;
+
+    /**
+     * Seconds between checkpoints.
+     */
+    private int checkpointInterval;
+
+    /**
+     * The checkpoint to continue the next run from, or null.
+     */
+    private Checkpoint resume;
+
+    /**
+     * Writes checkpoints of the current run, or null if the run doesn't save them.
+     */
+    private CheckpointWriter checkpointWriter;
+
+    /**
+     * The time of the next checkpoint, in milliseconds.
+     */
+    private long nextCheckpoint;
+
+    /**
+     * The time when the current run has started, in milliseconds.
+     */
+    private long startTime;
+
+    /**
+     * The thread started by startSolve(), or null.
+     */
+    private Thread thread;
 
     /**
      * Constructor of the class Solver
@@ -61,6 +249,7 @@ public class Solver implements Runnable {
         setStartTubes(startBoard);
         setBreakStop(breakStop);
         workingTime = 0;
+        processedMoves = 0;
     }
 
     /**
@@ -96,12 +285,234 @@ public class Solver implements Runnable {
         this.breakStop = breakStop;
     }
 
+    /**
+     * Sets the search engine. The tree and the stack engines find the same solutions, but the stack
+     * engine doesn't create new objects at every move. The portfolio and the parallel engines may find
+     * another solution. The optimal engine finds the shortest solution, but it takes much more time.
+     * The beam engine finds a short solution in the time which depends on the beam width.
+     *
+     * @param engine ENGINE_TREE, ENGINE_STACK, ENGINE_PORTFOLIO, ENGINE_PARALLEL, ENGINE_OPTIMAL
+     *               or ENGINE_BEAM
+     */
+    public void setEngine(int engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Gets the search engine.
+     *
+     * @return the current engine
+     * @see #setEngine(int)
+     */
+    public int getEngine() {
+        return engine;
+    }
+
+    /**
+     * Sets the number of threads of the portfolio and the parallel engines.
+     *
+     * @param threads number of threads, 0 means all processor cores
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(0, threads);
+    }
+
+    /**
+     * Gets the number of threads which will be used by the portfolio and the parallel engines.
+     *
+     * @return number of threads
+     */
+    public int getThreads() {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Sets how deep the parallel engine splits the search. Every move at the lower depth becomes
+     * a separate task, so the bigger depth gives more tasks to share between threads.
+     *
+     * @param splitDepth the split depth, 0 means one task for the whole search
+     */
+    public void setSplitDepth(int splitDepth) {
+        this.splitDepth = Math.max(0, splitDepth);
+    }
+
+    /**
+     * Sets the start beam width of the beam engine. The time and the memory of the beam search
+     * grow linearly with the width. If the beam finds nothing, the engine makes it wider by itself.
+     *
+     * @param beamWidth number of boards kept at every level
+     */
+    public void setBeamWidth(int beamWidth) {
+        this.beamWidth = Math.max(1, beamWidth);
+    }
+
+    /**
+     * Sets the maximum size of the transposition table of the tree and the stack engines. When the
+     * table is full, it forgets some boards instead of taking more memory, so the search may pass
+     * them again. Dead ends found by previous runs are lost when the size is changed. The portfolio
+     * engine splits this size between its workers, and the optimal and the parallel engines keep
+     * their sets of boards within it too.
+     *
+     * @param megabytes the table size in megabytes
+     * @see TranspositionTable
+     */
+    public void setTableSize(int megabytes) {
+        tableSize = Math.max(1, megabytes);
+        table = new TranspositionTable(tableSize);
+    }
+
+    /**
+     * Gets the maximum size of sets of visited boards.
+     *
+     * @return the size in megabytes
+     */
+    public int getTableSize() {
+        return tableSize;
+    }
+
+    /**
+     * Sets the order of moves of the tree and the stack engines. The adaptive order learns which moves
+     * lead the search closer to the solution, and keeps that between runs of this solver. Other engines
+     * use the static order always.
+     *
+     * @param ordering ORDER_STATIC or ORDER_ADAPTIVE
+     * @see MoveHistory
+     */
+    public void setOrdering(int ordering) {
+        history = (ordering == ORDER_ADAPTIVE) ? new MoveHistory() : null;
+    }
+
+    /**
+     * Gets the order of moves of the tree and the stack engines.
+     *
+     * @return ORDER_STATIC or ORDER_ADAPTIVE
+     * @see #setOrdering(int)
+     */
+    public int getOrdering() {
+        return (history != null) ? ORDER_ADAPTIVE : ORDER_STATIC;
+    }
+
+    /**
+     * Turns on or off the partial-order reduction of the depth-first search (the tree engine and all
+     * engines that use the stack engine): the search doesn't try both orders of moves which use
+     * different tubes, as they give the same board. It is on by default. The reduction doesn't change
+     * the found solution, it only saves moves that would lead to boards passed already.
+     *
+     * @param reduction true to skip the second order of independent moves
+     * @see SleepSets
+     */
+    public void setReduction(boolean reduction) {
+        this.reduction = reduction;
+    }
+
+    /**
+     * Is the partial-order reduction on?
+     *
+     * @return true if the reduction is on
+     * @see #setReduction(boolean)
+     */
+    public boolean getReduction() {
+        return reduction;
+    }
+
+    /**
+     * Sets the cache of solutions. The solver looks for the board there before the search, and puts
+     * the found solution there. The cache may be shared with other solvers. The optimal engine doesn't
+     * take solutions from the cache, as they may be longer than the shortest one.
+     *
+     * @param solutionCache the cache, or null to search always
+     */
+    public void setSolutionCache(SolutionCache solutionCache) {
+        this.solutionCache = solutionCache;
+    }
+
+    /**
+     * Turns on the improvement of the found solution. When the solver is started by startSolve(), it
+     * calls onSolved() with the first found solution, and then it keeps looking for shorter solutions
+     * in the same thread: every shorter solution is passed to onImproved(). The improvement goes on
+     * until the shortest solution is found or the solver is stopped by stopProcess().
+     *
+     * @param improvement true to shorten the found solution
+     * @see #onImproved()
+     */
+    public void setImprovement(boolean improvement) {
+        this.improvement = improvement;
+    }
+
+    /**
+     * Is the improvement of the found solution on?
+     *
+     * @return true if the solver shortens the found solution
+     * @see #setImprovement(boolean)
+     */
+    public boolean getImprovement() {
+        return improvement;
+    }
+
+    /**
+     * Gets the cache of solutions.
+     *
+     * @return the cache, or null if it's not used
+     * @see #setSolutionCache(SolutionCache)
+     */
+    public SolutionCache getSolutionCache() {
+        return solutionCache;
+    }
+
+    /**
+     * Turns on checkpoints of the tree and the stack engines: the state of the search is saved into
+     * the file periodically and when the search is interrupted, so it can be continued later. The file
+     * is deleted when the run is over. Checkpoints are written by another thread.
+     *
+     * @param file    the checkpoint file, or null to turn checkpoints off
+     * @param seconds seconds between checkpoints, 0 turns checkpoints off
+     * @see Checkpoint
+     */
+    public void setCheckpoint(File file, int seconds) {
+        checkpointFile = file;
+        checkpointInterval = Math.max(0, seconds);
+    }
+
+    /**
+     * Sets the checkpoint to continue the next run from. It takes the break value, counters and the
+     * table of the checkpoint. The checkpoint is used once, and only if it was saved for the same board
+     * and the engine is the tree or the stack one.
+     *
+     * @param checkpoint the checkpoint, or null to start from the beginning
+     */
+    public void setResume(Checkpoint checkpoint) {
+        resume = checkpoint;
+    }
+
+    /**
+     * Gets the transposition table of the tree and the stack engines, i.e. to show its counters.
+     *
+     * @return the table
+     */
+    public TranspositionTable getTable() {
+        return table;
+    }
+
     /**
      * Runs the solve process / thread.
      */
     public void startSolve() {
-        Thread t = new Thread(this);
-        t.start();
+        thread = new Thread(this);
+        thread.start();
+    }
+
+    /**
+     * Waits until the thread started by startSolve() finishes, i.e. the last checkpoint is written.
+     */
+    public void waitSolve() {
+        Thread t = thread;
+        if (t != null) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
     /**
@@ -111,170 +522,513 @@ public class Solver implements Runnable {
         externalBreak = true;
     }
 
+    /**
+     * Gets the number of boards that are proven to have no solution by all runs of this solver.
+     *
+     * @return number of dead ends
+     */
+    public int getDeadStatesCount() {
+        return table.getDeadCount();
+    }
+
+    /**
+     * Gets the solution found at the last run.
+     *
+     * @return the solution, or null if it was not found
+     */
+    public Solution getSolution() {
+        return solution;
+    }
+
     @Override
     public void run() {
 
-        // myCount - counts all processed moves
-        // used at final output only
-//        long myCount = 0;
+        if (solve() != null) {
 
-        // breakCount - counts all processed moves after the last break
-        int breakCount = 0;
+//            System.out.println("Solved! " + "Count: " + processedMoves);
+//            System.out.println("Time: " + workingTime + " ms");
+//            System.out.println("Break: " + breakStop);
 
-        // solved or not solved - this is a question
-        boolean solved = false;
+            // runs an external procedure if anyone was override it
+            onSolved();
+
+            if (improvement && !externalBreak && !solution.isOptimal()) {
+                improve();
+            }
+
+        } else { // NOT SOLVED !!!! 
+            if (externalBreak) {
+
+                // runs an external procedure if anyone was override it
+                onExternalBreak();
+
+            } else {
+//                System.out.println("NOT SOLVED. Try another parameters and/or change the break value.");
+//                System.out.println("Time: " + workingTime + " ms");
+//                System.out.println("Count: " + processedMoves);
+//                System.out.println("Break: " + breakStop);
+
+                // runs an external procedure if anyone was override it
+                onNotSolved();
+            }
+
+        }
+    }
+
+    /**
+     * Searches for the solution in the current thread. Unlike run(), it doesn't call onSolved() and
+     * other routines.
+     *
+     * @return the solution, or null if it was not found or the process was interrupted
+     */
+    public Solution solve() {
 
         // external break is true if a user interrupts process
         externalBreak = false;
 
-        hashes.clear();
+        table.clearVisited();
+        solvedBy = null;
+        provenMinimum = -1;
+        provenUnsolvable = false;
 
         // time when the routine starts
-        long startTime = System.currentTimeMillis();
+        startTime = System.currentTimeMillis();
 
-        // initial values 
-        board.calculateMoves();
-        ColorMoveItem move = board.currentMove;
+        // the same board, or the board with other order of tubes and other colors, may be solved already
+        CanonicalBoard canonical = (solutionCache != null) ? new CanonicalBoard(board) : null;
 
-        if (move != null) { // if this board has any moves 
+        // stored moves of the solution
+        int[] moves = (canonical != null && engine != ENGINE_OPTIMAL) ? solutionCache.get(canonical) : null;
+        boolean cached = moves != null;
 
-            do {
-                boolean moveSuccess = move.doMove();
+        Checkpoint resumed = null;
+        if (moves == null && (engine == ENGINE_TREE || engine == ENGINE_STACK)) {
+            if (resume != null && resume.matches(board)) {
+                resumed = resume;
+                table.restore(resumed);
+                setBreakStop(resumed.breakStop);
+                processedMoves = resumed.processedMoves;
+                workingTime = resumed.workingTime;
+            }
+            if (checkpointFile != null && checkpointInterval > 0) {
+                checkpointWriter = new CheckpointWriter(checkpointFile);
+                nextCheckpoint = startTime + checkpointInterval * 1000L;
+            }
+        }
+        resume = null;
 
-                if (moveSuccess) {
-                    // counts
-                    // myCount++; // not used
-                    breakCount++;
+        if (moves != null) {
+            solvedBy = "solution cache";
+        } else if (!passesChecks(board)) {
+            provenUnsolvable = true;
+        } else if (engine == ENGINE_STACK) {
+            StackSolver stackSolver = new StackSolver(this, board);
+            if (history != null) {
+                stackSolver.setHistory(history);
+            }
+            stackSolver.setCheckpoints(resumed);
+            moves = stackSolver.search(table, breakStop);
+            processedMoves += stackSolver.processedMoves;
+            provenUnsolvable = moves == null && !externalBreak && !stackSolver.isRestarted();
+        } else if (engine == ENGINE_PORTFOLIO) {
+            PortfolioSolver portfolio = new PortfolioSolver(this, board, breakStop);
+            moves = portfolio.search(Math.max(2, getThreads()));
+            processedMoves += portfolio.getProcessedMoves();
+            solvedBy = portfolio.getReport();
+            provenUnsolvable = moves == null && portfolio.isComplete() && !externalBreak;
+        } else if (engine == ENGINE_PARALLEL) {
+            ParallelSolver parallel = new ParallelSolver(this, board, splitDepth);
+            moves = parallel.search(getThreads());
+            processedMoves += parallel.getProcessedMoves();
+            provenUnsolvable = moves == null && parallel.isComplete() && !externalBreak;
+        } else if (engine == ENGINE_OPTIMAL) {
+            OptimalSolver optimal = new OptimalSolver(this, board);
+            moves = optimal.search(breakStop);
+            processedMoves += optimal.processedMoves;
+            if (moves != null && optimal.proven) {
+                provenMinimum = moves.length;
+            }
+            provenUnsolvable = moves == null && optimal.complete && !externalBreak;
+        } else if (engine == ENGINE_BEAM) {
+            BeamSolver beam = new BeamSolver(this, board);
+            moves = beam.search(beamWidth);
+            processedMoves += beam.processedMoves;
+            if (moves != null) {
+                solvedBy = "beam width " + beam.lastBeamWidth;
+            }
+            provenUnsolvable = moves == null && beam.complete && !externalBreak;
+        } else {
+            moves = searchTree(resumed);
+            provenUnsolvable = moves == null && !externalBreak && !restarted;
+        }
 
-                    // check if the board was any time before
-                    moveSuccess = !hashes.contains(move.bmAfter.hash);
-                }
+        workingTime = (double) System.currentTimeMillis() - startTime + workingTime;
 
-                if (moveSuccess) {
+        if (checkpointWriter != null) {
+            if (moves == null && externalBreak) {
+                // the last checkpoint is written, so the search may be continued
+                checkpointWriter.finish();
+            } else {
+                checkpointWriter.delete();
+            }
+            checkpointWriter = null;
+        }
 
-                    // now we'll go with a new tubes configuration that we got after the move
-                    board = move.bmAfter;
+        // detours of the found solution are cut, cached solutions are shortened already
+        int foundLength = (moves != null) ? moves.length : 0;
+        if (moves != null && provenMinimum < 0 && !cached) {
+            moves = new SolutionOptimizer(board).optimize(moves);
+        }
 
-                    // add hash value of the new board to hashes stack
-                    hashes.add(board.hash);
+        if (moves != null && canonical != null) {
+            solutionCache.put(canonical, moves);
+        }
 
-                    // is it solved already?
-                    solved = board.isSolved();
+        solution = (moves == null) ? null
+                : new Solution(moves, engine, processedMoves, workingTime, provenMinimum >= 0, solvedBy,
+                foundLength);
+        return solution;
+    }
 
-                    if (!solved) {
-                        // our next move will be the best move of a new board
-                        move = board.currentMove;
-                    }  // else the cycle will be finished
+    /**
+     * Passes through the moves' tree. Only the current path of the tree is kept: one board per level
+     * and moves that were not tried yet.
+     *
+     * @param resumed the checkpoint to continue the search from, or null to start from the beginning
+     * @return stored moves of the solution, or null if the solution was not found
+     * @see #ENGINE_TREE
+     * @see SearchPath
+     */
+    private int[] searchTree(Checkpoint resumed) {
 
-                } else { // unsuccessful move
+        // the current path, we start from the root board
+        SearchPath path = new SearchPath(board);
+        path.setHistory(history);
 
-                    // doMove wasn't successful due to any reason (no continue, repeated combination etc.)
-                    // counts
-                    // myCount++; // not used
-                    breakCount++;
+        // breakCount - counts all processed moves after the last break
+        int breakCount = 0;
 
-                    // First we'll check is there enough to count this starting color 
-                    if (useBreak && (breakCount >= breakStop)) {
-                        breakCount = 0;
+        // solved or not solved - this is a question
+        boolean solved = false;
 
-                        // Return to the beginning... 
-                        board = board.root;
-                        byte curColor = board.currentMove.color;
+        // finds boards without solution
+        DeadEnds deadEnds = new DeadEnds(table);
 
-                        // And search for the new color to start 
-                        while (curColor == board.currentMove.color) {
-                            board.deleteMove(board.currentMove);
-                            if (board.currentMove == null) {
-                                break;
-                            }
-                        }
-                        // next move will be the best of the rest move of the root board
-                        move = board.currentMove;
+        // skips the second order of independent moves
+        SleepSets sleepSets = reduction ? new SleepSets() : null;
 
-                    } else { // move.doMove() == false && breakCount < breakStop
+        // the run that was continued may have had breaks before the checkpoint
+        restarted = resumed != null && useBreak;
 
-                        // doMove wasn't successful, and we have no reasons to start with a new color.
-                        // So:  
-                        board = move.bmBefore;
+        // initial values 
+        if (resumed != null) {
+            long[] hashes = path.resume(resumed);
+            deadEnds.resume(hashes, hashes.length);
+            if (sleepSets != null) {
+                sleepSets.resume(path.getLevel());
+            }
+            breakCount = resumed.breakCount;
+        } else {
+            path.start();
+            deadEnds.start(board.hash);
+            if (sleepSets != null) {
+                sleepSets.start();
+            }
+        }
+        boolean hasMove = path.hasMove();
+        if (deadEnds.contains(board.hash)) {
+            // the previous run has proven that there's no solution
+            hasMove = false;
+        }
 
-                        do {
-                            // delete current move from moves array 
-                            board.deleteMove(board.currentMove);
+        while (hasMove && !solved && !externalBreak) {
 
-                            // next move will be next of moves array 
-                            move = board.currentMove;
+            if ((processedMoves & 0xfff) == 0 && isCheckpointTime()) {
+                path.checkpoint(this, breakCount);
+            }
 
-                            // if tubes have not any moves...
-                            if (move == null) {
+            if (sleepSets != null && sleepSets.contains(path.getMove())) {
+                // the board after this move was reached in the other order of moves. The move isn't
+                // processed, but it's counted for the break as the failed move, so the search goes
+                // the same way as without the reduction. And dead ends have to know where it leads.
+                long hash = moveHash(path.getBoard(), path.getMove());
+                if (deadEnds.contains(hash)) {
+                    breakCount += 2;
+                } else if (table.contains(hash)) {
+                    breakCount += 2;
+                    deadEnds.visited(hash);
+                } else {
+                    // the board has no moves, so it wasn't added to the table. Or the table has forgotten it
+                    breakCount++;
+                    if (table.getEvictions() > 0) {
+                        deadEnds.visited(hash);
+                    }
+                }
+                if (useBreak && (breakCount >= breakStop)) {
+                    breakCount = 0;
+                    hasMove = restart(path, deadEnds, sleepSets);
+                } else {
+                    hasMove = deleteMove(path, deadEnds, sleepSets);
+                }
+                continue;
+            }
 
-                                // we'll try with parent tubes 
-                                board = board.parent;
+            boolean moveSuccess = path.tryMove();
+            BoardModel child = path.getChild();
 
-                                // and if tubes have no parent...
-                                if (board == null) {
+            if (moveSuccess) {
+                // counts
+                processedMoves++;
+                breakCount++;
 
-                                    // then we have to stop
-                                    break;
-                                }
-                            }
-                        } while (move == null);
+                if (deadEnds.contains(child.hash)) {
+                    // this board was proven to have no solution
+                    moveSuccess = false;
+                } else {
+                    // check if the board was any time before
+                    moveSuccess = !table.contains(child.hash);
+                    if (moveSuccess && table.getEvictions() > 0 && deadEnds.isOnPath(child.hash)) {
+                        // the table has forgotten this board of the path
+                        moveSuccess = false;
+                    }
+                    if (!moveSuccess) {
+                        deadEnds.visited(child.hash);
                     }
                 }
+            }
 
-            } while (!solved && !externalBreak && move != null);
+            if (moveSuccess) {
+
+                // now we'll go with a new tubes configuration that we got after the move
+                if (sleepSets != null) {
+                    int move = path.getMove();
+                    sleepSets.push(move, child.get((move >> 24) & 0xff).storeColors(),
+                            child.get((move >> 16) & 0xff).storeColors());
+                }
+                path.push();
+
+                // add hash value of the new board to the table
+                table.add(child.hash, path.getLevel());
+                deadEnds.enter(child.hash);
+
+                // is it solved already? If not, our next move will be the best move of a new board
+                solved = child.isSolved();
+
+            } else { // unsuccessful move
+
+                // the move wasn't successful due to any reason (no continue, repeated combination etc.)
+                // counts
+                processedMoves++;
+                breakCount++;
+
+                // First we'll check is there enough to count this starting color 
+                if (useBreak && (breakCount >= breakStop)) {
+                    breakCount = 0;
+                    hasMove = restart(path, deadEnds, sleepSets);
+
+                } else {
+
+                    // the move wasn't successful, and we have no reasons to start with a new color.
+                    // So delete the current move, the next one becomes current
+                    hasMove = deleteMove(path, deadEnds, sleepSets);
+                }
+            }
+        }
 
+        if (!solved && externalBreak) {
+            path.checkpoint(this, breakCount);
         }
+        return solved ? path.getSolution() : null;
+    }
 
+    /**
+     * Shortens the found solution until the shortest one is found or the solver is stopped.
+     *
+     * @see OptimalSolver#improve(int[])
+     */
+    private void improve() {
+        startTime = System.currentTimeMillis();
+        OptimalSolver optimal = new OptimalSolver(this, board);
+        int[] moves = optimal.improve(solution.getMoves());
+        processedMoves += optimal.processedMoves;
         workingTime = (double) System.currentTimeMillis() - startTime + workingTime;
+        if (optimal.proven) {
+            solution = new Solution(moves, engine, processedMoves, workingTime, true, solution.getSolvedBy());
+        }
+    }
 
-        if (solved) {
+    /**
+     * Takes the shorter solution found by the improvement, puts it into the cache, and calls
+     * onImproved().
+     *
+     * @param moves       stored moves of the solution
+     * @param engineMoves moves processed by the improvement that are not added to processedMoves yet
+     */
+    void improved(int[] moves, long engineMoves) {
+        solution = new Solution(moves, engine, processedMoves + engineMoves,
+                workingTime + System.currentTimeMillis() - startTime, false, "improvement");
+        if (solutionCache != null) {
+            solutionCache.put(new CanonicalBoard(board), moves);
+        }
+        onImproved();
+    }
 
-            // save statistics
-            Options.solverTimeLast = workingTime / 1000;
-            if (Options.solverTimeMax < Options.solverTimeLast)
-                Options.solverTimeMax = Options.solverTimeLast;
-            Options.solverTimeAvg = (Options.solverTimeAvg * Options.numSolverSuccess
-                    + Options.solverTimeLast) / (Options.numSolverSuccess + 1);
+    /**
+     * Is it time to save the checkpoint of the search?
+     *
+     * @return true if the run saves checkpoints and the interval has passed
+     */
+    boolean isCheckpointTime() {
+        return checkpointWriter != null && System.currentTimeMillis() >= nextCheckpoint;
+    }
 
-            // place solution to the gameMoves array
-            do {
-                gameMoves.add(movesDone, move.storeMove());
-                move = move.parent;
-            } while (move != null);
+    /**
+     * Saves the checkpoint of the tree or the stack engine, if the run saves them. The arrays are
+     * copied here, and the copy is written by another thread.
+     *
+     * @param breakCount  moves counted after the last break
+     * @param level       the current level
+     * @param levelStart  index of the first move of every level
+     * @param levelEnd    index after the last move of every level
+     * @param moves       stored moves of all levels
+     * @param engineMoves moves processed by the engine that are not added to processedMoves yet
+     */
+    void checkpoint(int breakCount, int level, int[] levelStart, int[] levelEnd, int[] moves, long engineMoves) {
+        if (checkpointWriter == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int[] tubes = new int[board.size()];
+        for (int i = 0; i < tubes.length; i++) {
+            tubes[i] = board.get(i).storeColors();
+        }
+        checkpointWriter.offer(new Checkpoint(tubes, breakStop, breakCount, processedMoves + engineMoves,
+                workingTime + now - startTime, level, levelStart, levelEnd, moves, table));
+        nextCheckpoint = System.currentTimeMillis() + checkpointInterval * 1000L;
+    }
 
-//            System.out.println("Solved! " + "Count: " + myCount);
-//            System.out.println("Time: " + workingTime + " ms");
-//            System.out.println("Break: " + breakStop);
+    /**
+     * Returns the tree engine's path to the start board after the break, and deletes all root moves
+     * of the current color.
+     *
+     * @param path      the path of the tree engine
+     * @param deadEnds  the finder of dead ends
+     * @param sleepSets sleep sets of the path, or null
+     * @return false if the start board has no moves left
+     */
+    private boolean restart(SearchPath path, DeadEnds deadEnds, SleepSets sleepSets) {
+        // Return to the beginning...
+        restarted = true;
+        path.restart();
+        deadEnds.restart();
+        if (sleepSets != null) {
+            sleepSets.restart();
+        }
+        int curColor = path.getMove() & 0xff;
 
-            // runs an external procedure if anyone was override it
-            onSolved();
+        // And search for the new color to start
+        do {
+            path.deleteMove();
+        } while (path.hasMove() && (path.getMove() & 0xff) == curColor);
+        // next move will be the best of the rest move of the root board
+        return path.hasMove();
+    }
 
-        } else { // NOT SOLVED !!!! 
-            if (externalBreak) {
+    /**
+     * Deletes the current move of the tree engine's path. If the board has no moves after that, the
+     * path returns to the parent board and deletes its current move too.
+     *
+     * @param path      the path of the tree engine
+     * @param deadEnds  the finder of dead ends
+     * @param sleepSets sleep sets of the path, or null
+     * @return false if the start board has no moves left
+     */
+    private boolean deleteMove(SearchPath path, DeadEnds deadEnds, SleepSets sleepSets) {
+        path.deleteMove();
 
-                // runs an external procedure if anyone was override it
-                onExternalBreak();
+        // if tubes have not any moves...
+        while (!path.hasMove()) {
 
-            } else {
-//                System.out.println("NOT SOLVED. Try another parameters and/or change the break value.");
-//                System.out.println("Time: " + workingTime + " ms");
-//                System.out.println("Count: " + myCount);
-//                System.out.println("Break: " + breakStop);
+            // all moves are tried
+            deadEnds.leave();
+            if (history != null) {
+                history.leave(path.getLevel());
+            }
 
-                // runs an external procedure if anyone was override it
-                onNotSolved();
+            // and if tubes have no parent...
+            if (path.getLevel() == 0) {
+
+                // then we have to stop
+                return false;
             }
 
+            // we'll try with parent tubes
+            path.pop();
+            if (sleepSets != null) {
+                sleepSets.pop();
+                sleepSets.done(path.getMove(), storedTube(path.getBoard(), path.getMove() >> 24),
+                        storedTube(path.getBoard(), path.getMove() >> 16));
+            }
+            path.deleteMove();
         }
+        return true;
+    }
+
+    /**
+     * Checks the board before the search: every color must fill whole tubes, and the board must have
+     * any move. These checks are cheap. The board that fails them has no solution, and the board that
+     * passes them may have no solution too: only the search finds it out.
+     *
+     * @param board the board
+     * @return false if the board surely has no solution
+     */
+    public static boolean passesChecks(BoardModel board) {
+        PackedBoard pb = new PackedBoard(board);
+        return pb.isSolved() || (pb.hasFullColors() && pb.hasMoves());
+    }
+
+    /**
+     * Gets the stored tube of the board.
+     *
+     * @param board the board
+     * @param idx   index of the tube, only the low byte is used
+     * @return stored colors of the tube
+     */
+    private static int storedTube(BoardModel board, int idx) {
+        return board.get(idx & 0xff).storeColors();
+    }
+
+    /**
+     * Calculates the hash value of the board after the move without making the move.
+     *
+     * @param board the board
+     * @param move  the stored move
+     * @return hash value of the new board
+     */
+    private static long moveHash(BoardModel board, int move) {
+        return SleepSets.moveHash(board.hash, move, storedTube(board, move >> 24), storedTube(board, move >> 16));
     }
 
     /**
      * Calls when the Solver was finished successfully. The routine to override it.
+     *
+     * @see #getSolution()
      */
     public void onSolved() {
         // the routine to override
     }
 
+    /**
+     * Calls when the improvement has found the shorter solution. It is called from the solver's
+     * thread, while the improvement goes on. The routine to override it.
+     *
+     * @see #getSolution()
+     * @see #setImprovement(boolean)
+     */
+    public void onImproved() {
+        // the routine to override
+    }
+
     /**
      * Calls when the Solver was interrupted by the user. The routine to override it.
      */
@@ -0,0 +1,642 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The search engine that uses the only one board. It makes the move at this board, goes deeper, and
+ * then unmakes the move using the count of moved colors stored in the move. All the moves are kept
+ * in one integer array as the stack of levels, so the search creates no objects at all. <br>
+ * The order of moves and all the decisions are the same as at the moves' tree of the Solver,
+ * therefore both engines find the same solution.
+ *
+ * @see Solver#ENGINE_STACK
+ * @see ColorMoveItem#storeMove()
+ */
+class StackSolver {
+
+    /**
+     * The solver which runs this engine. Its break flag is used.
+     */
+    private final Solver solver;
+
+    /**
+     * The one and only board. Moves are made and unmade here.
+     */
+    private final PackedBoard board;
+
+    /**
+     * Moves of all levels, stored into integers.
+     *
+     * @see ColorMoveItem#storeMove()
+     */
+    private int[] moves = new int[256];
+
+    /**
+     * Ranks of the moves from the <i>moves</i> array. Used to sort moves of a level.
+     */
+    private int[] ranks = new int[256];
+
+    /**
+     * Index of the first move of every level at the <i>moves</i> array.
+     */
+    private int[] levelStart = new int[64];
+
+    /**
+     * Index after the last move of every level. The last move of the level is its current move,
+     * and the next level starts right after it.
+     */
+    private int[] levelEnd = new int[64];
+
+    /**
+     * Hash values of the board at every level.
+     */
+    private long[] levelHash = new long[64];
+
+    /**
+     * Finds dead ends of the search, or null if the search doesn't use the transposition table.
+     */
+    private DeadEnds deadEnds;
+
+    /**
+     * Skips moves that only change the order of independent moves, or null if the reduction is off.
+     */
+    private SleepSets sleepSets;
+
+    /**
+     * The current level, i.e. the number of moves done from the start board.
+     */
+    private int level;
+
+    /**
+     * Calculates and ranks moves of the board.
+     */
+    private final MoveGenerator generator = new MoveGenerator();
+
+    /**
+     * Counts all processed moves of this engine, successful or not.
+     *
+     * @see Solver#processedMoves
+     */
+    long processedMoves;
+
+    /**
+     * It becomes <i>true</i> when this engine has to be stopped. The Solver's external break
+     * stops all engines, this flag stops the engine and all others that share the flag.
+     */
+    private final AtomicBoolean stopped;
+
+    /**
+     * The color to start the search with. Root moves of this color will be tried first.
+     * 0 means the usual order.
+     */
+    private int startColor;
+
+    /**
+     * Learns the order of moves, or null for the static order.
+     */
+    private MoveHistory history;
+
+    /**
+     * The random generator to break ties between moves with equal ranks. If it is null, moves
+     * with equal ranks keep the order of the tree engine.
+     */
+    private SplittableRandom random;
+
+    /**
+     * True if the engine saves checkpoints of the search.
+     */
+    private boolean checkpoints;
+
+    /**
+     * The checkpoint to continue the search from, or null.
+     */
+    private Checkpoint resume;
+
+    /**
+     * It becomes <i>true</i> when the search breaks and starts again with another color, so it
+     * doesn't pass all the moves.
+     */
+    private boolean restarted;
+
+    /**
+     * Creates the engine.
+     *
+     * @param solver     the solver which runs this engine
+     * @param startBoard the start configuration of the tubes board
+     */
+    StackSolver(Solver solver, BoardModel startBoard) {
+        this(solver, new PackedBoard(startBoard), new AtomicBoolean());
+    }
+
+    /**
+     * Creates the engine that works at the packed board. The board isn't copied, it will be changed
+     * while searching and restored after the search.
+     *
+     * @param solver     the solver which runs this engine
+     * @param startBoard the start configuration of the tubes board
+     * @param stopped    the stop flag, it may be shared between several engines
+     */
+    StackSolver(Solver solver, PackedBoard startBoard, AtomicBoolean stopped) {
+        this.solver = solver;
+        this.board = startBoard;
+        this.stopped = stopped;
+    }
+
+    /**
+     * Sets the color to start the search with.
+     *
+     * @param startColor color number, or 0 for the usual order of root moves
+     */
+    void setStartColor(int startColor) {
+        this.startColor = startColor;
+    }
+
+    /**
+     * Turns on the randomized tie-breaking between moves with equal ranks.
+     *
+     * @param seed the seed of the random generator
+     */
+    void setRandomSeed(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Turns on the adaptive order of moves.
+     *
+     * @param history the history of the search, it must not be shared with other threads
+     */
+    void setHistory(MoveHistory history) {
+        this.history = history;
+        generator.setHistory(history);
+    }
+
+    /**
+     * Turns on checkpoints of the search, the solver writes them. Only the engine that runs the
+     * whole search saves checkpoints, not the ones of other engines.
+     *
+     * @param resume the checkpoint to continue the search from, or null to start from the beginning
+     * @see Solver#setCheckpoint(java.io.File, int)
+     */
+    void setCheckpoints(Checkpoint resume) {
+        checkpoints = true;
+        this.resume = resume;
+    }
+
+    /**
+     * Was the last search broken and started again? If not, and the solution was not found, the
+     * search has passed all the moves, so the board has no solution.
+     *
+     * @return true if the search has restarted at least once
+     */
+    boolean isRestarted() {
+        return restarted;
+    }
+
+    /**
+     * Stops the search. The engine finishes its current move and returns.
+     */
+    void stop() {
+        stopped.set(true);
+    }
+
+    /**
+     * Was this engine stopped?
+     *
+     * @return true if stop() was called
+     */
+    boolean isStopped() {
+        return stopped.get();
+    }
+
+    /**
+     * Gets colors of the start board moves, from the best move to the worst one.
+     *
+     * @return color numbers, every color is listed once
+     */
+    int[] getStartColors() {
+        int[] rootMoves = getStartMoves();
+        int[] colors = new int[rootMoves.length];
+        int count = 0;
+        for (int move : rootMoves) {
+            int color = move & 0xff;
+            int j = 0;
+            while (j < count && colors[j] != color) {
+                j++;
+            }
+            if (j == count) {
+                colors[count++] = color;
+            }
+        }
+        return Arrays.copyOf(colors, count);
+    }
+
+    /**
+     * Gets moves of the start board, from the best move to the worst one.
+     *
+     * @return stored moves
+     * @see ColorMoveItem#storeMove()
+     */
+    int[] getStartMoves() {
+        int end = calculateMoves(0);
+        int[] result = new int[end];
+        for (int i = 0; i < end; i++) {
+            result[i] = moves[end - 1 - i];
+        }
+        return result;
+    }
+
+    /**
+     * Searches for the solution.
+     *
+     * @param hashes    the set of hash values of all calculated boards
+     * @param breakStop how much tries before we'll break the solving and start it again with the new color,
+     *                  0 means unlimited tries
+     * @return stored moves of the solution, or null if the solution was not found
+     */
+    int[] search(LongSet hashes, int breakStop) {
+        return search(hashes, null, breakStop);
+    }
+
+    /**
+     * Searches for the solution with the transposition table. The depth of boards is stored there,
+     * and dead ends are found and skipped.
+     *
+     * @param table     the transposition table of all calculated boards
+     * @param breakStop how much tries before we'll break the solving and start it again with the new color,
+     *                  0 means unlimited tries
+     * @return stored moves of the solution, or null if the solution was not found
+     */
+    int[] search(TranspositionTable table, int breakStop) {
+        return search(table, table, breakStop);
+    }
+
+    /**
+     * Searches for the solution.
+     *
+     * @param hashes    the set of hash values of all calculated boards
+     * @param table     the same set as the transposition table, or null if it's the plain set
+     * @param breakStop how much tries before we'll break the solving and start it again with the new color,
+     *                  0 means unlimited tries
+     * @return stored moves of the solution, or null if the solution was not found
+     */
+    private int[] search(LongSet hashes, TranspositionTable table, int breakStop) {
+
+        boolean useBreak = breakStop > 0;
+        int breakCount = 0;
+        boolean solved = false;
+
+        deadEnds = (table != null) ? new DeadEnds(table) : null;
+
+        level = 0;
+        levelHash[0] = board.calculateHash();
+        levelStart[0] = 0;
+        if (history != null) {
+            int runs = 0;
+            for (int i = 0; i < board.size(); i++) {
+                runs += PackedBoard.getRuns(board.getTube(i));
+            }
+            history.start(runs);
+            history.setDepth(0);
+        }
+        levelEnd[0] = calculateMoves(0);
+        sleepSets = solver.getReduction() ? new SleepSets() : null;
+        // the run that was continued may have had breaks before the checkpoint
+        restarted = resume != null && useBreak;
+        if (resume != null) {
+            breakCount = resume.breakCount;
+            resume();
+        } else {
+            if (deadEnds != null) {
+                deadEnds.start(levelHash[0]);
+            }
+            if (sleepSets != null) {
+                sleepSets.start();
+            }
+            if (startColor != 0) {
+                moveColorToEnd(startColor, levelEnd[0]);
+            }
+        }
+
+        // the previous run may have proven that there's no solution
+        boolean hasMove = levelEnd[0] > 0 && (deadEnds == null || !deadEnds.contains(levelHash[0]));
+
+        while (hasMove && !solved && !solver.externalBreak && !stopped.get()) {
+
+            if (checkpoints && (processedMoves & 0xfff) == 0 && solver.isCheckpointTime()) {
+                solver.checkpoint(breakCount, level, levelStart, levelEnd, moves, processedMoves);
+            }
+
+            int move = moves[levelEnd[level] - 1];
+            int idxFrom = (move >> 24) & 0xff;
+            int idxTo = (move >> 16) & 0xff;
+
+            if (sleepSets != null && sleepSets.contains(move)) {
+                // the board after this move was reached in the other order of moves. The move isn't
+                // processed, but it's counted for the break as the failed move, so the search goes
+                // the same way as without the reduction. And dead ends have to know where it leads.
+                long hash = SleepSets.moveHash(levelHash[level], move, board.getTube(idxFrom), board.getTube(idxTo));
+                if (deadEnds != null && deadEnds.contains(hash)) {
+                    breakCount += 2;
+                } else if (hashes.contains(hash)) {
+                    breakCount += 2;
+                    if (deadEnds != null) {
+                        deadEnds.visited(hash);
+                    }
+                } else {
+                    // the board has no moves, so it wasn't added to the set. Or the table has forgotten it
+                    breakCount++;
+                    if (deadEnds != null && table.getEvictions() > 0) {
+                        deadEnds.visited(hash);
+                    }
+                }
+                if (useBreak && breakCount >= breakStop) {
+                    breakCount = 0;
+                    hasMove = restart();
+                } else {
+                    hasMove = deleteMove();
+                }
+                continue;
+            }
+
+            // the hash of the new board is made from the current one
+            long hash = levelHash[level]
+                    - BoardModel.tubeHash(board.getTube(idxFrom))
+                    - BoardModel.tubeHash(board.getTube(idxTo));
+            board.moveColor(idxFrom, idxTo);
+            hash += BoardModel.tubeHash(board.getTube(idxFrom))
+                    + BoardModel.tubeHash(board.getTube(idxTo));
+
+            // the same conditions as ColorMoveItem.doMove() has
+            solved = board.isSolved();
+            int nextEnd = levelEnd[level];
+            boolean moveSuccess = solved;
+            if (!solved) {
+                // has any moves at new tubes board?
+                if (history != null) {
+                    history.setDepth(level + 1);
+                }
+                nextEnd = calculateMoves(levelEnd[level]);
+                moveSuccess = nextEnd > levelEnd[level];
+            }
+
+            if (moveSuccess) {
+                processedMoves++;
+                breakCount++;
+
+                if (deadEnds != null && deadEnds.contains(hash)) {
+                    // this board was proven to have no solution
+                    moveSuccess = false;
+                } else {
+                    // check if the board was any time before, and add it to the set if it wasn't.
+                    // It is one call, so the set may be shared with other engines.
+                    moveSuccess = (table != null) ? table.add(hash, level + 1) : hashes.add(hash);
+                    if (moveSuccess && table == null && hashes.isFull() && isOnPath(hash)) {
+                        // the set doesn't keep new boards, and this board is on the path already
+                        moveSuccess = false;
+                    }
+                    if (deadEnds != null) {
+                        if (moveSuccess && table.getEvictions() > 0 && deadEnds.isOnPath(hash)) {
+                            // the table has forgotten this board of the path
+                            moveSuccess = false;
+                        }
+                        if (!moveSuccess) {
+                            deadEnds.visited(hash);
+                        }
+                    }
+                }
+            }
+
+            if (moveSuccess) {
+                pushLevel(hash, nextEnd);
+
+            } else {
+                solved = false;
+                unmakeMove(move);
+                processedMoves++;
+                breakCount++;
+
+                if (useBreak && breakCount >= breakStop) {
+                    breakCount = 0;
+                    hasMove = restart();
+
+                } else {
+                    // delete the current move, and if the level has no moves
+                    // we'll try with the parent level
+                    hasMove = deleteMove();
+                }
+            }
+        }
+
+        if (!solved) {
+            if (checkpoints && solver.externalBreak) {
+                solver.checkpoint(breakCount, level, levelStart, levelEnd, moves, processedMoves);
+            }
+            return null;
+        }
+
+        int[] result = new int[level];
+        for (int i = 0; i < level; i++) {
+            result[i] = moves[levelEnd[i] - 1];
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether the board is on the current path.
+     *
+     * @param hash hash value of the board
+     * @return true if some level has this board
+     */
+    private boolean isOnPath(long hash) {
+        for (int i = 0; i <= level; i++) {
+            if (levelHash[i] == hash) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Continues the search from the checkpoint: takes its levels and moves, and makes current moves
+     * of levels at the board.
+     */
+    private void resume() {
+        int depth = resume.level;
+        if (depth >= levelStart.length) {
+            levelStart = Arrays.copyOf(levelStart, depth + 1);
+            levelEnd = Arrays.copyOf(levelEnd, depth + 1);
+            levelHash = Arrays.copyOf(levelHash, depth + 1);
+        }
+        System.arraycopy(resume.levelStart, 0, levelStart, 0, depth + 1);
+        System.arraycopy(resume.levelEnd, 0, levelEnd, 0, depth + 1);
+        int size = board.size();
+        if (resume.moves.length + size * size >= moves.length) {
+            moves = new int[resume.moves.length + size * size + 1];
+            ranks = new int[moves.length];
+        }
+        System.arraycopy(resume.moves, 0, moves, 0, resume.moves.length);
+
+        for (level = 0; level < depth; level++) {
+            int move = moves[levelEnd[level] - 1];
+            board.moveColor((move >> 24) & 0xff, (move >> 16) & 0xff);
+            levelHash[level + 1] = board.calculateHash();
+            if (history != null) {
+                history.enter(level + 1, move, board.getTube((move >> 24) & 0xff),
+                        board.getTube((move >> 16) & 0xff));
+            }
+        }
+        if (deadEnds != null) {
+            deadEnds.resume(levelHash, depth + 1);
+        }
+        if (sleepSets != null) {
+            sleepSets.resume(depth);
+        }
+        resume = null;
+    }
+
+    /**
+     * Returns to the start board after the break, and deletes all root moves of the current color.
+     *
+     * @return false if the start board has no moves left
+     */
+    private boolean restart() {
+        // Return to the beginning...
+        restarted = true;
+        while (level > 0) {
+            level--;
+            unmakeMove(moves[levelEnd[level] - 1]);
+        }
+        if (deadEnds != null) {
+            deadEnds.restart();
+        }
+        if (sleepSets != null) {
+            sleepSets.restart();
+        }
+
+        // And search for the new color to start
+        int curColor = moves[levelEnd[0] - 1] & 0xff;
+        do {
+            levelEnd[0]--;
+        } while (levelEnd[0] > 0 && (moves[levelEnd[0] - 1] & 0xff) == curColor);
+        return levelEnd[0] > 0;
+    }
+
+    /**
+     * Deletes the current move of the level, and if the level has no moves, returns to the parent
+     * level and deletes its current move too.
+     *
+     * @return false if the start board has no moves left
+     */
+    private boolean deleteMove() {
+        levelEnd[level]--;
+        while (levelEnd[level] == levelStart[level]) {
+            if (deadEnds != null) {
+                deadEnds.leave();
+            }
+            if (history != null) {
+                history.leave(level);
+            }
+            if (level == 0) {
+                return false;
+            }
+            level--;
+            int move = moves[levelEnd[level] - 1];
+            unmakeMove(move);
+            if (sleepSets != null) {
+                sleepSets.pop();
+                sleepSets.done(move, board.getTube((move >> 24) & 0xff), board.getTube((move >> 16) & 0xff));
+            }
+            levelEnd[level]--;
+        }
+        return true;
+    }
+
+    /**
+     * Moves all root moves of the color to the end of the root level, so they will be tried first.
+     * The order of other moves remains the same.
+     *
+     * @param color color number
+     * @param end   index after the last root move
+     */
+    private void moveColorToEnd(int color, int end) {
+        int[] buffer = new int[end];
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            if ((moves[i] & 0xff) != color) {
+                moves[count++] = moves[i];
+            } else {
+                buffer[i - count] = moves[i];
+            }
+        }
+        System.arraycopy(buffer, 0, moves, count, end - count);
+    }
+
+    /**
+     * Unmakes the move: returns moved colors from the recipient back to the donor.
+     *
+     * @param move the stored move
+     */
+    private void unmakeMove(int move) {
+        board.undoMove((move >> 24) & 0xff, (move >> 16) & 0xff, (move >> 8) & 0xff);
+    }
+
+    /**
+     * Goes to the next level after the successful move.
+     *
+     * @param hash hash value of the board at the new level
+     * @param end  index after the last move of the new level
+     */
+    private void pushLevel(long hash, int end) {
+        if (level + 1 == levelStart.length) {
+            int size = levelStart.length << 1;
+            levelStart = Arrays.copyOf(levelStart, size);
+            levelEnd = Arrays.copyOf(levelEnd, size);
+            levelHash = Arrays.copyOf(levelHash, size);
+        }
+        levelStart[level + 1] = levelEnd[level];
+        level++;
+        levelEnd[level] = end;
+        levelHash[level] = hash;
+        if (deadEnds != null) {
+            deadEnds.enter(hash);
+        }
+        int move = moves[levelEnd[level - 1] - 1];
+        if (history != null) {
+            history.enter(level, move, board.getTube((move >> 24) & 0xff), board.getTube((move >> 16) & 0xff));
+        }
+        if (sleepSets != null) {
+            sleepSets.push(move, board.getTube((move >> 24) & 0xff), board.getTube((move >> 16) & 0xff));
+        }
+    }
+
+    /**
+     * Calculates and ranks all available moves of the current board and puts them into the
+     * moves' array. The best move will be the last one. This is the same as
+     * BoardModel.calculateMoves() does.
+     *
+     * @param start index of the moves' array to put the first move
+     * @return index after the last move
+     * @see BoardModel#calculateMoves()
+     */
+    private int calculateMoves(int start) {
+        int size = board.size();
+        if (start + size * size >= moves.length) {
+            int newLength = Math.max(moves.length << 1, start + size * size + 1);
+            moves = Arrays.copyOf(moves, newLength);
+            ranks = Arrays.copyOf(ranks, newLength);
+        }
+        return generator.calculateMoves(board.getTubes(), size, moves, ranks, start, random);
+    }
+
+}
@@ -0,0 +1,547 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package core;
+
+import java.util.Arrays;
+
+/**
+ * The memory-bounded table of visited boards. It is used by the tree and the stack engines instead of
+ * the plain set of hashes, which grows without limit at long solves.<br>
+ * Every entry keeps the board hash, the least depth (number of moves from the start board) the board
+ * was reached with, the <i>visited</i> flag of the current run and the <i>dead</i> flag of the board
+ * that is proven to have no solution. The <i>visited</i> flags are cleared before every run, while
+ * dead ends are kept for the next runs.<br>
+ * Entries are grouped by buckets of 4 slots, and the entry is never stored outside its bucket. The
+ * table grows twice when the load factor exceeds the maximum or the bucket is full, but not over the
+ * maximum capacity set in megabytes. When the table can't grow anymore, the new entry replaces the
+ * deepest entry of the bucket (depth-preferred replacement): deep boards have small subtrees and are
+ * cheap to pass again, while boards near the start save the most work. Dead ends are replaced last.
+ * So the table never throws OutOfMemoryError, it only forgets some boards, and the search may pass
+ * them twice.
+ *
+ * @see Solver#setTableSize(int)
+ * @see LongHashSet
+ */
+public class TranspositionTable implements LongSet {
+
+    /**
+     * The number of bits of the bucket size.
+     */
+    private static final int BUCKET_BITS = 2;
+
+    /**
+     * The number of slots of one bucket.
+     */
+    private static final int BUCKET_SIZE = 1 << BUCKET_BITS;
+
+    /**
+     * The initial capacity of the table.
+     */
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    /**
+     * When the load factor exceeds this value, the table will be resized.
+     */
+    private static final double MAX_LOAD_FACTOR = 0.5;
+
+    /**
+     * The size of one entry in bytes: the key and the data.
+     */
+    private static final int ENTRY_BYTES = 12;
+
+    /**
+     * The entry's flag: the board has no solution.
+     */
+    private static final int DEAD = 1;
+
+    /**
+     * The entry's flag: the board was visited at the current run.
+     */
+    private static final int VISITED = 2;
+
+    /**
+     * The depth of the board when it is unknown.
+     */
+    public static final int UNKNOWN_DEPTH = Integer.MAX_VALUE >>> 2;
+
+    /**
+     * Keys (board hashes). Zero marks the empty slot.
+     */
+    private long[] keys;
+
+    /**
+     * Data of entries: the depth shifted by 2 bits, and DEAD and VISITED flags.
+     */
+    private int[] data;
+
+    /**
+     * The mask to get the bucket's first slot from the key's hash.
+     */
+    private int mask;
+
+    /**
+     * The number of stored entries. The zero key is not counted here.
+     */
+    private int count;
+
+    /**
+     * The number of entries when we have to resize the table.
+     */
+    private int resizeAt;
+
+    /**
+     * The table will not grow over this number of slots.
+     */
+    private final int maxCapacity;
+
+    /**
+     * It is <i>true</i> if the table contains the zero key.
+     */
+    private boolean hasZero;
+
+    /**
+     * Data of the zero key.
+     */
+    private int zeroData;
+
+    /**
+     * The number of dead ends at the table.
+     */
+    private int deadCount;
+
+    /**
+     * Counts lookups that saved the search: the board was visited already or is a dead end.
+     */
+    private long hits;
+
+    /**
+     * Counts entries that were replaced by other ones.
+     */
+    private long evictions;
+
+    /**
+     * Creates the table.
+     *
+     * @param megabytes the maximum size of the table in megabytes
+     */
+    public TranspositionTable(int megabytes) {
+        long slots = Math.max(1, megabytes) * (1L << 20) / ENTRY_BYTES;
+        maxCapacity = (int) Math.max(INITIAL_CAPACITY, Long.highestOneBit(Math.min(slots, 1 << 30)));
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds the board visited at the current run.
+     *
+     * @param value the board hash
+     * @param depth number of moves from the start board
+     * @return true if the board was not visited at the current run, false if it was
+     */
+    public boolean add(long value, int depth) {
+        if (value == 0) {
+            if (!hasZero) {
+                hasZero = true;
+                zeroData = depth << 2 | VISITED;
+                return true;
+            }
+            boolean result = (zeroData & VISITED) == 0;
+            zeroData = Math.min(zeroData >>> 2, depth) << 2 | (zeroData & DEAD) | VISITED;
+            if (!result) {
+                hits++;
+            }
+            return result;
+        }
+
+        int idx = find(value);
+        if (idx >= 0) {
+            int d = data[idx];
+            data[idx] = Math.min(d >>> 2, depth) << 2 | (d & DEAD) | VISITED;
+            if ((d & VISITED) != 0) {
+                hits++;
+                return false;
+            }
+            return true;
+        }
+        store(value, depth << 2 | VISITED);
+        return true;
+    }
+
+    /**
+     * Adds the board with the unknown depth.
+     *
+     * @param value the board hash
+     * @return true if the board was not visited at the current run, false if it was
+     */
+    @Override
+    public boolean add(long value) {
+        return add(value, UNKNOWN_DEPTH);
+    }
+
+    /**
+     * Checks whether the board was visited at the current run.
+     *
+     * @param value the board hash
+     * @return true or false
+     */
+    @Override
+    public boolean contains(long value) {
+        int d = getData(value);
+        if (d >= 0 && (d & VISITED) != 0) {
+            hits++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the least depth the board was reached with.
+     *
+     * @param value the board hash
+     * @return the depth, or -1 if the table doesn't contain the board
+     */
+    public int getDepth(long value) {
+        int d = getData(value);
+        return d >= 0 ? d >>> 2 : -1;
+    }
+
+    /**
+     * Is this board proven to have no solution?
+     *
+     * @param value the board hash
+     * @return true if the board is a dead end
+     */
+    public boolean isDead(long value) {
+        int d = getData(value);
+        if (d >= 0 && (d & DEAD) != 0) {
+            hits++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Marks the board as the dead end: it has no solution.
+     *
+     * @param value the board hash
+     */
+    public void setDead(long value) {
+        if (value == 0) {
+            if (!hasZero) {
+                hasZero = true;
+                zeroData = UNKNOWN_DEPTH << 2;
+            }
+            if ((zeroData & DEAD) == 0) {
+                zeroData |= DEAD;
+                deadCount++;
+            }
+            return;
+        }
+
+        int idx = find(value);
+        if (idx < 0) {
+            idx = store(value, UNKNOWN_DEPTH << 2);
+        }
+        if ((data[idx] & DEAD) == 0) {
+            data[idx] |= DEAD;
+            deadCount++;
+        }
+    }
+
+    /**
+     * Prepares the table for the next run: removes all visited boards but keeps dead ends.
+     */
+    public void clearVisited() {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                if ((data[i] & DEAD) != 0) {
+                    data[i] &= ~VISITED;
+                } else {
+                    keys[i] = 0;
+                    count--;
+                }
+            }
+        }
+        if (hasZero) {
+            zeroData &= ~VISITED;
+            hasZero = (zeroData & DEAD) != 0;
+        }
+    }
+
+    /**
+     * Copies all entries into the checkpoint. The arrays are copied as they are, with empty slots, so
+     * it's quick.
+     *
+     * @param checkpoint the checkpoint
+     */
+    void copyTo(Checkpoint checkpoint) {
+        checkpoint.tableKeys = keys.clone();
+        checkpoint.tableData = data.clone();
+        checkpoint.hasZero = hasZero;
+        checkpoint.zeroData = zeroData;
+        checkpoint.evictions = evictions;
+    }
+
+    /**
+     * Replaces all entries by entries of the checkpoint. If the table is smaller than the saved one,
+     * it forgets some boards.
+     *
+     * @param checkpoint the checkpoint
+     */
+    void restore(Checkpoint checkpoint) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < maxCapacity && capacity * MAX_LOAD_FACTOR < checkpoint.tableKeys.length) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+        count = 0;
+        deadCount = 0;
+        for (int i = 0; i < checkpoint.tableKeys.length; i++) {
+            if (checkpoint.tableKeys[i] != 0) {
+                int idx = store(checkpoint.tableKeys[i], checkpoint.tableData[i]);
+                if ((data[idx] & DEAD) != 0) {
+                    deadCount++;
+                }
+            }
+        }
+        hasZero = checkpoint.hasZero;
+        zeroData = checkpoint.zeroData;
+        if (hasZero && (zeroData & DEAD) != 0) {
+            deadCount++;
+        }
+        evictions += checkpoint.evictions;
+    }
+
+    /**
+     * Gets the number of dead ends at the table.
+     *
+     * @return number of boards proven to have no solution
+     */
+    public int getDeadCount() {
+        return deadCount;
+    }
+
+    /**
+     * Gets the number of lookups that saved the search, since the table was created: the board was
+     * visited already or is a dead end.
+     *
+     * @return number of hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of entries that were replaced by other ones, since the table was created.
+     * While it is 0, the table remembers all boards.
+     *
+     * @return number of evictions
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * The table is full when it has replaced some entries: it has forgotten some boards.
+     *
+     * @return true if some boards were forgotten
+     */
+    @Override
+    public boolean isFull() {
+        return evictions > 0;
+    }
+
+    /**
+     * Gets the maximum capacity of the table.
+     *
+     * @return the maximum number of entries
+     */
+    public int getMaxCapacity() {
+        return maxCapacity;
+    }
+
+    @Override
+    public int size() {
+        return hasZero ? count + 1 : count;
+    }
+
+    /**
+     * Gets the current capacity of the table, i.e. the number of slots.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Gets the current load factor of the table.
+     *
+     * @return ratio of the stored entries to the capacity
+     */
+    public double getLoadFactor() {
+        return (double) count / keys.length;
+    }
+
+    /**
+     * Removes all entries from the table, dead ends too. The capacity remains the same.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(keys, 0);
+        count = 0;
+        deadCount = 0;
+        hasZero = false;
+    }
+
+    /**
+     * Gets data of the entry.
+     *
+     * @param value the board hash
+     * @return data of the entry, or -1 if the table doesn't contain the board
+     */
+    private int getData(long value) {
+        if (value == 0) {
+            return hasZero ? zeroData : -1;
+        }
+        int idx = find(value);
+        return idx >= 0 ? data[idx] : -1;
+    }
+
+    /**
+     * Finds the slot of the key.
+     *
+     * @param key the key, not zero
+     * @return index of the slot, or -1 if the table doesn't contain the key
+     */
+    private int find(long key) {
+        int start = bucketOf(key);
+        for (int i = start; i < start + BUCKET_SIZE; i++) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Stores the new entry. The table grows if it's needed and possible, otherwise some entry of the
+     * bucket is replaced.
+     *
+     * @param key   the key, not zero, which is not at the table
+     * @param value data of the entry
+     * @return index of the slot
+     */
+    private int store(long key, int value) {
+        if (count >= resizeAt && keys.length < maxCapacity) {
+            resize(keys.length << 1);
+        }
+        int idx = emptySlot(key);
+        while (idx < 0 && keys.length < maxCapacity) {
+            resize(keys.length << 1);
+            idx = emptySlot(key);
+        }
+        if (idx < 0) {
+            idx = victim(key);
+            if ((data[idx] & DEAD) != 0) {
+                deadCount--;
+            }
+            evictions++;
+        } else {
+            count++;
+        }
+        keys[idx] = key;
+        data[idx] = value;
+        return idx;
+    }
+
+    /**
+     * Finds the empty slot of the key's bucket.
+     *
+     * @param key the key
+     * @return index of the slot, or -1 if the bucket is full
+     */
+    private int emptySlot(long key) {
+        int start = bucketOf(key);
+        for (int i = start; i < start + BUCKET_SIZE; i++) {
+            if (keys[i] == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Chooses the entry of the full bucket to be replaced: the deepest one, but dead ends are
+     * replaced only if all the bucket is dead.
+     *
+     * @param key the key
+     * @return index of the slot
+     */
+    private int victim(long key) {
+        int start = bucketOf(key);
+        int result = start;
+        long worst = -1;
+        for (int i = start; i < start + BUCKET_SIZE; i++) {
+            long score = (data[i] >>> 2) + ((data[i] & DEAD) == 0 ? (1L << 32) : 0);
+            if (score > worst) {
+                worst = score;
+                result = i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Allocates new empty arrays.
+     *
+     * @param capacity the number of slots, a power of 2
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        data = new int[capacity];
+        mask = (capacity - 1) & -BUCKET_SIZE;
+        resizeAt = (int) (capacity * MAX_LOAD_FACTOR);
+    }
+
+    /**
+     * Creates new arrays with the specified capacity and moves all the entries there.
+     *
+     * @param capacity new capacity, a power of 2
+     */
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldData = data;
+        allocate(capacity);
+
+        // the new bucket gets entries of one old bucket only, so it always has the empty slot
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int idx = emptySlot(oldKeys[i]);
+                keys[idx] = oldKeys[i];
+                data[idx] = oldData[i];
+            }
+        }
+    }
+
+    /**
+     * Calculates the first slot of the key's bucket.
+     *
+     * @param key the key
+     * @return the slot index
+     * @see LongHashSet
+     */
+    private int bucketOf(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+
+}
@@ -11,7 +11,6 @@ package core;
 
 import gui.BoardPanel;
 import gui.ColorTube;
-import gui.MainFrame;
 
 import java.io.*;
 import java.net.URL;
@@ -40,6 +39,22 @@ public class TubesIO {
      */
     private static final int FILE_EOF = 0x1a;
 
+    /**
+     * Game mode of the file: the board is being filled manually, some tubes are not filled yet.
+     */
+    public static final int MODE_FILL = 100;
+
+    /**
+     * Game mode of the file: the regular game, all moves of the file are done.
+     */
+    public static final int MODE_PLAY = 200;
+
+    /**
+     * Game mode of the file: the game with the solution, moves after movesDone are the rest of the
+     * solution.
+     */
+    public static final int MODE_ASSIST = 300;
+
     /**
      * Version of the file. Currently, ver.1 and ver.2 are available.<br>
      * New versions can be added if the application will get any new features.
@@ -60,10 +75,10 @@ public class TubesIO {
     private static int level;
 
     /**
-     * Game mode - mode of the saved game. Can be FILL_MODE, PLAY_MODE,
-     * ASSIST_MODE.
+     * Game mode - mode of the saved game. Can be MODE_FILL, MODE_PLAY,
+     * MODE_ASSIST.
      *
-     * @see MainFrame#gameMode
+     * @see #MODE_FILL
      */
     private static int gMode;
 
@@ -373,6 +388,22 @@ public class TubesIO {
         }
     }
 
+    /**
+     * Stores tubes set from the Board Model. Used when there is no Board Panel,
+     * e.g. to save the game solved without GUI.
+     *
+     * @param bm         Board Model
+     * @param emptyTubes how much empty tubes are at the board (used in GAME_FILL mode).
+     */
+    public static void storeTubes(BoardModel bm, int emptyTubes) {
+        tubesCount = bm.size();
+        emptyCount = emptyTubes;
+        storedTubes = new int[tubesCount];
+        for (int i = 0; i < tubesCount; i++) {
+            storedTubes[i] = bm.get(i).storeColors();
+        }
+    }
+
     /**
      * Fills stored tubes to the specified Board Panel
      *
@@ -402,10 +433,30 @@ public class TubesIO {
         bp.restoreLocation();
     }
 
+    /**
+     * Fills stored tubes to the specified Board Model. Used when there is no Board Panel,
+     * e.g. to solve the loaded game without GUI.
+     *
+     * @param bm Board Model to restore tubes
+     */
+    public static void restoreTubes(BoardModel bm) {
+        bm.clear();
+        for (int i = 0; i < tubesCount; i++) {
+            TubeModel tube = new TubeModel();
+            int stored = storedTubes[i];
+            for (int j = 0; j < 4; j++) {
+                tube.putColor((byte) (stored & 0xff));
+                stored >>= 8;
+            }
+            bm.addNewTube(tube);
+        }
+    }
+
     /**
      * Checks stored tubes. Each existing color in the tubes must occur 4 times,
      * otherwise there were errors in loaded game.
      * The storedTubes array has to been filled before calling this routine.
+     * It doesn't depend on the palette, so games can be checked without GUI.
      *
      * @return true when validation was successful, false otherwise
      */
@@ -413,23 +464,20 @@ public class TubesIO {
         int stored; // one of stored tubes
         int i;
 
-        UsedColors colors = new UsedColors(MainFrame.palette.size() - 1);
-        colors.clearColorCounts();
+        int[] colorCounts = new int[256];
 
         // fill used colors array
         for (i = 0; i < tubesCount; i++) {
             stored = storedTubes[i];
-            do {
-                if ((stored & 0xff) > 0)
-                    colors.incColorCount((byte) (stored & 0xff));
-                stored >>= 8;
-            } while (stored > 0);
+            for (int j = 0; j < 4; j++) {
+                colorCounts[stored & 0xff]++;
+                stored >>>= 8;
+            }
         }
 
         // check used colors array
-        for (i = 1; i < MainFrame.palette.size(); i++) {
-            if (colors.getColorCount((byte) i) != 0
-                    && colors.getColorCount((byte) i) != 4) {
+        for (i = 1; i < colorCounts.length; i++) {
+            if (colorCounts[i] != 0 && colorCounts[i] != 4) {
                 return false;
             }
         }
@@ -550,7 +598,7 @@ public class TubesIO {
                 baos.writeInt(gMode);
             }
 
-            if (ver == 2 && gMode == MainFrame.FILL_MODE) {
+            if (ver == 2 && gMode == MODE_FILL) {
                 baos.writeWord(emptyCount);
             } else {
                 baos.writeWord(0);
@@ -594,6 +642,54 @@ public class TubesIO {
         return true;
     }
 
+    /**
+     * Saving the game to an abstract output stream as JCTL format version 2. This routine doesn't use
+     * the stored game, so games may be saved by several threads at the same time, e.g. by the puzzle
+     * generator.
+     *
+     * @param S         stream to save JCTL
+     * @param gameMode  game mode, MODE_PLAY or MODE_ASSIST
+     * @param tubes     stored tubes of the board after done moves
+     * @param moves     stored moves, or null if there are no moves
+     * @param movesDone how much moves has been passed
+     * @return true if success, false otherwise
+     * @see #saveToStream(OutputStream, int)
+     */
+    public static boolean saveToStream(OutputStream S, int gameMode, int[] tubes, int[] moves,
+                                       int movesDone) {
+        int moveCount = (moves == null) ? 0 : moves.length;
+        int size = (8 + tubes.length + moveCount) * 4 + 2;
+
+        try (myBAOS baos = new myBAOS(size)) {
+
+            baos.writeInt(FILE_ID);
+            baos.writeInt(FILE_EOF);
+            baos.writeInt(2);
+            baos.writeInt(size);
+            baos.writeInt(0);
+            baos.writeInt(gameMode);
+            baos.writeWord(0);
+            baos.writeWord(tubes.length);
+            baos.writeWord(movesDone != moveCount ? movesDone : 0);
+            baos.writeWord(moveCount);
+
+            for (int tube : tubes) {
+                baos.writeInt(tube);
+            }
+            for (int i = 0; i < moveCount; i++) {
+                baos.writeInt(moves[i]);
+            }
+            baos.writeWord(getCRCver2(baos.toByteArray()));
+
+            baos.writeTo(S);
+
+        } catch (IOException ex) {
+            return false;
+        }
+
+        return true;
+    }
+
     /**
      * Loading game data from an abstract input stream.
      *
@@ -633,14 +729,14 @@ public class TubesIO {
                     level = bais.readInt();         // read level 
                     gMode = bais.readInt();         // read gameMode
                     if (gMode == 0) {
-                        gMode = MainFrame.PLAY_MODE;
+                        gMode = MODE_PLAY;
                     }
                 } else {
                     level = 0;
-                    gMode = MainFrame.PLAY_MODE;
+                    gMode = MODE_PLAY;
                 }
 
-                if (gMode == MainFrame.FILL_MODE) {
+                if (gMode == MODE_FILL) {
                     emptyCount = bais.readWord();        // read empty tubes count 
                     tubesCount = bais.readWord();        // read all tubes count 
                 } else {
@@ -652,7 +748,7 @@ public class TubesIO {
                     movesDone = bais.readWord();
                     movesCount = bais.readWord();
 
-                    if (movesDone == 0 && gMode != MainFrame.ASSIST_MODE) {
+                    if (movesDone == 0 && gMode != MODE_ASSIST) {
                         movesDone = movesCount;
                     }
                     if (movesDone > movesCount) {
@@ -674,7 +770,7 @@ public class TubesIO {
                 }
 
                 // In FILL_MODE not all tubes can be filled completely
-                if (gMode != MainFrame.FILL_MODE)
+                if (gMode != MODE_FILL)
                     result = checkTubes();
             }
 
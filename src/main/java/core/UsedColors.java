@@ -11,6 +11,7 @@ package core;
 
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Class UsedColors counts colors usage on the board. It uses for filling tubes,
@@ -140,7 +141,17 @@ public class UsedColors {
      * @return Palette's color number
      */
     public byte getRandomColor() {
-        Random random = new Random(System.currentTimeMillis());
+        return getRandomColor(ThreadLocalRandom.current());
+    }
+
+    /**
+     * Returns the random unused color taken by the given random generator, so the same seed gives
+     * the same colors.
+     *
+     * @param random the random generator
+     * @return Palette's color number
+     */
+    public byte getRandomColor(Random random) {
         int clrIndex = random.nextInt(getAvailableColors());
 
         int temp = 0;
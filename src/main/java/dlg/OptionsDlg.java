@@ -38,6 +38,17 @@ public class OptionsDlg extends JDialog {
     private final JCheckBox cbSaveAfterFill = newCheckBox();
     private final JCheckBox cbSaveAfterSolve = newCheckBox();
     private final JCheckBox cbSaveBeforeClose = newCheckBox();
+    private final JPanel solverPan = newPanel();
+    private int solverEngine;
+
+    /**
+     * Resource string names of the solver's engines, in order of their numbers.
+     *
+     * @see core.Solver#setEngine(int)
+     */
+    private static final String[] solverEngineNames = {"strSolverTree", "strSolverStack",
+            "strSolverPortfolio", "strSolverParallel", "strSolverOptimal",
+            "strSolverBeam"};
 
     private final LPictureButton btnOk;
     private final LPictureButton btnCancel;
@@ -74,6 +85,16 @@ public class OptionsDlg extends JDialog {
         savePan.add(cbSaveBeforeClose);
         getContentPane().add(savePan);
 
+        // add solver engines
+        for (int i = 0; i < solverEngineNames.length; i++) {
+            JCheckBox cb = newCheckBox();
+            int engine = i;
+            cb.addActionListener((ActionEvent e) -> setSolverEngine(engine));
+            cb.setLocation(dimX, dimY + i * 30);
+            solverPan.add(cb);
+        }
+        getContentPane().add(solverPan);
+
         btnOk = new LPictureButton(this, "btnDialog");
         btnOk.setText(ResStrings.getString("strOk"));
         btnOk.setBackground(null);
@@ -128,6 +149,7 @@ public class OptionsDlg extends JDialog {
         Options.saveGameAfterFill = cbSaveAfterFill.isSelected();
         Options.saveGameAfterSolve = cbSaveAfterSolve.isSelected();
         Options.saveGameBeforeClose = cbSaveBeforeClose.isSelected();
+        Options.solverEngine = solverEngine;
         saveOptions();
         Main.frame.setGameMode(MainFrame.prevMode);
         EventQueue.invokeLater(this::dispose);
@@ -147,6 +169,12 @@ public class OptionsDlg extends JDialog {
         languagePan.setLocation(0, 0);
         savePan.setSize(w, dimY + 3 * 30 + 15);
         savePan.setLocation(0, languagePan.getHeight());
+        solverPan.setSize(w, dimY + solverEngineNames.length * 30 + 15);
+        solverPan.setLocation(0, languagePan.getHeight() + savePan.getHeight());
+
+        for (int i = 0; i < solverPan.getComponentCount(); i++) {
+            solverPan.getComponent(i).setSize(w - dimX * 2, 24);
+        }
 
         for (int i = 0; i < languagePan.getComponentCount(); i++) {
             JCheckBox cb = (JCheckBox) languagePan.getComponent(i);
@@ -156,14 +184,15 @@ public class OptionsDlg extends JDialog {
 
         btnCancel.setLocation(
                 w - btnCancel.getWidth() - dimX,
-                languagePan.getHeight() + savePan.getHeight());
+                languagePan.getHeight() + savePan.getHeight() + solverPan.getHeight());
         btnOk.setLocation(
                 btnCancel.getLocation().x - btnOk.getWidth() - 15,
                 btnCancel.getLocation().y);
 
         Dimension dim = new Dimension();
         dim.width = w;
-        dim.height = languagePan.getHeight() + savePan.getHeight() + dimY / 2 + btnCancel.getHeight();
+        dim.height = languagePan.getHeight() + savePan.getHeight() + solverPan.getHeight()
+                + dimY / 2 + btnCancel.getHeight();
         setPreferredSize(dim);
         pack();
 
@@ -199,6 +228,7 @@ public class OptionsDlg extends JDialog {
             cbSaveAfterFill.setSelected(Options.saveGameAfterFill);
             cbSaveAfterSolve.setSelected(Options.saveGameAfterSolve);
             cbSaveBeforeClose.setSelected(Options.saveGameBeforeClose);
+            setSolverEngine(Options.solverEngine);
             Main.frame.setGameMode(MainFrame.BUSY_MODE);
             updatePos();
         }
@@ -277,11 +307,34 @@ public class OptionsDlg extends JDialog {
         cbSaveBeforeClose.setText(ResStrings.getString("strSaveBeforeClose"));
         if (cbSaveBeforeClose.getPreferredSize().width > maxCheckBoxWidth)
             maxCheckBoxWidth = cbSaveBeforeClose.getPreferredSize().width;
+
+        solverPan.setName(ResStrings.getString("strSolverOptions"));
+        for (int i = 0; i < solverPan.getComponentCount(); i++) {
+            JCheckBox cb = (JCheckBox) solverPan.getComponent(i);
+            cb.setText(ResStrings.getString(solverEngineNames[i]));
+            if (cb.getPreferredSize().width > maxCheckBoxWidth)
+                maxCheckBoxWidth = cb.getPreferredSize().width;
+        }
         w = Math.max(w, maxCheckBoxWidth + dimX * 2);
 
         resize();
     }
 
+    /**
+     * Handles the solver engine checkbox click / change.
+     *
+     * @param num number of the engine.
+     */
+    private void setSolverEngine(int num) {
+        if (num < 0 || num >= solverEngineNames.length) {
+            num = 0;
+        }
+        for (int i = 0; i < solverPan.getComponentCount(); i++) {
+            ((JCheckBox) solverPan.getComponent(i)).setSelected(i == num);
+        }
+        solverEngine = num;
+    }
+
     /**
      * Draws the caption of the panel.
      *
@@ -10,6 +10,7 @@
 package gui;
 
 import ani.PatternLayer;
+import core.Checkpoint;
 import core.GameMoves;
 import core.Options;
 import core.ResStrings;
@@ -67,13 +68,13 @@ public class MainFrame extends JFrame {
      * Manual Fill mode. At this mode the user manually fill all the tubes
      * with the specified colors choosing them from the palette.
      */
-    public final static int FILL_MODE = 100;
+    public final static int FILL_MODE = TubesIO.MODE_FILL;
 
     /**
      * Regular Game mode. The user himself/herself shifts the colored cells
      * from one tube to another, trying to fill the tubes with one color.
      */
-    public final static int PLAY_MODE = 200;
+    public final static int PLAY_MODE = TubesIO.MODE_PLAY;
 
     /**
      * Assistant game mode. The application will show the user the next move, and will
@@ -82,7 +83,7 @@ public class MainFrame extends JFrame {
      * Assistant mode is offered to the user after a successful search for a solution
      * to the game.
      */
-    public final static int ASSIST_MODE = 300;
+    public final static int ASSIST_MODE = TubesIO.MODE_ASSIST;
 
     /**
      * Busy mode. This mode is activated when the application is busy. For example,
@@ -293,6 +294,9 @@ public class MainFrame extends JFrame {
         }
 
         Options.saveOptions();
+        SolvePanel.stopImprovement();
+        SolvePanel.waitSolver();
+        SolvePanel.closeSolutionCache();
         if (saveTempOnExit) {
             saveTempGame();
         }
@@ -470,6 +474,7 @@ public class MainFrame extends JFrame {
      * Clears the game board and prepares it to the new game.
      */
     public void clearBoard() {
+        SolvePanel.stopImprovement();
         congratsPanel.setVisible(false);
         solvePanel.setVisible(false);
         if (tubesPanel != null) {
@@ -611,6 +616,7 @@ public class MainFrame extends JFrame {
      */
     public void endAssistMode() {
 
+        SolvePanel.stopImprovement();
         hideMove();
         while (gameMoves.size() > movesDone) {
             gameMoves.remove(gameMoves.size() - 1);
@@ -637,10 +643,23 @@ public class MainFrame extends JFrame {
         msgDlg.setVisible(true);
 
         if (msgDlg.result > 0) {
+            // the search of this board may be interrupted before
+            Checkpoint checkpoint = SolvePanel.getCheckpoint(tubesPanel.getModel());
+            if (checkpoint != null) {
+                msgDlg = new MessageDlg(Main.frame,
+                        ResStrings.getString("strResumeSolution"),
+                        MessageDlg.BTN_YES_NO);
+                msgDlg.setButtonsLayout(MessageDlg.BTN_LAYOUT_RIGHT);
+                msgDlg.setVisible(true);
+                if (msgDlg.result <= 0) {
+                    checkpoint = null;
+                }
+            }
+
             saveTempGame();                // avoids crash while solving
             setGameMode(BUSY_MODE);
             Options.numSolverRun++;
-            solvePanel.startSolve(tubesPanel.getModel());
+            solvePanel.startSolve(tubesPanel.getModel(), checkpoint);
         } else {
             setGameMode(prevMode);
         }
@@ -675,6 +694,14 @@ public class MainFrame extends JFrame {
                 msgDlg.setButtonsLayout(MessageDlg.BTN_LAYOUT_RIGHT);
                 msgDlg.setVisible(true);
                 break;
+            case 4: // there's no solution at all
+                Options.numSolverNotSolved ++;
+                msgDlg = new MessageDlg(this,
+                        ResStrings.getString("strNoSolution"),
+                        MessageDlg.BTN_OK);
+                msgDlg.setButtonsLayout(MessageDlg.BTN_LAYOUT_RIGHT);
+                msgDlg.setVisible(true);
+                break;
             case 3: // solved!
                 Options.numSolverSuccess ++;
                 msgDlg = new MessageDlg(this,
@@ -706,6 +733,7 @@ public class MainFrame extends JFrame {
             tubesPanel.getTube(i).setClosed(true);
         }
 
+        SolvePanel.stopImprovement();
         setGameMode(END_GAME);
         gameMoves.clear();
         movesDone = 0;
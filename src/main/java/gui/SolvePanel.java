@@ -12,8 +12,14 @@ package gui;
 import ani.BlurLayer;
 import ani.WheelLayer;
 import core.BoardModel;
+import core.Checkpoint;
+import core.DiskSolutionCache;
+import core.Options;
 import core.ResStrings;
+import core.Solution;
+import core.SolutionCache;
 import core.Solver;
+import core.TubesIO;
 import lib.lButtons.LPictureButton;
 import run.Main;
 
@@ -21,6 +27,7 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.image.BufferedImage;
+import java.io.File;
 
 /**
  * The panel that is displayed when a solution is being searched.
@@ -32,6 +39,23 @@ public class SolvePanel extends JComponent {
      */
     private static Solver tubeSolver;
 
+    /**
+     * Solutions of boards solved already, so the same board is solved at once. It is kept at the
+     * application folder, and it's opened at the first solve.
+     */
+    private static SolutionCache solutionCache;
+
+    /**
+     * The installed solution as it is at the game moves now. Shorter solutions found by the improvement
+     * replace its rest. It's null when there's nothing to replace.
+     */
+    private static int[] installed;
+
+    /**
+     * Index of the first move of the installed solution at the game moves.
+     */
+    private static int solutionStart;
+
     /**
      * The layer that blurs the MainFrame's content .
      */
@@ -52,8 +76,15 @@ public class SolvePanel extends JComponent {
      */
     private int breakCount = 100000;
 
+    /**
+     * The largest break value. When the search with it doesn't find the solution, the next run searches
+     * without breaks, and it finds the solution or proves that there's no solution at all.
+     */
+    private static final int MAX_BREAK_COUNT = 1600000;
+
     /**
      * The result of the solve process. Results can be as follows: <ul>
+     * <li> 4 - the game has no solution, it's proven.
      * <li> 3 - the game is solved.
      * <li> 2 - the game is not solved (solution is not found).
      * <li> 1 - escape / cancel pressed while solver is working.
@@ -106,8 +137,11 @@ public class SolvePanel extends JComponent {
      * Starts the solve process.
      *
      * @param startBoard - the current position at the game board that applies as the start combination.
+     * @param resume     - the checkpoint of the interrupted search to continue, or null to start a new search.
      */
-    public void startSolve(BoardModel startBoard) {
+    public void startSolve(BoardModel startBoard, Checkpoint resume) {
+
+        stopImprovement();
 
         BufferedImage img = new BufferedImage(
                 Main.frame.getContentPane().getWidth(),
@@ -121,31 +155,202 @@ public class SolvePanel extends JComponent {
         setVisible(true);
         blur.startBlur();
 
-        breakCount = 100000;
+        breakCount = (resume != null) ? resume.getBreakStop() : 100000;
 
         tubeSolver = new Solver(startBoard, breakCount) {
             @Override
             public void onSolved() {
+                installSolution(getSolution());
                 stopSolver(3);
             }
 
+            @Override
+            public void onImproved() {
+                Solver solver = this;
+                Solution solution = getSolution();
+                EventQueue.invokeLater(() -> {
+                    if (tubeSolver == solver) {
+                        replaceSolution(solution);
+                    }
+                });
+            }
+
             @Override
             public void onNotSolved() {
-                breakCount <<= 1;
-                if (breakCount > 0) {
+                // the portfolio and the beam engines restart by themselves,
+                // the parallel and the optimal engines search without breaks
+                if (!provenUnsolvable && breakCount > 0
+                        && (getEngine() == ENGINE_TREE || getEngine() == ENGINE_STACK)) {
+                    // after several runs with breaks, the last one searches without breaks
+                    breakCount = (breakCount < MAX_BREAK_COUNT) ? breakCount << 1 : 0;
                     setStartTubes(startBoard);
                     setBreakStop(breakCount);
                     if (!externalBreak) {
                         startSolve();
                     }
                 } else {
-                    stopSolver(2);
+                    stopSolver(provenUnsolvable ? 4 : 2);
                 }
             }
         };
+        tubeSolver.setEngine(Options.solverEngine);
+        tubeSolver.setThreads(Options.solverThreads);
+        tubeSolver.setSplitDepth(Options.solverSplitDepth);
+        tubeSolver.setBeamWidth(Options.solverBeamWidth);
+        tubeSolver.setTableSize(Options.solverTableSize);
+        tubeSolver.setOrdering(Options.solverOrdering);
+        tubeSolver.setSolutionCache(getSolutionCache());
+        tubeSolver.setCheckpoint(getCheckpointFile(), Options.solverCheckpoint);
+        tubeSolver.setResume(resume);
+        tubeSolver.setImprovement(Options.solverImprovement);
         tubeSolver.startSolve();
     }
 
+    /**
+     * Gets the checkpoint file at the application folder.
+     *
+     * @return the file
+     */
+    private static File getCheckpointFile() {
+        return new File(TubesIO.getAppDirFile(Checkpoint.FILE_NAME));
+    }
+
+    /**
+     * Gets the checkpoint of the interrupted search of the board, if the current engine can continue it.
+     *
+     * @param board the start board
+     * @return the checkpoint, or null if there's nothing to continue
+     */
+    public static Checkpoint getCheckpoint(BoardModel board) {
+        if (Options.solverEngine != Solver.ENGINE_TREE && Options.solverEngine != Solver.ENGINE_STACK) {
+            return null;
+        }
+        Checkpoint checkpoint = Checkpoint.load(getCheckpointFile());
+        return (checkpoint != null && checkpoint.matches(board)) ? checkpoint : null;
+    }
+
+    /**
+     * Waits until the solver thread finishes, so its last checkpoint is written before the application
+     * is closed.
+     */
+    public static void waitSolver() {
+        if (tubeSolver != null) {
+            tubeSolver.waitSolve();
+        }
+    }
+
+    /**
+     * Stops the improvement of the installed solution, i.e. when the user leaves the assistant mode.
+     * The solver thread finishes soon after, and shorter solutions are not installed anymore.
+     */
+    public static void stopImprovement() {
+        installed = null;
+        if (tubeSolver != null) {
+            tubeSolver.stopProcess();
+        }
+    }
+
+    /**
+     * Gets the cache of solutions, and opens it at the first call.
+     *
+     * @return the cache
+     */
+    private static SolutionCache getSolutionCache() {
+        if (solutionCache == null) {
+            solutionCache = (Options.solverCacheSize > 0)
+                    ? new DiskSolutionCache(1000, TubesIO.getAppDir(), Options.solverCacheSize)
+                    : new SolutionCache(1000);
+        }
+        return solutionCache;
+    }
+
+    /**
+     * Closes files of the solutions' cache when the application is closed.
+     */
+    public static void closeSolutionCache() {
+        if (solutionCache instanceof DiskSolutionCache) {
+            ((DiskSolutionCache) solutionCache).close();
+        }
+    }
+
+    /**
+     * Places the found solution into the game moves after the moves that were done already,
+     * and updates the solver's statistics.
+     *
+     * @param solution the found solution
+     */
+    private void installSolution(Solution solution) {
+        Options.solverTimeLast = solution.getWorkingTime() / 1000;
+        if (Options.solverTimeMax < Options.solverTimeLast)
+            Options.solverTimeMax = Options.solverTimeLast;
+        Options.solverTimeAvg = (Options.solverTimeAvg * Options.numSolverSuccess
+                + Options.solverTimeLast) / (Options.numSolverSuccess + 1);
+
+        for (int i = 0; i < solution.length(); i++) {
+            MainFrame.gameMoves.add(MainFrame.movesDone + i, solution.getMove(i));
+        }
+        solutionStart = MainFrame.movesDone;
+        installed = solution.getMoves();
+    }
+
+    /**
+     * Replaces the rest of the installed solution by the shorter one found by the improvement. Both
+     * solutions start from the same board, so they are the same up to some move. The shorter one is
+     * taken only if the user hasn't passed this move yet; when the user is just at this move, it's
+     * taken if the user hasn't picked the donor tube. It's called at the event dispatch thread, so the
+     * game moves are not changed by the user at the same time.
+     *
+     * @param solution the shorter solution
+     */
+    private static void replaceSolution(Solution solution) {
+        if (installed == null || !isInstalled()) {
+            return;
+        }
+
+        // the first move where solutions are different
+        int[] moves = solution.getMoves();
+        int diverge = 0;
+        while (diverge < moves.length && diverge < installed.length && moves[diverge] == installed[diverge]) {
+            diverge++;
+        }
+
+        int done = MainFrame.movesDone - solutionStart;
+        if (done > diverge || (done == diverge && Main.frame.getTubeFrom() != null)) {
+            return;
+        }
+
+        while (MainFrame.gameMoves.size() > solutionStart + diverge) {
+            MainFrame.gameMoves.remove(MainFrame.gameMoves.size() - 1);
+        }
+        for (int i = diverge; i < moves.length; i++) {
+            MainFrame.gameMoves.add(moves[i]);
+        }
+        installed = moves;
+
+        if (done == diverge) {
+            // the next move is changed
+            Main.frame.hideMove();
+            Main.frame.showMove();
+        }
+    }
+
+    /**
+     * Checks that the game moves still end with the installed solution.
+     *
+     * @return true if the installed solution is at its place
+     */
+    private static boolean isInstalled() {
+        if (MainFrame.gameMoves.size() != solutionStart + installed.length) {
+            return false;
+        }
+        for (int i = 0; i < installed.length; i++) {
+            if (MainFrame.gameMoves.getStoredMove(solutionStart + i) != installed[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Stop solving!
      *
@@ -0,0 +1,583 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package run;
+
+import core.BoardModel;
+import core.GameMoves;
+import core.Solution;
+import core.Solver;
+import core.TubesIO;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solves saved games without GUI. Arguments are JCTL files or folders with them, and options:<ul>
+ * <li><b>-threads N</b> - number of games solved at the same time, the number of processor cores by
+ * default.
+ * <li><b>-engine N</b> - the search engine of the Solver, 0 (ENGINE_TREE) by default.
+ * <li><b>-break N</b> - the first break value of the tree and the stack engines, 100000 by default. The
+ * break value is doubled while the game is not solved, as the application does.
+ * <li><b>-table N</b> - the maximum size of the transposition table of every game in megabytes.
+ * <li><b>-limit N</b> - time limit of every game in seconds, 0 (no limit) by default.
+ * <li><b>-report FILE</b> - the report file, CSV or JSON by the file extension. The CSV report is
+ * printed to the standard output by default.
+ * <li><b>-out DIR</b> - the folder to save solved games. Games are saved over the source files by default.
+ * Games found in folders keep their paths relative to the folder of the argument, and games that would
+ * be saved to the same file are not saved at all (<i>write error</i>).
+ * <li><b>-nowrite</b> - solved games are not saved.
+ * </ul>
+ * Solved games are saved as JCTL version 2 files in the assistant mode: the moves of the game that
+ * were done are kept, and the solution follows them. The report has the status, the solution length
+ * before and after the optimizer, processed moves, the time and the memory allocated by the solving
+ * thread for every game. The exit code is:<ul>
+ * <li> 0 - all games are solved.
+ * <li> 1 - some games are not solved: they have no solution, or they were not solved in time.
+ * <li> 2 - some files can't be read or written, or the games are not filled yet.
+ * <li> 3 - wrong arguments.
+ * </ul>
+ * Run it as follows: <i>java -jar TubeSolver.jar -batch [options] files</i>
+ */
+public class BatchSolver {
+
+    /**
+     * The largest break value, as SolvePanel has. The next run searches without breaks.
+     */
+    private static final int MAX_BREAK_COUNT = 1600000;
+
+    /**
+     * All games are solved.
+     */
+    public static final int EXIT_SOLVED = 0;
+
+    /**
+     * Some games are not solved.
+     */
+    public static final int EXIT_NOT_SOLVED = 1;
+
+    /**
+     * Some files can't be read or written.
+     */
+    public static final int EXIT_FILE_ERROR = 2;
+
+    /**
+     * Wrong arguments.
+     */
+    public static final int EXIT_USAGE = 3;
+
+    /**
+     * Number of games solved at the same time.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The search engine.
+     */
+    private int engine = Solver.ENGINE_TREE;
+
+    /**
+     * The first break value.
+     */
+    private int breakStop = 100000;
+
+    /**
+     * The size of the transposition table in megabytes.
+     */
+    private int tableSize = Solver.DEFAULT_TABLE_SIZE;
+
+    /**
+     * Time limit of every game in seconds, 0 means no limit.
+     */
+    private int timeLimit = 0;
+
+    /**
+     * The report file, or null to print the report.
+     */
+    private File reportFile;
+
+    /**
+     * The folder to save solved games, or null to save them over source files.
+     */
+    private File outDir;
+
+    /**
+     * Are solved games saved?
+     */
+    private boolean write = true;
+
+    /**
+     * Games to solve.
+     */
+    private final ArrayList<File> files = new ArrayList<>();
+
+    /**
+     * Paths of games relative to the folders of arguments, i.e. where to save them at the out folder.
+     */
+    private final ArrayList<String> paths = new ArrayList<>();
+
+    /**
+     * Paths of games which would be saved to the same file of the out folder.
+     */
+    private final Set<String> clashes = new HashSet<>();
+
+    /**
+     * Stops solvers when their time is over.
+     */
+    private ScheduledExecutorService timer;
+
+    /**
+     * The result of one game.
+     */
+    private static class Result {
+        File file;
+        String status;
+        int length;
+        int foundLength;
+        long moves;
+        double time;
+        long memory = -1;
+    }
+
+    /**
+     * Runs the batch solver.
+     *
+     * @param args options, files and folders
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        BatchSolver batch = new BatchSolver();
+        int code;
+        try {
+            batch.parseArgs(args);
+            code = batch.run();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: -batch [-threads N] [-engine N] [-break N] [-table MB] [-limit SEC]"
+                    + " [-report FILE.csv|FILE.json] [-out DIR] [-nowrite] files and folders");
+            code = EXIT_USAGE;
+        }
+        System.exit(code);
+    }
+
+    /**
+     * Parses command line arguments.
+     *
+     * @param args options, files and folders
+     * @throws IllegalArgumentException if arguments are wrong
+     */
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("-")) {
+                File f = new File(arg);
+                if (!f.exists()) {
+                    throw new IllegalArgumentException("File not found: " + arg);
+                }
+                addFiles(f, f.isDirectory() ? "" : f.getName());
+                continue;
+            }
+            if (arg.equals("-nowrite")) {
+                write = false;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Value expected: " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "-threads":
+                    threads = parseInt(arg, value, 1);
+                    break;
+                case "-engine":
+                    engine = parseInt(arg, value, 0);
+                    if (engine > Solver.ENGINE_BEAM) {
+                        throw new IllegalArgumentException("Wrong value of " + arg + ": " + value);
+                    }
+                    break;
+                case "-break":
+                    breakStop = parseInt(arg, value, 0);
+                    break;
+                case "-table":
+                    tableSize = parseInt(arg, value, 1);
+                    break;
+                case "-limit":
+                    timeLimit = parseInt(arg, value, 0);
+                    break;
+                case "-report":
+                    reportFile = new File(value);
+                    break;
+                case "-out":
+                    outDir = new File(value);
+                    if (!outDir.isDirectory()) {
+                        throw new IllegalArgumentException("Folder not found: " + value);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No games to solve");
+        }
+        Set<String> targets = new HashSet<>();
+        for (String path : paths) {
+            if (!targets.add(path)) {
+                clashes.add(path);
+            }
+        }
+    }
+
+    /**
+     * Parses the integer value of the option.
+     *
+     * @param option the option
+     * @param value  the value
+     * @param min    the minimum value
+     * @return the value
+     * @throws IllegalArgumentException if the value is wrong
+     */
+    private static int parseInt(String option, String value, int min) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result >= min) {
+                return result;
+            }
+        } catch (NumberFormatException ignore) {
+            // the message below
+        }
+        throw new IllegalArgumentException("Wrong value of " + option + ": " + value);
+    }
+
+    /**
+     * Adds the file or all JCTL files of the folder and its subfolders.
+     *
+     * @param f    file or folder
+     * @param path the path of the file or the folder relative to the folder argument, or the name
+     *             of the file argument
+     */
+    private void addFiles(File f, String path) {
+        if (f.isDirectory()) {
+            File[] list = f.listFiles((dir, name) -> new File(dir, name).isDirectory() || name.endsWith(".jctl"));
+            if (list != null) {
+                Arrays.sort(list);
+                for (File item : list) {
+                    addFiles(item, path.isEmpty() ? item.getName() : path + File.separator + item.getName());
+                }
+            }
+        } else {
+            files.add(f);
+            paths.add(path);
+        }
+    }
+
+    /**
+     * Solves all games at the thread pool and writes the report.
+     *
+     * @return the exit code
+     */
+    private int run() {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "batch timer");
+            t.setDaemon(true);
+            return t;
+        });
+
+        List<Future<Result>> futures = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            File f = files.get(i);
+            String path = paths.get(i);
+            futures.add(pool.submit(() -> solveFile(f, path)));
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (Future<Result> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException | ExecutionException e) {
+                Result result = new Result();
+                result.file = files.get(results.size());
+                result.status = "error";
+                results.add(result);
+            }
+        }
+        pool.shutdown();
+        timer.shutdownNow();
+
+        int code = EXIT_SOLVED;
+        for (Result result : results) {
+            if (result.status.equals("solved")) {
+                continue;
+            }
+            boolean fileError = result.status.equals("bad file") || result.status.equals("not filled")
+                    || result.status.equals("write error") || result.status.equals("error");
+            code = Math.max(code, fileError ? EXIT_FILE_ERROR : EXIT_NOT_SOLVED);
+        }
+
+        try {
+            writeReport(results);
+        } catch (IOException e) {
+            System.err.println("Could not write the report: " + e.getMessage());
+            code = EXIT_FILE_ERROR;
+        }
+        return code;
+    }
+
+    /**
+     * Loads, solves and saves one game. It's called at the thread of the pool.
+     *
+     * @param f    the game file
+     * @param path the path to save the game at the out folder
+     * @return the result
+     */
+    private Result solveFile(File f, String path) {
+        Result result = new Result();
+        result.file = f;
+
+        // TubesIO keeps the game at static fields, so files are read and written one by one
+        BoardModel board = new BoardModel();
+        GameMoves gameMoves = new GameMoves();
+        int movesDone;
+        synchronized (TubesIO.class) {
+            if (!TubesIO.loadFromFile(f.getPath())) {
+                result.status = "bad file";
+                report(result);
+                return result;
+            }
+            if (TubesIO.getGameMode() == TubesIO.MODE_FILL) {
+                result.status = "not filled";
+                report(result);
+                return result;
+            }
+            TubesIO.restoreTubes(board);
+            movesDone = TubesIO.restoreMoves(gameMoves);
+        }
+
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean memoryBean = (mx instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) mx).isThreadAllocatedMemoryEnabled())
+                ? (com.sun.management.ThreadMXBean) mx : null;
+        long thread = Thread.currentThread().getId();
+        long allocated = (memoryBean != null) ? memoryBean.getThreadAllocatedBytes(thread) : 0;
+
+        Solver solver = new Solver(board, breakStop);
+        solver.setEngine(engine);
+        solver.setTableSize(tableSize);
+        Solution solution = solve(solver, board);
+
+        if (memoryBean != null) {
+            result.memory = memoryBean.getThreadAllocatedBytes(thread) - allocated;
+        }
+        result.moves = solver.processedMoves;
+        result.time = solver.workingTime;
+
+        if (solution != null) {
+            result.status = "solved";
+            result.length = solution.length();
+            result.foundLength = solution.getFoundLength();
+            if (write && solution.length() > 0 && !save(f, path, board, gameMoves, movesDone, solution)) {
+                result.status = "write error";
+            }
+        } else if (solver.provenUnsolvable) {
+            result.status = "unsolvable";
+        } else if (solver.externalBreak) {
+            result.status = "timeout";
+        } else {
+            result.status = "not solved";
+        }
+        report(result);
+        return result;
+    }
+
+    /**
+     * Solves the game, and starts the solver again with the doubled break value while the game is not
+     * solved, as SolvePanel does. The last run searches without breaks.
+     *
+     * @param solver the solver
+     * @param board  the start board
+     * @return the solution, or null if it's not found
+     */
+    private Solution solve(Solver solver, BoardModel board) {
+        // solve() clears the break, so the timer breaks the solver until it's cancelled
+        ScheduledFuture<?> stop = (timeLimit > 0)
+                ? timer.scheduleAtFixedRate(solver::stopProcess, timeLimit * 1000L, 100, TimeUnit.MILLISECONDS)
+                : null;
+        int breakCount = breakStop;
+        Solution solution = solver.solve();
+        while (solution == null && !solver.externalBreak && !solver.provenUnsolvable && breakCount > 0
+                && (engine == Solver.ENGINE_TREE || engine == Solver.ENGINE_STACK)) {
+            breakCount = (breakCount < MAX_BREAK_COUNT) ? breakCount << 1 : 0;
+            solver.setStartTubes(board);
+            solver.setBreakStop(breakCount);
+            solution = solver.solve();
+        }
+        if (stop != null) {
+            stop.cancel(false);
+        }
+        return solution;
+    }
+
+    /**
+     * Saves the solved game in the assistant mode: the solution follows moves that were done.
+     *
+     * @param f         the source file
+     * @param path      the path of the game at the out folder
+     * @param board     the board of the game
+     * @param gameMoves moves of the source file
+     * @param movesDone number of moves that were done
+     * @param solution  the solution
+     * @return true if the file is saved
+     */
+    private boolean save(File f, String path, BoardModel board, GameMoves gameMoves, int movesDone,
+                         Solution solution) {
+        File target = f;
+        if (outDir != null) {
+            // games of the same name from different arguments would overwrite each other
+            if (clashes.contains(path)) {
+                return false;
+            }
+            target = new File(outDir, path);
+            File parent = target.getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+                return false;
+            }
+        }
+        while (gameMoves.size() > movesDone) {
+            gameMoves.remove(gameMoves.size() - 1);
+        }
+        for (int i = 0; i < solution.length(); i++) {
+            gameMoves.add(solution.getMove(i));
+        }
+        synchronized (TubesIO.class) {
+            TubesIO.storeGameMode(TubesIO.MODE_ASSIST);
+            TubesIO.storeTubes(board, 0);
+            TubesIO.storeMoves(gameMoves, movesDone);
+            try (FileOutputStream out = new FileOutputStream(target)) {
+                return TubesIO.saveToStream(out, 2);
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Prints the result of the game to the error stream, so the progress is seen.
+     *
+     * @param result the result
+     */
+    private static void report(Result result) {
+        System.err.printf(Locale.ROOT, "%-40s %-12s %6d %12d %10.0f%n", result.file.getName(), result.status,
+                result.length, result.moves, result.time);
+    }
+
+    /**
+     * Writes the report as CSV or JSON.
+     *
+     * @param results results of all games
+     * @throws IOException if the report file can't be written
+     */
+    private void writeReport(List<Result> results) throws IOException {
+        boolean json = reportFile != null && reportFile.getName().toLowerCase(Locale.ROOT).endsWith(".json");
+        PrintWriter out = (reportFile != null)
+                ? new PrintWriter(new OutputStreamWriter(new FileOutputStream(reportFile), StandardCharsets.UTF_8))
+                : new PrintWriter(new OutputStreamWriter(new NoClosePrintStream(System.out), StandardCharsets.UTF_8));
+        try (out) {
+            if (json) {
+                out.println("[");
+                for (int i = 0; i < results.size(); i++) {
+                    Result r = results.get(i);
+                    out.printf(Locale.ROOT, "  {\"file\": \"%s\", \"status\": \"%s\", \"length\": %d, "
+                                    + "\"foundLength\": %d, \"moves\": %d, \"timeMs\": %.0f, \"memoryBytes\": %d}%s%n",
+                            jsonEscape(r.file.getPath()), r.status, r.length, r.foundLength, r.moves, r.time,
+                            r.memory, (i < results.size() - 1) ? "," : "");
+                }
+                out.println("]");
+            } else {
+                out.println("file,status,length,foundLength,moves,timeMs,memoryBytes");
+                for (Result r : results) {
+                    out.printf(Locale.ROOT, "%s,%s,%d,%d,%d,%.0f,%d%n", csvEscape(r.file.getPath()), r.status,
+                            r.length, r.foundLength, r.moves, r.time, r.memory);
+                }
+            }
+            if (out.checkError()) {
+                throw new IOException(String.valueOf(reportFile));
+            }
+        }
+    }
+
+    /**
+     * Escapes the string for JSON.
+     *
+     * @param s the string
+     * @return the escaped string without quotes
+     */
+    private static String jsonEscape(String s) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Quotes the CSV field if it's needed.
+     *
+     * @param s the field
+     * @return the field for CSV
+     */
+    private static String csvEscape(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) {
+            return s;
+        }
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * The stream that is not closed with the report writer, i.e. the standard output.
+     */
+    private static class NoClosePrintStream extends PrintStream {
+
+        NoClosePrintStream(PrintStream out) {
+            super(out, true);
+        }
+
+        @Override
+        public void close() {
+            flush();
+        }
+    }
+
+}
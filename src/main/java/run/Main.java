@@ -13,6 +13,8 @@ import core.Options;
 import core.ResStrings;
 import gui.MainFrame;
 
+import java.util.Arrays;
+
 import static java.awt.EventQueue.invokeLater;
 
 /**
@@ -26,11 +28,23 @@ public class Main {
     public static MainFrame frame;
 
     /**
-     * Just create and run main frame
+     * Just create and run main frame. With the <i>-batch</i> argument, saved games are solved without
+     * GUI. With the <i>-generate</i> argument, puzzles are generated without GUI.
      *
      * @param args the command line arguments
+     * @see BatchSolver
+     * @see PuzzleGenerator
      */
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("-batch")) {
+            BatchSolver.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("-generate")) {
+            PuzzleGenerator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         Options.loadOptions();
         ResStrings.setBundle(Options.langCode);
 
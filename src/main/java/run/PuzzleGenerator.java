@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2023 legoru / goroleo <legoru@me.com>
+ *
+ * This software is distributed under the <b>MIT License.</b>
+ * The full text of the License you can read here:
+ * https://choosealicense.com/licenses/mit/
+ *
+ * Use this as you want! ))
+ */
+package run;
+
+import core.ScrambleGenerator;
+import core.TubesIO;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates puzzles which surely can be solved, without GUI and without the solver. Every puzzle is
+ * the solved board scrambled by reverse pours, see ScrambleGenerator. Options are:<ul>
+ * <li><b>-count N</b> - number of puzzles, 100 by default.
+ * <li><b>-tubes N</b> - number of tubes, 14 by default.
+ * <li><b>-empty N</b> - number of empty tubes, 2 by default.
+ * <li><b>-colors N</b> - number of palette colors to take colors of the puzzle, the number of filled
+ * tubes by default.
+ * <li><b>-depth N</b> - number of reverse pours, 40 by default.
+ * <li><b>-mixing X</b> - the chance from 0 to 1 to take the pour that mixes colors most, 0.5 by default.
+ * <li><b>-seed N</b> - the random seed, 1 by default.
+ * <li><b>-threads N</b> - number of threads, the number of processor cores by default.
+ * <li><b>-out DIR</b> - the folder to save puzzles, the current folder by default.
+ * <li><b>-solution</b> - puzzles are saved in the assistant mode with the solution.
+ * <li><b>-nowrite</b> - puzzles are not saved, only the summary is printed.
+ * </ul>
+ * Puzzles are saved as JCTL version 2 files named <i>puzzle-SEED-NUMBER.jctl</i>, in the play mode
+ * by default. Puzzles are generated by blocks, and every block has its own seed, so the same options
+ * give the same files with any number of threads. The exit code is 0 if all puzzles are saved, 2 if
+ * some files can't be written, and 3 if arguments are wrong.
+ * <br>
+ * Run it as follows: <i>java -jar TubeSolver.jar -generate [options]</i>
+ */
+public class PuzzleGenerator {
+
+    /**
+     * Number of puzzles of one block.
+     */
+    private static final int BLOCK_SIZE = 1000;
+
+    /**
+     * Multiplier of the block number to make the block seed.
+     */
+    private static final long SEED_STEP = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Number of puzzles.
+     */
+    private int count = 100;
+
+    /**
+     * Number of tubes.
+     */
+    private int tubes = 14;
+
+    /**
+     * Number of empty tubes.
+     */
+    private int emptyTubes = 2;
+
+    /**
+     * Number of palette colors, 0 means the number of filled tubes.
+     */
+    private int colors = 0;
+
+    /**
+     * Number of reverse pours.
+     */
+    private int depth = 40;
+
+    /**
+     * The chance to take the pour that mixes colors most.
+     */
+    private double mixing = 0.5;
+
+    /**
+     * The random seed.
+     */
+    private long seed = 1;
+
+    /**
+     * Number of threads.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The folder to save puzzles.
+     */
+    private File outDir = new File(".");
+
+    /**
+     * Are puzzles saved with solutions?
+     */
+    private boolean solution = false;
+
+    /**
+     * Are puzzles saved?
+     */
+    private boolean write = true;
+
+    /**
+     * Number of files that can't be written.
+     */
+    private final AtomicInteger writeErrors = new AtomicInteger();
+
+    /**
+     * Totals of one block.
+     */
+    private static class Totals {
+        long pours;
+        long runs;
+        int shortScrambles;
+    }
+
+    /**
+     * Runs the generator.
+     *
+     * @param args options
+     */
+    public static void main(String[] args) {
+        PuzzleGenerator generator = new PuzzleGenerator();
+        int code;
+        try {
+            generator.parseArgs(args);
+            code = generator.run();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: -generate [-count N] [-tubes N] [-empty N] [-colors N] [-depth N]"
+                    + " [-mixing X] [-seed N] [-threads N] [-out DIR] [-solution] [-nowrite]");
+            code = BatchSolver.EXIT_USAGE;
+        }
+        System.exit(code);
+    }
+
+    /**
+     * Parses command line arguments.
+     *
+     * @param args options
+     * @throws IllegalArgumentException if arguments are wrong
+     */
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-nowrite")) {
+                write = false;
+                continue;
+            }
+            if (arg.equals("-solution")) {
+                solution = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Value expected: " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "-count":
+                    count = parseInt(arg, value, 1);
+                    break;
+                case "-tubes":
+                    tubes = parseInt(arg, value, 1);
+                    break;
+                case "-empty":
+                    emptyTubes = parseInt(arg, value, 0);
+                    break;
+                case "-colors":
+                    colors = parseInt(arg, value, 1);
+                    break;
+                case "-depth":
+                    depth = parseInt(arg, value, 0);
+                    break;
+                case "-mixing":
+                    try {
+                        mixing = Double.parseDouble(value);
+                    } catch (NumberFormatException e) {
+                        mixing = -1;
+                    }
+                    if (!(mixing >= 0 && mixing <= 1)) {
+                        throw new IllegalArgumentException("Wrong value of " + arg + ": " + value);
+                    }
+                    break;
+                case "-seed":
+                    try {
+                        seed = Long.parseLong(value);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Wrong value of " + arg + ": " + value);
+                    }
+                    break;
+                case "-threads":
+                    threads = parseInt(arg, value, 1);
+                    break;
+                case "-out":
+                    outDir = new File(value);
+                    if (!outDir.isDirectory()) {
+                        throw new IllegalArgumentException("Folder not found: " + value);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (colors == 0) {
+            colors = tubes - emptyTubes;
+        }
+        // checks the board
+        new ScrambleGenerator(seed, tubes, emptyTubes, colors);
+    }
+
+    /**
+     * Parses the integer value of the option.
+     *
+     * @param option the option
+     * @param value  the value
+     * @param min    the minimum value
+     * @return the value
+     * @throws IllegalArgumentException if the value is wrong
+     */
+    private static int parseInt(String option, String value, int min) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result >= min) {
+                return result;
+            }
+        } catch (NumberFormatException ignore) {
+            // the message below
+        }
+        throw new IllegalArgumentException("Wrong value of " + option + ": " + value);
+    }
+
+    /**
+     * Generates all blocks at the thread pool and prints the summary.
+     *
+     * @return the exit code
+     */
+    private int run() {
+        long time = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Totals>> futures = new ArrayList<>();
+        for (int first = 0; first < count; first += BLOCK_SIZE) {
+            int block = first;
+            futures.add(pool.submit(() -> generateBlock(block, Math.min(count, block + BLOCK_SIZE))));
+        }
+
+        Totals totals = new Totals();
+        int code = BatchSolver.EXIT_SOLVED;
+        for (Future<Totals> future : futures) {
+            try {
+                Totals block = future.get();
+                totals.pours += block.pours;
+                totals.runs += block.runs;
+                totals.shortScrambles += block.shortScrambles;
+            } catch (InterruptedException | ExecutionException e) {
+                System.err.println("Generator error: " + e.getMessage());
+                code = BatchSolver.EXIT_FILE_ERROR;
+            }
+        }
+        pool.shutdown();
+        time = System.nanoTime() - time;
+
+        if (writeErrors.get() > 0) {
+            System.err.println("Could not write " + writeErrors.get() + " files");
+            code = BatchSolver.EXIT_FILE_ERROR;
+        }
+        System.out.printf(Locale.ROOT, "puzzles: %d, average pours: %.2f, average runs: %.2f"
+                        + " (solved board: %d), short scrambles: %d, %.0f puzzles/s%n",
+                count, (double) totals.pours / count, (double) totals.runs / count,
+                tubes - emptyTubes, totals.shortScrambles, count * 1e9 / time);
+        return code;
+    }
+
+    /**
+     * Generates and saves puzzles of one block. It's called at the thread of the pool.
+     *
+     * @param first number of the first puzzle of the block
+     * @param last  number after the last puzzle of the block
+     * @return totals of the block
+     */
+    private Totals generateBlock(int first, int last) {
+        ScrambleGenerator generator = new ScrambleGenerator(seed + (first / BLOCK_SIZE + 1) * SEED_STEP,
+                tubes, emptyTubes, colors);
+        generator.setDepth(depth);
+        generator.setMixing(mixing);
+        int[] board = new int[tubes];
+        int[] moves = new int[depth];
+
+        Totals totals = new Totals();
+        for (int n = first; n < last; n++) {
+            int pours = generator.next(board, 0);
+            totals.pours += pours;
+            totals.runs += generator.getRuns();
+            if (pours < depth) {
+                totals.shortScrambles++;
+            }
+            if (write) {
+                int[] stored = null;
+                if (solution && pours > 0) {
+                    stored = new int[generator.getSolution(moves)];
+                    System.arraycopy(moves, 0, stored, 0, stored.length);
+                }
+                File f = new File(outDir, "puzzle-" + seed + "-" + n + ".jctl");
+                try (OutputStream out = new FileOutputStream(f)) {
+                    if (!TubesIO.saveToStream(out, solution ? TubesIO.MODE_ASSIST : TubesIO.MODE_PLAY,
+                            board, stored, 0)) {
+                        writeErrors.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    writeErrors.incrementAndGet();
+                }
+            }
+        }
+        return totals;
+    }
+
+}